@@ -40,6 +40,10 @@ public class CollectRequest
 
     private String context = "";
 
+    private CollectResult previousResult;
+
+    private volatile boolean cancelled;
+
     /**
      * Creates an unitialized request.
      */
@@ -282,4 +286,53 @@ public class CollectRequest
         return this;
     }
 
+    /**
+     * Gets the result of a previous collection from which unchanged parts of the dependency graph may be reused.
+     * 
+     * @return The previous collection result or {@code null} if none.
+     */
+    public CollectResult getPreviousResult()
+    {
+        return previousResult;
+    }
+
+    /**
+     * Sets the result of a previous collection from which unchanged parts of the dependency graph may be reused. This
+     * is meant for clients that repeatedly collect the dependencies of a project while its dependencies or dependency
+     * management are edited. Whether and which parts of the previous result can be reused depends on the dependency
+     * collector, a collector is free to ignore the previous result and always build the graph from scratch.
+     * 
+     * @param previousResult The previous collection result, may be {@code null}.
+     * @return This request for chaining, never {@code null}.
+     */
+    public CollectRequest setPreviousResult( CollectResult previousResult )
+    {
+        this.previousResult = previousResult;
+        return this;
+    }
+
+    /**
+     * Cancels the collection of this request. This method may be called from any thread, the dependency collector
+     * checks for the cancellation at its own discretion and aborts the collection with a
+     * {@link DependencyCollectionException} that carries the partial result. Requests that have been cancelled should
+     * not be reused.
+     * 
+     * @return This request for chaining, never {@code null}.
+     */
+    public CollectRequest cancel()
+    {
+        this.cancelled = true;
+        return this;
+    }
+
+    /**
+     * Indicates whether this request has been cancelled.
+     * 
+     * @return {@code true} if the collection of this request has been cancelled, {@code false} otherwise.
+     */
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
 }
@@ -14,7 +14,10 @@ package org.sonatype.aether;
  */
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The result of a dependency collection request.
@@ -31,6 +34,10 @@ public class CollectResult
 
     private DependencyNode root;
 
+    private CollectStatistics statistics = new CollectStatistics();
+
+    private Map<Object, Object> data = Collections.emptyMap();
+
     /**
      * Creates a new result for the specified request.
      * 
@@ -103,4 +110,66 @@ public class CollectResult
         return this;
     }
 
+    /**
+     * Gets the statistics about the dependency collection.
+     * 
+     * @return The collection statistics, never {@code null}.
+     */
+    public CollectStatistics getStatistics()
+    {
+        return statistics;
+    }
+
+    /**
+     * Sets the statistics about the dependency collection.
+     * 
+     * @param statistics The collection statistics, may be {@code null}.
+     * @return This result for chaining, never {@code null}.
+     */
+    public CollectResult setStatistics( CollectStatistics statistics )
+    {
+        this.statistics = ( statistics != null ) ? statistics : new CollectStatistics();
+        return this;
+    }
+
+    /**
+     * Gets the custom data associated with the specified key. Dependency collectors can use such data to keep the
+     * state needed to reuse this result in a later collection, see {@link CollectRequest#setPreviousResult}.
+     * 
+     * @param key The key of the data, may be {@code null}.
+     * @return The data associated with the key or {@code null} if none.
+     */
+    public Object getData( Object key )
+    {
+        return data.get( key );
+    }
+
+    /**
+     * Associates custom data with the specified key.
+     * 
+     * @param key The key of the data, must not be {@code null}.
+     * @param value The data to associate with the key, may be {@code null} to remove the data.
+     * @return This result for chaining, never {@code null}.
+     */
+    public CollectResult setData( Object key, Object value )
+    {
+        if ( key == null )
+        {
+            throw new IllegalArgumentException( "key has not been specified" );
+        }
+        if ( value != null )
+        {
+            if ( data.isEmpty() )
+            {
+                data = new HashMap<Object, Object>();
+            }
+            data.put( key, value );
+        }
+        else
+        {
+            data.remove( key );
+        }
+        return this;
+    }
+
 }
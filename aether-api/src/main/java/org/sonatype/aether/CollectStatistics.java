@@ -0,0 +1,260 @@
+package org.sonatype.aether;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Statistics about a dependency collection, meant to be logged to help understand and tune the performance of the
+ * collection. The available numbers depend on the dependency collector in use, numbers not provided are reported as
+ * zero. Counts for caches that are shared with other collections running at the same time may include the activity of
+ * those collections.
+ * 
+ * @author Benjamin Bentmann
+ * @see CollectResult#getStatistics()
+ */
+public class CollectStatistics
+{
+
+    private long descriptorReads;
+
+    private long versionRangeResolutions;
+
+    private long nodeCount;
+
+    private int maxDepth;
+
+    private long collectTime;
+
+    private final Map<String, long[]> caches = new LinkedHashMap<String, long[]>();
+
+    private final Map<String, Long> transformTimes = new LinkedHashMap<String, Long>();
+
+    /**
+     * Gets the number of artifact descriptors that were read, i.e. not served from a cache.
+     * 
+     * @return The number of artifact descriptors read.
+     */
+    public long getDescriptorReads()
+    {
+        return descriptorReads;
+    }
+
+    /**
+     * Sets the number of artifact descriptors that were read.
+     * 
+     * @param descriptorReads The number of artifact descriptors read.
+     * @return These statistics for chaining, never {@code null}.
+     */
+    public CollectStatistics setDescriptorReads( long descriptorReads )
+    {
+        this.descriptorReads = descriptorReads;
+        return this;
+    }
+
+    /**
+     * Gets the number of version ranges that were resolved, i.e. not served from a cache.
+     * 
+     * @return The number of version ranges resolved.
+     */
+    public long getVersionRangeResolutions()
+    {
+        return versionRangeResolutions;
+    }
+
+    /**
+     * Sets the number of version ranges that were resolved.
+     * 
+     * @param versionRangeResolutions The number of version ranges resolved.
+     * @return These statistics for chaining, never {@code null}.
+     */
+    public CollectStatistics setVersionRangeResolutions( long versionRangeResolutions )
+    {
+        this.versionRangeResolutions = versionRangeResolutions;
+        return this;
+    }
+
+    /**
+     * Gets the number of dependency nodes created by the collector, before any graph transformation.
+     * 
+     * @return The number of dependency nodes.
+     */
+    public long getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    /**
+     * Sets the number of dependency nodes created by the collector.
+     * 
+     * @param nodeCount The number of dependency nodes.
+     * @return These statistics for chaining, never {@code null}.
+     */
+    public CollectStatistics setNodeCount( long nodeCount )
+    {
+        this.nodeCount = nodeCount;
+        return this;
+    }
+
+    /**
+     * Gets the maximum depth of the dependency graph before any graph transformation. The root node has depth zero.
+     * 
+     * @return The maximum depth of the dependency graph.
+     */
+    public int getMaxDepth()
+    {
+        return maxDepth;
+    }
+
+    /**
+     * Sets the maximum depth of the dependency graph.
+     * 
+     * @param maxDepth The maximum depth of the dependency graph.
+     * @return These statistics for chaining, never {@code null}.
+     */
+    public CollectStatistics setMaxDepth( int maxDepth )
+    {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * Gets the time spent building the dependency graph, excluding the graph transformation.
+     * 
+     * @return The collection time in milliseconds.
+     */
+    public long getCollectTime()
+    {
+        return collectTime;
+    }
+
+    /**
+     * Sets the time spent building the dependency graph.
+     * 
+     * @param collectTime The collection time in milliseconds.
+     * @return These statistics for chaining, never {@code null}.
+     */
+    public CollectStatistics setCollectTime( long collectTime )
+    {
+        this.collectTime = collectTime;
+        return this;
+    }
+
+    /**
+     * Gets the names of the caches for which hits and misses were recorded.
+     * 
+     * @return The (read-only) cache names in recording order, never {@code null}.
+     */
+    public Collection<String> getCacheNames()
+    {
+        return Collections.unmodifiableSet( caches.keySet() );
+    }
+
+    /**
+     * Gets the number of hits in the specified cache.
+     * 
+     * @param cache The name of the cache, may be {@code null}.
+     * @return The number of cache hits.
+     */
+    public long getCacheHits( String cache )
+    {
+        long[] counts = caches.get( cache );
+        return ( counts != null ) ? counts[0] : 0;
+    }
+
+    /**
+     * Gets the number of misses in the specified cache.
+     * 
+     * @param cache The name of the cache, may be {@code null}.
+     * @return The number of cache misses.
+     */
+    public long getCacheMisses( String cache )
+    {
+        long[] counts = caches.get( cache );
+        return ( counts != null ) ? counts[1] : 0;
+    }
+
+    /**
+     * Records the hits and misses of the specified cache.
+     * 
+     * @param cache The name of the cache, must not be {@code null}.
+     * @param hits The number of cache hits.
+     * @param misses The number of cache misses.
+     * @return These statistics for chaining, never {@code null}.
+     */
+    public CollectStatistics setCacheStatistics( String cache, long hits, long misses )
+    {
+        if ( cache == null )
+        {
+            throw new IllegalArgumentException( "cache name has not been specified" );
+        }
+        caches.put( cache, new long[] { hits, misses } );
+        return this;
+    }
+
+    /**
+     * Gets the time spent in each graph transformer, keyed by the name of the transformer. If a transformer chain was
+     * used, the time spent in each member of the chain is reported, members whose work was fused into shared graph
+     * traversals are reported together under their joined names.
+     * 
+     * @return The (read-only) transformation times in milliseconds, in order of execution, never {@code null}.
+     */
+    public Map<String, Long> getTransformTimes()
+    {
+        return Collections.unmodifiableMap( transformTimes );
+    }
+
+    /**
+     * Adds the specified time to the time spent in the given graph transformer.
+     * 
+     * @param transformer The name of the transformer, must not be {@code null}.
+     * @param time The time spent in the transformer in milliseconds.
+     * @return These statistics for chaining, never {@code null}.
+     */
+    public CollectStatistics addTransformTime( String transformer, long time )
+    {
+        if ( transformer == null )
+        {
+            throw new IllegalArgumentException( "transformer name has not been specified" );
+        }
+        Long total = transformTimes.get( transformer );
+        transformTimes.put( transformer, Long.valueOf( ( total != null ) ? total.longValue() + time : time ) );
+        return this;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder buffer = new StringBuilder( 256 );
+        buffer.append( "nodes=" ).append( nodeCount );
+        buffer.append( ", maxDepth=" ).append( maxDepth );
+        buffer.append( ", descriptorReads=" ).append( descriptorReads );
+        buffer.append( ", versionRangeResolutions=" ).append( versionRangeResolutions );
+        for ( Map.Entry<String, long[]> entry : caches.entrySet() )
+        {
+            buffer.append( ", " ).append( entry.getKey() ).append( "=" ).append( entry.getValue()[0] ).append( '/' );
+            buffer.append( entry.getValue()[0] + entry.getValue()[1] );
+        }
+        buffer.append( ", collectTime=" ).append( collectTime ).append( "ms" );
+        for ( Map.Entry<String, Long> entry : transformTimes.entrySet() )
+        {
+            buffer.append( ", " ).append( entry.getKey() ).append( "=" ).append( entry.getValue() ).append( "ms" );
+        }
+        return buffer.toString();
+    }
+
+}
@@ -28,6 +28,12 @@ public class DependencyCollectionException
         this.result = result;
     }
 
+    public DependencyCollectionException( CollectResult result, String message )
+    {
+        super( message, getCause( result ) );
+        this.result = result;
+    }
+
     public CollectResult getResult()
     {
         return result;
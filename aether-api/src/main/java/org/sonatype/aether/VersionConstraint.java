@@ -24,10 +24,35 @@ import java.util.HashSet;
 public class VersionConstraint
 {
 
-    private Collection<VersionRange> ranges = new HashSet<VersionRange>();
+    private Collection<VersionRange> ranges;
+
+    private boolean shared;
 
     private Version preferredVersion;
 
+    /**
+     * Creates an empty version constraint.
+     */
+    public VersionConstraint()
+    {
+        ranges = new HashSet<VersionRange>();
+    }
+
+    /**
+     * Creates a version constraint with the specified ranges and preferred version. The given collection is not copied
+     * but shared until a range is added to this constraint, so it must not be modified afterwards. This allows
+     * constraints that are handed out over and over again (e.g. by a caching version scheme) to share their ranges.
+     * 
+     * @param ranges The version ranges of this constraint, must not be {@code null}.
+     * @param preferredVersion The preferred version for this constraint, may be {@code null} if none.
+     */
+    public VersionConstraint( Collection<VersionRange> ranges, Version preferredVersion )
+    {
+        this.ranges = ranges;
+        this.shared = true;
+        this.preferredVersion = preferredVersion;
+    }
+
     /**
      * Adds the specified version range to this constraint. All versions matched by the given range satisfy this
      * constraint.
@@ -39,13 +64,19 @@ public class VersionConstraint
     {
         if ( range != null )
         {
+            if ( shared )
+            {
+                ranges = new HashSet<VersionRange>( ranges );
+                shared = false;
+            }
             ranges.add( range );
         }
         return this;
     }
 
     /**
-     * Gets the version ranges of this constraint.
+     * Gets the version ranges of this constraint. Ranges should be added via {@link #addRange(VersionRange)}, the
+     * returned collection is read-only if it is shared with other constraints.
      * 
      * @return The version ranges, may be empty but never {@code null}.
      */
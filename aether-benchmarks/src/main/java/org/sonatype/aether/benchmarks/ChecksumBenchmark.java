@@ -0,0 +1,93 @@
+package org.sonatype.aether.benchmarks;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.aether.util.ChecksumUtils;
+
+/**
+ * Measures the calculation of the checksums that accompany each transferred file.
+ * 
+ * @author Benjamin Bentmann
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ChecksumBenchmark
+{
+
+    private static final List<String> ALGOS = Arrays.asList( "SHA-1", "MD5" );
+
+    @Param( { "1024", "1048576" } )
+    public int size;
+
+    private File file;
+
+    @Setup
+    public void setup()
+        throws IOException
+    {
+        byte[] data = new byte[size];
+        new Random( 0 ).nextBytes( data );
+
+        file = File.createTempFile( "aether-", ".bin" );
+        OutputStream os = new FileOutputStream( file );
+        try
+        {
+            os.write( data );
+        }
+        finally
+        {
+            os.close();
+        }
+    }
+
+    @TearDown
+    public void teardown()
+    {
+        file.delete();
+    }
+
+    @Benchmark
+    public Map<String, Object> calc()
+        throws IOException
+    {
+        return ChecksumUtils.calc( file, ALGOS );
+    }
+
+}
@@ -0,0 +1,96 @@
+package org.sonatype.aether.benchmarks;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.aether.CollectRequest;
+import org.sonatype.aether.CollectResult;
+import org.sonatype.aether.Dependency;
+import org.sonatype.aether.DependencyCollectionException;
+import org.sonatype.aether.impl.internal.DefaultDependencyCollector;
+import org.sonatype.aether.impl.internal.DefaultRemoteRepositoryManager;
+import org.sonatype.aether.util.DefaultRepositoryCache;
+import org.sonatype.aether.util.DefaultRepositorySystemSession;
+
+/**
+ * Measures the dependency collection of synthetic graphs, see {@link SyntheticRepository}. Each invocation starts with
+ * an empty repository cache, i.e. all descriptors are read again, and no graph transformation is performed.
+ * 
+ * @author Benjamin Bentmann
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class DependencyCollectorBenchmark
+{
+
+    @Param( { "3", "5" } )
+    public int depth;
+
+    @Param( { "4", "6" } )
+    public int fanOut;
+
+    @Param( { "1", "4" } )
+    public int threads;
+
+    private DefaultDependencyCollector collector;
+
+    private DefaultRepositorySystemSession session;
+
+    private CollectRequest request;
+
+    @Setup
+    public void setup()
+    {
+        SyntheticRepository repository = new SyntheticRepository( depth, fanOut, fanOut * 2 );
+
+        collector = new DefaultDependencyCollector();
+        collector.setRemoteRepositoryManager( new DefaultRemoteRepositoryManager() );
+        collector.setArtifactDescriptorReader( repository );
+        collector.setVersionRangeResolver( repository );
+
+        session = DefaultRepositorySystemSession.newMavenRepositorySystemSession();
+        session.setDependencyGraphTransformer( null );
+        session.setConfigProperties( Collections.singletonMap( DefaultDependencyCollector.CONFIG_PROP_THREADS,
+                                                               Integer.toString( threads ) ) );
+
+        request = new CollectRequest();
+        request.setRoot( new Dependency( repository.getRoot(), "compile" ) );
+    }
+
+    @Benchmark
+    public CollectResult collect()
+        throws DependencyCollectionException
+    {
+        session.setCache( new DefaultRepositoryCache() );
+        return collector.collectDependencies( session, request );
+    }
+
+}
@@ -0,0 +1,152 @@
+package org.sonatype.aether.benchmarks;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.aether.CollectRequest;
+import org.sonatype.aether.Dependency;
+import org.sonatype.aether.DependencyGraphTransformer;
+import org.sonatype.aether.DependencyNode;
+import org.sonatype.aether.RepositoryException;
+import org.sonatype.aether.impl.internal.DefaultDependencyCollector;
+import org.sonatype.aether.impl.internal.DefaultRemoteRepositoryManager;
+import org.sonatype.aether.util.DefaultRepositorySystemSession;
+import org.sonatype.aether.util.graph.CloningDependencyVisitor;
+import org.sonatype.aether.util.graph.transformer.ChainedDependencyGraphTransformer;
+import org.sonatype.aether.util.graph.transformer.ClassicVersionConflictResolver;
+import org.sonatype.aether.util.graph.transformer.ConflictMarker;
+import org.sonatype.aether.util.graph.transformer.JavaDependencyContextRefiner;
+import org.sonatype.aether.util.graph.transformer.JavaEffectiveScopeCalculator;
+
+/**
+ * Measures each dependency graph transformer on a collected synthetic graph, see {@link SyntheticRepository}. As the
+ * transformers modify the graph, every invocation works on a fresh clone of the graph to which the transformers that
+ * the measured one depends on (e.g. the conflict marker for the conflict resolver) have already been applied.
+ * 
+ * @author Benjamin Bentmann
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class DependencyGraphTransformerBenchmark
+{
+
+    @Param( { "ConflictMarker", "JavaEffectiveScopeCalculator", "ClassicVersionConflictResolver",
+        "JavaDependencyContextRefiner", "Chained" } )
+    public String transformer;
+
+    @Param( { "5" } )
+    public int depth;
+
+    @Param( { "5" } )
+    public int fanOut;
+
+    private DependencyNode graph;
+
+    private DependencyGraphTransformer[] prerequisites;
+
+    private DependencyGraphTransformer measured;
+
+    private DependencyNode node;
+
+    @Setup
+    public void setup()
+        throws Exception
+    {
+        SyntheticRepository repository = new SyntheticRepository( depth, fanOut, fanOut * 2 );
+
+        DefaultDependencyCollector collector = new DefaultDependencyCollector();
+        collector.setRemoteRepositoryManager( new DefaultRemoteRepositoryManager() );
+        collector.setArtifactDescriptorReader( repository );
+        collector.setVersionRangeResolver( repository );
+
+        DefaultRepositorySystemSession session = DefaultRepositorySystemSession.newMavenRepositorySystemSession();
+        session.setDependencyGraphTransformer( null );
+
+        CollectRequest request = new CollectRequest();
+        request.setRoot( new Dependency( repository.getRoot(), "compile" ) );
+        graph = collector.collectDependencies( session, request ).getRoot();
+
+        if ( "ConflictMarker".equals( transformer ) )
+        {
+            prerequisites = new DependencyGraphTransformer[0];
+            measured = new ConflictMarker();
+        }
+        else if ( "JavaEffectiveScopeCalculator".equals( transformer ) )
+        {
+            prerequisites = new DependencyGraphTransformer[] { new ConflictMarker() };
+            measured = new JavaEffectiveScopeCalculator();
+        }
+        else if ( "ClassicVersionConflictResolver".equals( transformer ) )
+        {
+            prerequisites =
+                new DependencyGraphTransformer[] { new ConflictMarker(), new JavaEffectiveScopeCalculator() };
+            measured = new ClassicVersionConflictResolver();
+        }
+        else if ( "JavaDependencyContextRefiner".equals( transformer ) )
+        {
+            prerequisites = new DependencyGraphTransformer[0];
+            measured = new JavaDependencyContextRefiner();
+        }
+        else if ( "Chained".equals( transformer ) )
+        {
+            prerequisites = new DependencyGraphTransformer[0];
+            measured =
+                new ChainedDependencyGraphTransformer( new ConflictMarker(), new JavaEffectiveScopeCalculator(),
+                                                       new ClassicVersionConflictResolver(),
+                                                       new JavaDependencyContextRefiner() );
+        }
+        else
+        {
+            throw new IllegalArgumentException( "unknown transformer " + transformer );
+        }
+    }
+
+    @Setup( Level.Invocation )
+    public void prepare()
+        throws RepositoryException
+    {
+        CloningDependencyVisitor cloner = new CloningDependencyVisitor();
+        graph.accept( cloner );
+        node = cloner.getRootNode();
+        for ( DependencyGraphTransformer prerequisite : prerequisites )
+        {
+            node = prerequisite.transformGraph( node );
+        }
+    }
+
+    @Benchmark
+    public DependencyNode transform()
+        throws RepositoryException
+    {
+        return measured.transformGraph( node );
+    }
+
+}
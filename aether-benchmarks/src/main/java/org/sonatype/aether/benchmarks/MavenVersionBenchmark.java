@@ -0,0 +1,108 @@
+package org.sonatype.aether.benchmarks;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonatype.aether.Version;
+import org.sonatype.aether.util.version.MavenVersion;
+
+/**
+ * Measures the parsing and comparison of Maven versions, both for the common forms that take the fast path and for
+ * exotic strings that need the full item tree.
+ * 
+ * @author Benjamin Bentmann
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class MavenVersionBenchmark
+{
+
+    private static final String[] COMMON =
+        { "1.0", "1.0.1", "2.5", "3.0-SNAPSHOT", "3.0-alpha-2", "3.0-beta-1", "3.0", "3.0.1", "3.0.2-rc1", "10.2.14",
+            "1.2.3-final", "2.0-sp1" };
+
+    private static final String[] EXOTIC =
+        { "1.0.0.1", "2.0-1", "1-alpha2snapshot", "2.1b", "1.0-pom-1", "20100915.153522-3", "1.0-jdk14", "2.0.a",
+            "11.m11", "1.5.0.GA-patch", "3.0-20101012.120155-7", "1-xyz-2" };
+
+    @Param( { "common", "exotic" } )
+    public String versions;
+
+    private String[] strings;
+
+    private Version[] parsed;
+
+    @Setup
+    public void setup()
+    {
+        strings = "exotic".equals( versions ) ? EXOTIC : COMMON;
+        parsed = new Version[strings.length];
+        for ( int i = 0; i < strings.length; i++ )
+        {
+            parsed[i] = new MavenVersion( strings[i] );
+        }
+    }
+
+    @Benchmark
+    public void parse( Blackhole blackhole )
+    {
+        for ( String string : strings )
+        {
+            blackhole.consume( new MavenVersion( string ) );
+        }
+    }
+
+    @Benchmark
+    public int compare()
+    {
+        int result = 0;
+        for ( Version v1 : parsed )
+        {
+            for ( Version v2 : parsed )
+            {
+                result += v1.compareTo( v2 );
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int hash()
+    {
+        int result = 0;
+        for ( String string : strings )
+        {
+            result += new MavenVersion( string ).hashCode();
+        }
+        return result;
+    }
+
+}
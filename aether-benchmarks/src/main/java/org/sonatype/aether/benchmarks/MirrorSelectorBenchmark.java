@@ -0,0 +1,105 @@
+package org.sonatype.aether.benchmarks;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonatype.aether.RemoteRepository;
+import org.sonatype.aether.util.DefaultMirrorSelector;
+
+/**
+ * Measures the mirror lookups for the remote repositories of a build. The selector is configured with a number of
+ * mirrors for specific repositories followed by the wildcard mirrors typical for a repository manager setup, the
+ * repositories are a mix of mirrored and unmatched ones.
+ * 
+ * @author Benjamin Bentmann
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class MirrorSelectorBenchmark
+{
+
+    @Param( { "2", "50" } )
+    public int mirrors;
+
+    private DefaultMirrorSelector selector;
+
+    private RemoteRepository[] repositories;
+
+    @Setup
+    public void setup()
+    {
+        selector = new DefaultMirrorSelector();
+        for ( int i = 0; i < mirrors - 1; i++ )
+        {
+            selector.add( "mirror-" + i, "http://mirror-" + i + ".example.org/repo", "default", false, "repo-" + i
+                + ",other-" + i, null );
+        }
+        selector.add( "nexus", "http://localhost:8081/nexus/content/groups/public", "default", true,
+                      "external:*,!snapshots-*", "default" );
+
+        repositories = new RemoteRepository[16];
+        for ( int i = 0; i < repositories.length; i++ )
+        {
+            String id;
+            String url;
+            switch ( i % 4 )
+            {
+                case 0:
+                    id = "repo-" + ( i * 7 % mirrors );
+                    url = "http://repo.example.org/" + i;
+                    break;
+                case 1:
+                    id = "central";
+                    url = "http://repo1.maven.org/maven2";
+                    break;
+                case 2:
+                    id = "snapshots-" + i;
+                    url = "http://snapshots.example.org/" + i;
+                    break;
+                default:
+                    id = "local-" + i;
+                    url = "file:///tmp/repo-" + i;
+                    break;
+            }
+            repositories[i] = new RemoteRepository( id, "default", url );
+        }
+    }
+
+    @Benchmark
+    public void getMirror( Blackhole blackhole )
+    {
+        for ( RemoteRepository repository : repositories )
+        {
+            blackhole.consume( selector.getMirror( repository ) );
+        }
+    }
+
+}
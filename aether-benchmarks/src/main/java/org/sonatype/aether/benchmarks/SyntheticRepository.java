@@ -0,0 +1,125 @@
+package org.sonatype.aether.benchmarks;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sonatype.aether.Artifact;
+import org.sonatype.aether.ArtifactDescriptorRequest;
+import org.sonatype.aether.ArtifactDescriptorResult;
+import org.sonatype.aether.DefaultArtifact;
+import org.sonatype.aether.Dependency;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.Version;
+import org.sonatype.aether.VersionConstraint;
+import org.sonatype.aether.VersionRangeRequest;
+import org.sonatype.aether.VersionRangeResult;
+import org.sonatype.aether.impl.ArtifactDescriptorReader;
+import org.sonatype.aether.impl.VersionRangeResolver;
+import org.sonatype.aether.util.version.MavenVersion;
+
+/**
+ * An in-memory repository that serves synthetic artifact descriptors, i.e. the benchmarks need neither files nor
+ * network access. The artifacts are arranged in levels, each artifact of a level depends on {@code fanOut} artifacts of
+ * the next level, picked from {@code width} artifacts per level in three different versions. As the same artifacts are
+ * reached via many paths and in different versions, the collected graphs exhibit the duplicates and version conflicts
+ * of real projects. The descriptors are computed from the coordinates of the requested artifact, so the repository
+ * holds no state and can serve concurrent requests.
+ * 
+ * @author Benjamin Bentmann
+ */
+public final class SyntheticRepository
+    implements ArtifactDescriptorReader, VersionRangeResolver
+{
+
+    private static final String GROUP_ID = "org.sonatype.aether.benchmarks";
+
+    private static final int VERSIONS = 3;
+
+    private final int depth;
+
+    private final int fanOut;
+
+    private final int width;
+
+    /**
+     * Creates a new repository for graphs with the specified shape.
+     * 
+     * @param depth The number of levels below the root artifact.
+     * @param fanOut The number of dependencies of each artifact above the last level.
+     * @param width The number of distinct artifacts per level.
+     */
+    public SyntheticRepository( int depth, int fanOut, int width )
+    {
+        this.depth = depth;
+        this.fanOut = fanOut;
+        this.width = Math.max( 1, width );
+    }
+
+    /**
+     * Gets the root artifact whose dependency graph has the configured shape.
+     * 
+     * @return The root artifact, never {@code null}.
+     */
+    public Artifact getRoot()
+    {
+        return newArtifact( 0, 0, 0 );
+    }
+
+    private static Artifact newArtifact( int level, int index, int version )
+    {
+        return new DefaultArtifact( GROUP_ID, "l" + level + "-a" + index, "", "jar", "1." + version );
+    }
+
+    private List<Dependency> getDependencies( Artifact artifact )
+    {
+        String artifactId = artifact.getArtifactId();
+        int dash = artifactId.indexOf( '-' );
+        int level = Integer.parseInt( artifactId.substring( 1, dash ) );
+        int index = Integer.parseInt( artifactId.substring( dash + 2 ) );
+        int version = artifact.getVersion().charAt( artifact.getVersion().length() - 1 ) - '0';
+
+        List<Dependency> dependencies = new ArrayList<Dependency>( fanOut );
+        if ( level < depth )
+        {
+            for ( int i = 0; i < fanOut; i++ )
+            {
+                int child = ( index * 31 + i * 7 + version ) % width;
+                Artifact dependency = newArtifact( level + 1, child, ( index + i ) % VERSIONS );
+                dependencies.add( new Dependency( dependency, ( i % 3 == 2 ) ? "runtime" : "compile" ) );
+            }
+        }
+        return dependencies;
+    }
+
+    public ArtifactDescriptorResult readArtifactDescriptor( RepositorySystemSession session,
+                                                            ArtifactDescriptorRequest request )
+    {
+        ArtifactDescriptorResult result = new ArtifactDescriptorResult( request );
+        result.setArtifact( request.getArtifact() );
+        result.setDependencies( getDependencies( request.getArtifact() ) );
+        return result;
+    }
+
+    public VersionRangeResult resolveVersionRange( RepositorySystemSession session, VersionRangeRequest request )
+    {
+        VersionRangeResult result = new VersionRangeResult( request );
+        Version version = new MavenVersion( request.getArtifact().getVersion() );
+        result.addVersion( version );
+        result.setVersionConstraint( new VersionConstraint().setPreferredVersion( version ) );
+        return result;
+    }
+
+}
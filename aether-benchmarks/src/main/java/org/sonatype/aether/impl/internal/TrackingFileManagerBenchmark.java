@@ -0,0 +1,105 @@
+package org.sonatype.aether.impl.internal;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading and updating the tracking files that record the update checks and origins of artifacts and
+ * metadata. The benchmark resides in the package of the (internal) file manager to access it directly.
+ * 
+ * @author Benjamin Bentmann
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class TrackingFileManagerBenchmark
+{
+
+    @Param( { "4", "64" } )
+    public int entries;
+
+    private TrackingFileManager manager;
+
+    private File directory;
+
+    private File file;
+
+    private Map<String, String> updates;
+
+    private int counter;
+
+    @Setup
+    public void setup()
+        throws Exception
+    {
+        manager = new TrackingFileManager();
+
+        directory = File.createTempFile( "aether-", ".tracking" );
+        directory.delete();
+        directory.mkdirs();
+        file = new File( directory, "resolver-status.properties" );
+
+        Map<String, String> initial = new HashMap<String, String>();
+        for ( int i = 0; i < entries; i++ )
+        {
+            initial.put( "artifact-" + i + ".jar.lastUpdated", Long.toString( System.currentTimeMillis() ) );
+        }
+        manager.update( file, initial );
+
+        updates = new HashMap<String, String>();
+    }
+
+    @TearDown
+    public void teardown()
+    {
+        file.delete();
+        directory.delete();
+    }
+
+    @Benchmark
+    public Properties read()
+    {
+        return manager.read( file );
+    }
+
+    @Benchmark
+    public Properties update()
+    {
+        updates.clear();
+        updates.put( "artifact-" + ( counter++ % entries ) + ".jar.lastUpdated", Integer.toString( counter ) );
+        return manager.update( file, updates );
+    }
+
+}
@@ -0,0 +1,45 @@
+package org.sonatype.aether.impl;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import org.sonatype.aether.ArtifactDescriptorException;
+import org.sonatype.aether.ArtifactDescriptorResult;
+
+/**
+ * Receives the outcome of the individual requests of a batch of artifact descriptor reads. The callback may be invoked
+ * concurrently by multiple threads.
+ * 
+ * @author Benjamin Bentmann
+ * @see BatchArtifactDescriptorReader
+ */
+public interface ArtifactDescriptorCallback
+{
+
+    /**
+     * Notifies the callback of a successfully read artifact descriptor.
+     * 
+     * @param result The descriptor result, never {@code null}.
+     */
+    void descriptorRead( ArtifactDescriptorResult result );
+
+    /**
+     * Notifies the callback of an artifact descriptor that could not be read.
+     * 
+     * @param exception The exception that {@link ArtifactDescriptorReader#readArtifactDescriptor} would have thrown for
+     *            the request, never {@code null}. Its {@link ArtifactDescriptorException#getResult() result} must not
+     *            be {@code null} either.
+     */
+    void descriptorFailed( ArtifactDescriptorException exception );
+
+}
@@ -0,0 +1,47 @@
+package org.sonatype.aether.impl;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.util.Collection;
+
+import org.sonatype.aether.ArtifactDescriptorRequest;
+import org.sonatype.aether.RepositorySystemSession;
+
+/**
+ * An artifact descriptor reader that can process many requests at once. Implementations are expected to overlap the
+ * I/O of the individual requests, e.g. by resolving all the descriptor files via a single call to
+ * {@link ArtifactResolver#resolveArtifacts(RepositorySystemSession, Collection)} which groups the downloads per
+ * repository connector. The dependency collector uses this interface when available to read the descriptors for all
+ * dependencies of a node at once.
+ * 
+ * @author Benjamin Bentmann
+ */
+public interface BatchArtifactDescriptorReader
+    extends ArtifactDescriptorReader
+{
+
+    /**
+     * Reads the artifact descriptors for the specified requests. The outcome of each request is passed to the callback
+     * as soon as it is available, in no particular order. When this method returns, the callback has been notified
+     * exactly once for each request. The results passed to the callback must refer to the original request objects.
+     * 
+     * @param session The repository session, must not be {@code null}.
+     * @param requests The descriptor requests, must not be {@code null}.
+     * @param callback The callback to notify of the results, must not be {@code null}.
+     */
+    void readArtifactDescriptors( RepositorySystemSession session,
+                                  Collection<? extends ArtifactDescriptorRequest> requests,
+                                  ArtifactDescriptorCallback callback );
+
+}
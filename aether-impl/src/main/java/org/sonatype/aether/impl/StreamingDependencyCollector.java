@@ -0,0 +1,51 @@
+package org.sonatype.aether.impl;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import org.sonatype.aether.CollectRequest;
+import org.sonatype.aether.CollectResult;
+import org.sonatype.aether.DependencyCollectionException;
+import org.sonatype.aether.DependencyNode;
+import org.sonatype.aether.DependencyVisitor;
+import org.sonatype.aether.RepositorySystemSession;
+
+/**
+ * A dependency collector that can stream the collected nodes to a visitor instead of building the whole dependency
+ * graph. The repository system uses this interface when available to serve streaming collection requests.
+ * 
+ * @author Benjamin Bentmann
+ */
+public interface StreamingDependencyCollector
+    extends DependencyCollector
+{
+
+    /**
+     * Collects the transitive dependencies of an artifact and streams the dependency nodes to the specified visitor as
+     * they are discovered, in the same depth-first order that {@link DependencyNode#accept(DependencyVisitor)} would
+     * visit them. The dependency graph is not retained, i.e. the root node of the result has no children and the nodes
+     * passed to the visitor have no children either, only their parents are available. As the graph is never complete,
+     * the session's dependency graph transformer is not applied and repeated subtrees are visited each time they
+     * occur.
+     * 
+     * @param session The repository session, must not be {@code null}.
+     * @param request The collection request, must not be {@code null}.
+     * @param visitor The visitor to notify of the collected dependency nodes, must not be {@code null}.
+     * @return The collection result, never {@code null}.
+     * @throws DependencyCollectionException If the dependency tree could not be built.
+     */
+    CollectResult collectDependencies( RepositorySystemSession session, CollectRequest request,
+                                       DependencyVisitor visitor )
+        throws DependencyCollectionException;
+
+}
@@ -13,15 +13,16 @@ package org.sonatype.aether.impl.internal;
  * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
  */
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.sonatype.aether.ArtifactType;
 import org.sonatype.aether.ArtifactTypeRegistry;
 import org.sonatype.aether.RepositorySystemSession;
 
 /**
- * A short-lived artifact type registry that caches results from a presumedly slower type registry.
+ * A short-lived artifact type registry that caches results from a presumedly slower type registry. The registry is
+ * thread-safe to support artifact descriptor reads from concurrent collector threads.
  * 
  * @author Benjamin Bentmann
  */
@@ -46,7 +47,7 @@ class CachingArtifactTypeRegistry
     private CachingArtifactTypeRegistry( ArtifactTypeRegistry delegate )
     {
         this.delegate = delegate;
-        types = new HashMap<String, ArtifactType>();
+        types = new ConcurrentHashMap<String, ArtifactType>();
     }
 
     public ArtifactType get( String typeId )
@@ -56,7 +57,10 @@ class CachingArtifactTypeRegistry
         if ( type == null )
         {
             type = delegate.get( typeId );
-            types.put( typeId, type );
+            if ( type != null )
+            {
+                types.put( typeId, type );
+            }
         }
 
         return type;
@@ -0,0 +1,209 @@
+package org.sonatype.aether.impl.internal;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe cache with a fixed capacity for data that is looked up by many threads at once. Unlike
+ * {@link LruCache}, lookups do not lock the cache and evictions only approximate the least recently used order: Each
+ * entry records a stamp of its last access and once the cache has grown beyond its capacity, a single thread evicts
+ * the entries with the oldest stamps until the cache is filled to three quarters of its capacity. The clock behind the
+ * stamps only advances on insertions, so a lookup merely reads it and writes the stamp of an entry if that is stale,
+ * i.e. hot entries are not written by every lookup. The cache keeps track of its evictions and optionally of its hits
+ * and misses, the latter are shared counters which all lookups would contend on and are hence disabled by default.
+ * 
+ * @author Benjamin Bentmann
+ */
+final class ConcurrentLruCache<K, V>
+{
+
+    private final int maxSize;
+
+    private final int trimSize;
+
+    private final Map<K, Entry<V>> entries;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final AtomicLong hits;
+
+    private final AtomicLong misses;
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a new cache with the specified capacity.
+     * 
+     * @param maxSize The maximum number of entries to keep, a non-positive value effectively disables caching.
+     */
+    public ConcurrentLruCache( int maxSize )
+    {
+        this( maxSize, false );
+    }
+
+    /**
+     * Creates a new cache with the specified capacity.
+     * 
+     * @param maxSize The maximum number of entries to keep, a non-positive value effectively disables caching.
+     * @param recordStats {@code true} to count hits and misses, {@code false} to leave {@link #getHits()} and
+     *            {@link #getMisses()} at zero.
+     */
+    public ConcurrentLruCache( int maxSize, boolean recordStats )
+    {
+        this.maxSize = Math.max( 0, maxSize );
+        this.trimSize = this.maxSize - this.maxSize / 4;
+        this.entries = new ConcurrentHashMap<K, Entry<V>>( Math.min( this.maxSize, 256 ) + 1 );
+        this.hits = recordStats ? new AtomicLong() : null;
+        this.misses = recordStats ? new AtomicLong() : null;
+    }
+
+    public V get( Object key )
+    {
+        Entry<V> entry = entries.get( key );
+        if ( entry != null )
+        {
+            long now = clock.get();
+            if ( entry.stamp != now )
+            {
+                entry.stamp = now;
+            }
+            if ( hits != null )
+            {
+                hits.incrementAndGet();
+            }
+            return entry.value;
+        }
+        if ( misses != null )
+        {
+            misses.incrementAndGet();
+        }
+        return null;
+    }
+
+    public void put( K key, V value )
+    {
+        if ( maxSize <= 0 )
+        {
+            return;
+        }
+        entries.put( key, new Entry<V>( value, clock.incrementAndGet() ) );
+        // recheck after an eviction to catch the entries put by other threads while it was running
+        while ( entries.size() > maxSize && evicting.compareAndSet( false, true ) )
+        {
+            try
+            {
+                evict();
+            }
+            finally
+            {
+                evicting.set( false );
+            }
+        }
+    }
+
+    private void evict()
+    {
+        long[] stamps = new long[entries.size()];
+        int n = 0;
+        for ( Entry<V> entry : entries.values() )
+        {
+            if ( n >= stamps.length )
+            {
+                break;
+            }
+            stamps[n++] = entry.stamp;
+        }
+        int excess = n - trimSize;
+        if ( excess <= 0 )
+        {
+            return;
+        }
+        Arrays.sort( stamps, 0, n );
+        long threshold = stamps[excess - 1];
+
+        for ( Map.Entry<K, Entry<V>> entry : entries.entrySet() )
+        {
+            if ( excess <= 0 )
+            {
+                break;
+            }
+            if ( entry.getValue().stamp <= threshold && entries.remove( entry.getKey(), entry.getValue() ) )
+            {
+                evictions.incrementAndGet();
+                excess--;
+            }
+        }
+    }
+
+    public V remove( Object key )
+    {
+        Entry<V> entry = entries.remove( key );
+        return ( entry != null ) ? entry.value : null;
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    public long getHits()
+    {
+        return ( hits != null ) ? hits.get() : 0;
+    }
+
+    public long getMisses()
+    {
+        return ( misses != null ) ? misses.get() : 0;
+    }
+
+    public long getEvictions()
+    {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "size=" + entries.size() + "/" + maxSize + ", hits=" + getHits() + ", misses=" + getMisses()
+            + ", evictions=" + evictions;
+    }
+
+    private static final class Entry<V>
+    {
+
+        final V value;
+
+        volatile long stamp;
+
+        Entry( V value, long stamp )
+        {
+            this.value = value;
+            this.stamp = stamp;
+        }
+
+    }
+
+}
@@ -17,11 +17,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.Set;
 
 import org.sonatype.aether.Artifact;
 import org.sonatype.aether.ArtifactDescriptorRequest;
@@ -29,8 +31,10 @@ import org.sonatype.aether.ArtifactDescriptorResult;
 import org.sonatype.aether.ArtifactRepository;
 import org.sonatype.aether.Dependency;
 import org.sonatype.aether.DependencyManager;
+import org.sonatype.aether.DependencyNode;
 import org.sonatype.aether.DependencySelector;
 import org.sonatype.aether.DependencyTraverser;
+import org.sonatype.aether.Metadata;
 import org.sonatype.aether.RemoteRepository;
 import org.sonatype.aether.RepositoryCache;
 import org.sonatype.aether.RepositorySystemSession;
@@ -38,8 +42,13 @@ import org.sonatype.aether.Version;
 import org.sonatype.aether.VersionConstraint;
 import org.sonatype.aether.VersionRangeRequest;
 import org.sonatype.aether.VersionRangeResult;
+import org.sonatype.aether.util.ConfigUtils;
 
 /**
+ * Caches and interns the data used during dependency collection. Artifact descriptors and version ranges are kept in
+ * bounded caches that evict the least recently used entries, the artifact descriptors are shared among all
+ * collections of a session via its {@link RepositoryCache}.
+ * 
  * @author Benjamin Bentmann
  */
 final class DataPool
@@ -51,18 +60,52 @@ final class DataPool
 
     private static final String DESCRIPTORS = DataPool.class.getName() + "$Descriptors";
 
+    static final int DEFAULT_MAX_DESCRIPTORS = 4096;
+
+    static final int DEFAULT_MAX_CONSTRAINTS = 4096;
+
     private ObjectPool<Artifact> artifacts;
 
     private ObjectPool<Dependency> dependencies;
 
-    private Map<Object, Descriptor> descriptors;
+    private LruCache<Object, Descriptor> descriptors;
 
-    private Map<Object, Constraint> constraints = new WeakHashMap<Object, Constraint>();
+    private LruCache<Object, Constraint> constraints;
 
     private Map<Object, LightDependencyNode> nodes = new HashMap<Object, LightDependencyNode>();
 
-    @SuppressWarnings( "unchecked" )
+    private Map<Object, Collection<RangeUse>> nodeRanges = new HashMap<Object, Collection<RangeUse>>();
+
+    private Set<Object> usedNodes;
+
+    private long nodeHits;
+
+    private long nodeMisses;
+
+    private Map<DependencySelector, DependencySelector> selectors =
+        new HashMap<DependencySelector, DependencySelector>();
+
+    private Map<DependencyManager, DependencyManager> managers = new HashMap<DependencyManager, DependencyManager>();
+
+    private Map<DependencyTraverser, DependencyTraverser> traversers =
+        new HashMap<DependencyTraverser, DependencyTraverser>();
+
     public DataPool( RepositorySystemSession session )
+    {
+        this( session, null );
+    }
+
+    /**
+     * Creates a new pool that starts out with the collected nodes and version ranges of the specified snapshot. Version
+     * ranges are only taken over while the update policy of their repositories does not call for a new check, and
+     * likewise nodes only while this holds for every version range used within their subtree, such that a chain of
+     * incremental collections still picks up newly published versions.
+     * 
+     * @param session The repository session, must not be {@code null}.
+     * @param previous The snapshot of the pool of a previous collection to reuse, may be {@code null}.
+     */
+    @SuppressWarnings( "unchecked" )
+    public DataPool( RepositorySystemSession session, Snapshot previous )
     {
         RepositoryCache cache = session.getCache();
 
@@ -70,7 +113,7 @@ final class DataPool
         {
             artifacts = (ObjectPool<Artifact>) cache.get( session, ARTIFACT_POOL );
             dependencies = (ObjectPool<Dependency>) cache.get( session, DEPENDENCY_POOL );
-            descriptors = (Map<Object, Descriptor>) cache.get( session, DESCRIPTORS );
+            descriptors = (LruCache<Object, Descriptor>) cache.get( session, DESCRIPTORS );
         }
 
         if ( artifacts == null )
@@ -93,12 +136,51 @@ final class DataPool
 
         if ( descriptors == null )
         {
-            descriptors = Collections.synchronizedMap( new WeakHashMap<Object, Descriptor>( 256 ) );
+            int maxSize =
+                ConfigUtils.getInteger( session, DEFAULT_MAX_DESCRIPTORS,
+                                        DefaultDependencyCollector.CONFIG_PROP_MAX_DESCRIPTORS );
+            descriptors = new LruCache<Object, Descriptor>( maxSize );
             if ( cache != null )
             {
                 cache.put( session, DESCRIPTORS, descriptors );
             }
         }
+
+        if ( previous != null )
+        {
+            constraints = new LruCache<Object, Constraint>( previous.maxConstraints );
+            for ( Map.Entry<Object, Constraint> entry : previous.constraints.entrySet() )
+            {
+                if ( entry.getValue().isFresh( session, (ConstraintKey) entry.getKey() ) )
+                {
+                    constraints.put( entry.getKey(), entry.getValue() );
+                }
+            }
+            for ( Map.Entry<Object, LightDependencyNode> entry : previous.nodes.entrySet() )
+            {
+                Collection<RangeUse> ranges = previous.nodeRanges.get( entry.getKey() );
+                if ( ranges == null )
+                {
+                    nodes.put( entry.getKey(), entry.getValue() );
+                }
+                else if ( isFresh( session, ranges ) )
+                {
+                    nodes.put( entry.getKey(), entry.getValue() );
+                    nodeRanges.put( entry.getKey(), ranges );
+                }
+            }
+            usedNodes = new HashSet<Object>();
+            selectors = new HashMap<DependencySelector, DependencySelector>( previous.selectors );
+            managers = new HashMap<DependencyManager, DependencyManager>( previous.managers );
+            traversers = new HashMap<DependencyTraverser, DependencyTraverser>( previous.traversers );
+        }
+        else
+        {
+            int maxSize =
+                ConfigUtils.getInteger( session, DEFAULT_MAX_CONSTRAINTS,
+                                        DefaultDependencyCollector.CONFIG_PROP_MAX_CONSTRAINTS );
+            constraints = new LruCache<Object, Constraint>( maxSize );
+        }
     }
 
     public Artifact intern( Artifact artifact )
@@ -111,6 +193,42 @@ final class DataPool
         return dependencies.intern( dependency );
     }
 
+    /**
+     * Gets the canonical instance of the specified selector. All selectors used to create node keys must be canonical.
+     */
+    public DependencySelector intern( DependencySelector selector )
+    {
+        return intern( selectors, selector );
+    }
+
+    /**
+     * Gets the canonical instance of the specified manager. All managers used to create node keys must be canonical.
+     */
+    public DependencyManager intern( DependencyManager manager )
+    {
+        return intern( managers, manager );
+    }
+
+    /**
+     * Gets the canonical instance of the specified traverser. All traversers used to create node keys must be
+     * canonical.
+     */
+    public DependencyTraverser intern( DependencyTraverser traverser )
+    {
+        return intern( traversers, traverser );
+    }
+
+    private static <T> T intern( Map<T, T> pool, T object )
+    {
+        T pooled = pool.get( object );
+        if ( pooled == null )
+        {
+            pool.put( object, object );
+            pooled = object;
+        }
+        return pooled;
+    }
+
     public Object toKey( ArtifactDescriptorRequest request )
     {
         return request.getArtifact();
@@ -126,6 +244,28 @@ final class DataPool
         return null;
     }
 
+    /**
+     * Gets the cached descriptor like {@link #getDescriptor(Object, ArtifactDescriptorRequest)} but without counting a
+     * cache hit or miss, for lookups that are not made on behalf of the collector itself.
+     */
+    public ArtifactDescriptorResult peekDescriptor( Object key, ArtifactDescriptorRequest request )
+    {
+        Descriptor descriptor = descriptors.peek( key );
+        if ( descriptor != null )
+        {
+            return descriptor.toResult( request );
+        }
+        return null;
+    }
+
+    /**
+     * Determines whether a descriptor is cached for the specified key, without counting a cache hit or miss.
+     */
+    public boolean hasDescriptor( Object key )
+    {
+        return descriptors.peek( key ) != null;
+    }
+
     public void putDescriptor( Object key, ArtifactDescriptorResult result )
     {
         descriptors.put( key, new Descriptor( result ) );
@@ -146,11 +286,45 @@ final class DataPool
         return null;
     }
 
+    /**
+     * Gets the cached version range like {@link #getConstraint(Object, VersionRangeRequest)} but without counting a
+     * cache hit or miss, for lookups that are not made on behalf of the collector itself.
+     */
+    public VersionRangeResult peekConstraint( Object key, VersionRangeRequest request )
+    {
+        Constraint constraint = constraints.peek( key );
+        if ( constraint != null )
+        {
+            return constraint.toResult( request );
+        }
+        return null;
+    }
+
     public void putConstraint( Object key, VersionRangeResult result )
     {
         constraints.put( key, new Constraint( result ) );
     }
 
+    public LruCache<Object, Descriptor> getDescriptorCache()
+    {
+        return descriptors;
+    }
+
+    public LruCache<Object, Constraint> getConstraintCache()
+    {
+        return constraints;
+    }
+
+    public ObjectPool<Artifact> getArtifactPool()
+    {
+        return artifacts;
+    }
+
+    public ObjectPool<Dependency> getDependencyPool()
+    {
+        return dependencies;
+    }
+
     public Object toKey( Dependency dependency, List<RemoteRepository> repositories, DependencySelector selector,
                          DependencyManager manager, DependencyTraverser traverser )
     {
@@ -159,12 +333,136 @@ final class DataPool
 
     public LightDependencyNode getNode( Object key )
     {
-        return nodes.get( key );
+        LightDependencyNode node = nodes.get( key );
+        if ( node != null )
+        {
+            nodeHits++;
+            if ( usedNodes != null )
+            {
+                usedNodes.add( key );
+            }
+        }
+        else
+        {
+            nodeMisses++;
+        }
+        return node;
     }
 
-    public void putNode( Object key, LightDependencyNode node )
+    public long getNodeHits()
+    {
+        return nodeHits;
+    }
+
+    public long getNodeMisses()
+    {
+        return nodeMisses;
+    }
+
+    /**
+     * Caches a collected node.
+     * 
+     * @param key The key of the node, must not be {@code null}.
+     * @param node The collected node, must not be {@code null}.
+     * @param ranges The version ranges used within the subtree of the node, may be {@code null} if none.
+     */
+    public void putNode( Object key, LightDependencyNode node, Collection<RangeUse> ranges )
     {
         nodes.put( key, node );
+        if ( ranges != null && !ranges.isEmpty() )
+        {
+            nodeRanges.put( key, ranges );
+        }
+        if ( usedNodes != null )
+        {
+            usedNodes.add( key );
+        }
+    }
+
+    /**
+     * Gets the version ranges used within the subtree of the specified cached node.
+     * 
+     * @return The used version ranges or {@code null} if none.
+     */
+    public Collection<RangeUse> getNodeRanges( Object key )
+    {
+        return nodeRanges.get( key );
+    }
+
+    /**
+     * Records the use of a version range that was previously put into this pool.
+     */
+    public RangeUse toRangeUse( Object key, VersionConstraint versionConstraint )
+    {
+        Constraint constraint = constraints.peek( key );
+        // an evicted range is considered as old as possible such that it is checked again in later collections
+        long timestamp = ( constraint != null ) ? constraint.timestamp : 0;
+        return new RangeUse( (ConstraintKey) key, versionConstraint, timestamp );
+    }
+
+    private static boolean isFresh( RepositorySystemSession session, Collection<RangeUse> ranges )
+    {
+        for ( RangeUse range : ranges )
+        {
+            if ( !isFresh( session, range.key, range.versionConstraint, range.timestamp ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether the versions of a range resolved at the specified time may still be used according to the
+     * update policy.
+     */
+    static boolean isFresh( RepositorySystemSession session, ConstraintKey key, VersionConstraint versionConstraint,
+                            long timestamp )
+    {
+        if ( versionConstraint.getRanges().isEmpty() )
+        {
+            return true;
+        }
+        Metadata.Nature nature = DefaultVersionRangeResolver.getNature( versionConstraint.getRanges() );
+        String policy = DefaultVersionRangeResolver.getUpdatePolicy( session, key.repositories, nature );
+        return !DefaultUpdateCheckManager.isUpdatedRequired( timestamp, policy );
+    }
+
+    /**
+     * Creates a snapshot of the nodes and version ranges of this pool for use by a later incremental collection. Nodes
+     * that were taken over from a previous pool but not reused by this collection are left out, so the snapshot does
+     * not grow across a chain of collections.
+     */
+    public Snapshot snapshot()
+    {
+        Map<Object, LightDependencyNode> liveNodes = nodes;
+        if ( usedNodes != null )
+        {
+            Map<DependencyNode, Boolean> reachable = new IdentityHashMap<DependencyNode, Boolean>();
+            List<DependencyNode> stack = new ArrayList<DependencyNode>();
+            for ( Object key : usedNodes )
+            {
+                stack.add( nodes.get( key ) );
+            }
+            while ( !stack.isEmpty() )
+            {
+                DependencyNode node = stack.remove( stack.size() - 1 );
+                if ( reachable.put( node, Boolean.TRUE ) == null )
+                {
+                    stack.addAll( node.getChildren() );
+                }
+            }
+
+            liveNodes = new HashMap<Object, LightDependencyNode>();
+            for ( Map.Entry<Object, LightDependencyNode> entry : nodes.entrySet() )
+            {
+                if ( reachable.containsKey( entry.getValue() ) )
+                {
+                    liveNodes.put( entry.getKey(), entry.getValue() );
+                }
+            }
+        }
+        return new Snapshot( liveNodes, nodeRanges, constraints );
     }
 
     static class Descriptor
@@ -199,7 +497,7 @@ final class DataPool
             result.setProperties( properties );
             result.setRelocations( relocations );
             result.setDependencies( dependencies );
-            result.setManagedDependencies( dependencies );
+            result.setManagedDependencies( managedDependencies );
             result.setRepositories( clone( repositories ) );
             return result;
         }
@@ -225,9 +523,12 @@ final class DataPool
 
         final VersionConstraint versionConstraint;
 
+        final long timestamp;
+
         public Constraint( VersionRangeResult result )
         {
             versionConstraint = result.getVersionConstraint();
+            timestamp = System.currentTimeMillis();
             repositories = new LinkedHashMap<Version, ArtifactRepository>();
             for ( Version version : result.getVersions() )
             {
@@ -247,6 +548,14 @@ final class DataPool
             return result;
         }
 
+        /**
+         * Determines whether the versions of this range may still be used according to the update policy.
+         */
+        public boolean isFresh( RepositorySystemSession session, ConstraintKey key )
+        {
+            return DataPool.isFresh( session, key, versionConstraint, timestamp );
+        }
+
     }
 
     static class ConstraintKey
@@ -325,6 +634,84 @@ final class DataPool
 
     }
 
+    /**
+     * A version range used within the subtree of a collected node, along with the time the range was resolved.
+     */
+    static final class RangeUse
+    {
+
+        final ConstraintKey key;
+
+        final VersionConstraint versionConstraint;
+
+        final long timestamp;
+
+        public RangeUse( ConstraintKey key, VersionConstraint versionConstraint, long timestamp )
+        {
+            this.key = key;
+            this.versionConstraint = versionConstraint;
+            this.timestamp = timestamp;
+        }
+
+    }
+
+    /**
+     * An immutable snapshot of the collected nodes and version ranges of a pool, attached to the result of an
+     * incremental collection. Only the selectors, managers and traversers referenced by the keys of the nodes are kept.
+     */
+    static final class Snapshot
+    {
+
+        final Map<Object, LightDependencyNode> nodes;
+
+        final Map<Object, Collection<RangeUse>> nodeRanges;
+
+        final Map<Object, Constraint> constraints;
+
+        final int maxConstraints;
+
+        final Map<DependencySelector, DependencySelector> selectors;
+
+        final Map<DependencyManager, DependencyManager> managers;
+
+        final Map<DependencyTraverser, DependencyTraverser> traversers;
+
+        Snapshot( Map<Object, LightDependencyNode> nodes, Map<Object, Collection<RangeUse>> nodeRanges,
+                  LruCache<Object, Constraint> constraints )
+        {
+            Map<Object, Collection<RangeUse>> ranges = new HashMap<Object, Collection<RangeUse>>();
+            Map<DependencySelector, DependencySelector> selectors =
+                new HashMap<DependencySelector, DependencySelector>();
+            Map<DependencyManager, DependencyManager> managers = new HashMap<DependencyManager, DependencyManager>();
+            Map<DependencyTraverser, DependencyTraverser> traversers =
+                new HashMap<DependencyTraverser, DependencyTraverser>();
+            for ( Object key : nodes.keySet() )
+            {
+                NodeKey nodeKey = (NodeKey) key;
+                selectors.put( nodeKey.selector, nodeKey.selector );
+                managers.put( nodeKey.manager, nodeKey.manager );
+                traversers.put( nodeKey.traverser, nodeKey.traverser );
+                Collection<RangeUse> used = nodeRanges.get( key );
+                if ( used != null )
+                {
+                    ranges.put( key, used );
+                }
+            }
+            this.nodes = Collections.unmodifiableMap( new HashMap<Object, LightDependencyNode>( nodes ) );
+            this.nodeRanges = Collections.unmodifiableMap( ranges );
+            this.constraints = Collections.unmodifiableMap( constraints.toMap() );
+            this.maxConstraints = constraints.getMaxSize();
+            this.selectors = Collections.unmodifiableMap( selectors );
+            this.managers = Collections.unmodifiableMap( managers );
+            this.traversers = Collections.unmodifiableMap( traversers );
+        }
+
+    }
+
+    /**
+     * The key of a collected node. The selector, manager and traverser are expected to be canonical instances (see
+     * {@link DataPool#intern(DependencySelector)} and friends) and are compared by identity.
+     */
     static class NodeKey
     {
 
@@ -352,9 +739,9 @@ final class DataPool
             int hash = 17;
             hash = hash * 31 + dependency.hashCode();
             hash = hash * 31 + repositories.hashCode();
-            hash = hash * 31 + selector.hashCode();
-            hash = hash * 31 + manager.hashCode();
-            hash = hash * 31 + traverser.hashCode();
+            hash = hash * 31 + System.identityHashCode( selector );
+            hash = hash * 31 + System.identityHashCode( manager );
+            hash = hash * 31 + System.identityHashCode( traverser );
             hashCode = hash;
         }
 
@@ -370,9 +757,8 @@ final class DataPool
                 return false;
             }
             NodeKey that = (NodeKey) obj;
-            return dependency.equals( that.dependency ) && repositories.equals( that.repositories )
-                && selector.equals( that.selector ) && manager.equals( that.manager )
-                && traverser.equals( that.traverser );
+            return selector == that.selector && manager == that.manager && traverser == that.traverser
+                && dependency.equals( that.dependency ) && repositories.equals( that.repositories );
         }
 
         @Override
@@ -16,8 +16,13 @@ package org.sonatype.aether.impl.internal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
 
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
@@ -28,6 +33,7 @@ import org.sonatype.aether.ArtifactDescriptorResult;
 import org.sonatype.aether.ArtifactRepository;
 import org.sonatype.aether.CollectRequest;
 import org.sonatype.aether.CollectResult;
+import org.sonatype.aether.CollectStatistics;
 import org.sonatype.aether.Dependency;
 import org.sonatype.aether.DependencyCollectionException;
 import org.sonatype.aether.DependencyGraphTransformer;
@@ -36,6 +42,7 @@ import org.sonatype.aether.DependencyManager;
 import org.sonatype.aether.DependencyNode;
 import org.sonatype.aether.DependencySelector;
 import org.sonatype.aether.DependencyTraverser;
+import org.sonatype.aether.DependencyVisitor;
 import org.sonatype.aether.RemoteRepository;
 import org.sonatype.aether.RepositoryException;
 import org.sonatype.aether.RepositorySystemSession;
@@ -44,24 +51,134 @@ import org.sonatype.aether.VersionRangeRequest;
 import org.sonatype.aether.VersionRangeResolutionException;
 import org.sonatype.aether.VersionRangeResult;
 import org.sonatype.aether.impl.ArtifactDescriptorReader;
+import org.sonatype.aether.impl.BatchArtifactDescriptorReader;
 import org.sonatype.aether.impl.DependencyCollector;
 import org.sonatype.aether.impl.RemoteRepositoryManager;
+import org.sonatype.aether.impl.StreamingDependencyCollector;
 import org.sonatype.aether.impl.VersionRangeResolver;
+import org.sonatype.aether.util.ConfigUtils;
 import org.sonatype.aether.util.DefaultRepositorySystemSession;
+import org.sonatype.aether.util.PersistentHashMap;
+import org.sonatype.aether.util.graph.CompactDependencyGraph;
 import org.sonatype.aether.util.graph.DefaultDependencyNode;
+import org.sonatype.aether.util.graph.transformer.ChainedDependencyGraphTransformer;
+import org.sonatype.aether.util.graph.transformer.FusibleDependencyGraphTransformer;
 import org.sonatype.aether.spi.locator.Service;
 import org.sonatype.aether.spi.locator.ServiceLocator;
 import org.sonatype.aether.spi.log.Logger;
 import org.sonatype.aether.spi.log.NullLogger;
 
 /**
+ * The default dependency collector. The collection can be tuned via the {@code CONFIG_PROP_*} configuration properties
+ * declared by this class, a collection that exceeds one of the configured limits is aborted.
+ * 
  * @author Benjamin Bentmann
  */
 @Component( role = DependencyCollector.class )
 public class DefaultDependencyCollector
-    implements DependencyCollector, Service
+    implements StreamingDependencyCollector, Service
 {
 
+    /**
+     * The key in the repository session's {@link RepositorySystemSession#getConfigProperties() configuration
+     * properties} used to store the number of threads for concurrent version range resolution and artifact descriptor
+     * reading. These threads work ahead of the (still sequential) graph traversal. A value of {@code 1} (the default)
+     * disables this prefetching unless the artifact descriptor reader is a {@link BatchArtifactDescriptorReader}, in
+     * which case a single background thread reads the descriptors of each group of siblings in one batch.
+     */
+    public static final String CONFIG_PROP_THREADS = "aether.dependencyCollector.threads";
+
+    /**
+     * The key in the repository session's {@link RepositorySystemSession#getConfigProperties() configuration
+     * properties} used to enable sharing of repeated subtrees. If enabled, a node that was already collected with the
+     * same dependency, repositories, selector, manager and traverser is added by reference to every further parent,
+     * turning the dependency tree into a directed acyclic graph. The {@link DependencyNode#getParent() parent} and
+     * {@link DependencyNode#getDepth() depth} of such a shared node refer to its first occurrence. As the dependency
+     * graph transformers require a tree, the graph is expanded before the session's graph transformer (if any) is
+     * applied, clients that want to keep the shared graph need to disable the transformer and can later expand the
+     * graph via {@link org.sonatype.aether.util.graph.CloningDependencyVisitor}.
+     */
+    public static final String CONFIG_PROP_SHARE_SUBTREES = "aether.dependencyCollector.shareSubtrees";
+
+    /**
+     * The key in the repository session's {@link RepositorySystemSession#getConfigProperties() configuration
+     * properties} used to store the maximum number of artifact descriptors to cache, the least recently used
+     * descriptors are evicted from the cache once this limit is reached. This cache is shared by all collections within
+     * the session and sized when first created.
+     */
+    public static final String CONFIG_PROP_MAX_DESCRIPTORS = "aether.dependencyCollector.maxCachedDescriptors";
+
+    /**
+     * The key in the repository session's {@link RepositorySystemSession#getConfigProperties() configuration
+     * properties} used to store the maximum number of version range results to cache per collection, the least
+     * recently used results are evicted from the cache once this limit is reached.
+     */
+    public static final String CONFIG_PROP_MAX_CONSTRAINTS = "aether.dependencyCollector.maxCachedVersionRanges";
+
+    /**
+     * The key in the repository session's {@link RepositorySystemSession#getConfigProperties() configuration
+     * properties} used to enable incremental collection. If enabled, the collector attaches the collected nodes and
+     * version ranges to the collection result. When such a result is given as the
+     * {@link CollectRequest#setPreviousResult(CollectResult) previous result} of a later request, each subtree whose
+     * dependency, repositories, selector, manager and traverser did not change is taken from the previous result
+     * instead of being collected again, so only the branches affected by changed dependencies or dependency management
+     * are expanded. Artifact descriptors other than that of the root dependency are reused as well, i.e. the previous
+     * result should be dropped when those might have changed. Version ranges, and subtrees within which version ranges
+     * were resolved, are only reused while the update policy of the repositories of these ranges does not call for a
+     * new check.
+     */
+    public static final String CONFIG_PROP_INCREMENTAL = "aether.dependencyCollector.incremental";
+
+    /**
+     * The key in the repository session's {@link RepositorySystemSession#getConfigProperties() configuration
+     * properties} used to enable nearest-wins pruning during collection. If enabled, the graph is collected
+     * breadth-first and the nearest node of each conflict group (i.e. artifacts with equal group id, artifact id,
+     * classifier and extension) is remembered. Any later node of the same conflict group is farther from the root or
+     * follows the nearest node at the same depth, so a nearest-wins conflict resolution will remove it, such a node is
+     * still added to the graph but its dependencies are not collected. As a consequence, the dependencies of losing
+     * nodes do not take part in conflict resolution or scope calculation anymore. Version ranges allow conflict
+     * resolution to select other than the nearest node, hence all skipped nodes are expanded and pruning stops as soon
+     * as a version range is encountered. This mode does not use the cache of collected nodes, i.e. it does not share
+     * subtrees and is ignored for streaming collection.
+     */
+    public static final String CONFIG_PROP_NEAREST_WINS = "aether.dependencyCollector.nearestWins";
+
+    /**
+     * The key in the repository session's {@link RepositorySystemSession#getConfigProperties() configuration
+     * properties} used to enable the compact graph representation. If enabled, the root node of the collection result
+     * is a view of a {@link CompactDependencyGraph} into which the graph is copied after the graph transformation, i.e.
+     * the nodes created during collection can be garbage collected. The children of the compact nodes cannot be
+     * modified anymore, hence the compact graph is meant for read-only consumers like resolution or reporting. This
+     * property is ignored for streaming collection.
+     */
+    public static final String CONFIG_PROP_COMPACT_GRAPH = "aether.dependencyCollector.compactGraph";
+
+    /**
+     * The key in the repository session's {@link RepositorySystemSession#getConfigProperties() configuration
+     * properties} used to store the maximum number of nodes a collection may create, including the nodes of repeated
+     * subtrees that are copied. A non-positive value (the default) disables this limit. Like for the other limits and
+     * a {@link CollectRequest#cancel() cancelled} request, a collection exceeding it fails with a
+     * {@link DependencyCollectionException} whose result holds the partially collected graph.
+     */
+    public static final String CONFIG_PROP_MAX_NODES = "aether.dependencyCollector.maxNodes";
+
+    /**
+     * The key in the repository session's {@link RepositorySystemSession#getConfigProperties() configuration
+     * properties} used to store the maximum depth of the dependency graph, the root node has depth zero. A
+     * non-positive value (the default) disables this limit.
+     */
+    public static final String CONFIG_PROP_MAX_DEPTH = "aether.dependencyCollector.maxDepth";
+
+    /**
+     * The key in the repository session's {@link RepositorySystemSession#getConfigProperties() configuration
+     * properties} used to store the maximum duration of a collection in milliseconds, excluding the graph
+     * transformation. The limit is checked whenever a node is created, i.e. a single slow repository access is not
+     * interrupted. A non-positive value (the default) disables this limit.
+     */
+    public static final String CONFIG_PROP_TIMEOUT = "aether.dependencyCollector.timeout";
+
+    private static final String POOL_SNAPSHOT = DataPool.Snapshot.class.getName();
+
     @Requirement
     private Logger logger = NullLogger.INSTANCE;
 
@@ -74,6 +191,8 @@ public class DefaultDependencyCollector
     @Requirement
     private VersionRangeResolver versionRangeResolver;
 
+    private Executor prefetchExecutor;
+
     public void initService( ServiceLocator locator )
     {
         setLogger( locator.getService( Logger.class ) );
@@ -121,9 +240,19 @@ public class DefaultDependencyCollector
     public CollectResult collectDependencies( RepositorySystemSession session, CollectRequest request )
         throws DependencyCollectionException
     {
+        return collectDependencies( session, request, null );
+    }
+
+    public CollectResult collectDependencies( RepositorySystemSession session, CollectRequest request,
+                                              DependencyVisitor visitor )
+        throws DependencyCollectionException
+    {
+        long start = System.nanoTime();
+
         session = optimizeSession( session );
 
         CollectResult result = new CollectResult( request );
+        CollectStatistics stats = result.getStatistics();
 
         DependencySelector depSelector = session.getDependencySelector();
         DependencyManager depManager = session.getDependencyManager();
@@ -185,23 +314,130 @@ public class DefaultDependencyCollector
 
         result.setRoot( node );
 
+        if ( root != null )
+        {
+            stats.setDescriptorReads( 1 );
+            stats.setVersionRangeResolutions( 1 );
+        }
+        stats.setNodeCount( 1 );
+
         boolean traverse = ( root == null ) || depTraverser.traverseDependency( root );
 
+        if ( visitor != null )
+        {
+            traverse &= visitor.visitEnter( node );
+        }
+
         if ( traverse )
         {
-            DataPool pool = new DataPool( session );
+            boolean streaming = visitor != null;
+
+            boolean incremental = !streaming && ConfigUtils.getBoolean( session, false, CONFIG_PROP_INCREMENTAL );
+
+            DataPool.Snapshot previous = null;
+            if ( incremental && request.getPreviousResult() != null )
+            {
+                Object data = request.getPreviousResult().getData( POOL_SNAPSHOT );
+                if ( data instanceof DataPool.Snapshot )
+                {
+                    previous = (DataPool.Snapshot) data;
+                }
+            }
+
+            DataPool pool = new DataPool( session, previous );
+
+            boolean shareSubtrees =
+                !streaming && ConfigUtils.getBoolean( session, false, CONFIG_PROP_SHARE_SUBTREES );
+
+            Prefetcher prefetcher = null;
+            int threads = Math.max( 1, ConfigUtils.getInteger( session, 1, CONFIG_PROP_THREADS ) );
+            if ( ( threads > 1 || descriptorReader instanceof BatchArtifactDescriptorReader ) && !streaming )
+            {
+                prefetcher =
+                    new Prefetcher( session, pool, request.getRequestContext(), threads, getPrefetchExecutor(),
+                                    versionRangeResolver, descriptorReader );
+            }
+
+            Args args = new Args( session, result, pool, prefetcher, shareSubtrees, visitor );
+            args.maxNodes = ConfigUtils.getInteger( session, 0, CONFIG_PROP_MAX_NODES );
+            args.depthLimit = ConfigUtils.getInteger( session, 0, CONFIG_PROP_MAX_DEPTH );
+            long timeout = ConfigUtils.getInteger( session, 0, CONFIG_PROP_TIMEOUT );
+            if ( timeout > 0 )
+            {
+                args.deadline = start + timeout * 1000000;
+            }
 
-            process( session, result, node, dependencies, repositories, depSelector.deriveChildSelector( node ),
-                     depManager.deriveChildManager( node, managedDependencies ),
-                     depTraverser.deriveChildTraverser( node ), pool );
+            if ( !streaming && ConfigUtils.getBoolean( session, false, CONFIG_PROP_NEAREST_WINS ) )
+            {
+                args.breadthFirst();
+                if ( root != null )
+                {
+                    args.winners.put( getId( root.getArtifact() ), node );
+                }
+            }
+            args.trackRanges = incremental && args.useNodes;
+
+            long[] poolStats = getPoolStats( pool );
+
+            try
+            {
+                PersistentHashMap<Object, DependencyNode> ancestors = PersistentHashMap.emptyMap();
+                if ( root != null )
+                {
+                    ancestors = ancestors.put( new CoordinateKey( root.getArtifact() ), node );
+                }
+
+                process( args, node, ancestors, dependencies, repositories,
+                         pool.intern( depSelector.deriveChildSelector( node ) ),
+                         pool.intern( depManager.deriveChildManager( node, managedDependencies ) ),
+                         pool.intern( depTraverser.deriveChildTraverser( node ) ) );
+
+                if ( args.queue != null )
+                {
+                    for ( Expansion expansion; ( expansion = args.queue.poll() ) != null; )
+                    {
+                        expand( args, expansion );
+                    }
+                }
+            }
+            finally
+            {
+                if ( prefetcher != null )
+                {
+                    prefetcher.close();
+                }
+
+                updateStats( stats, args, poolStats );
+            }
+
+            if ( incremental )
+            {
+                result.setData( POOL_SNAPSHOT, pool.snapshot() );
+            }
+
+            /*
+             * The graph transformers modify the graph in place, the pooled nodes are protected from this by handing a
+             * copy of the graph to the transformers when they are about to be reused.
+             */
+            if ( ( shareSubtrees || incremental ) && session.getDependencyGraphTransformer() != null )
+            {
+                expandSharedNodes( node );
+            }
+        }
+
+        if ( visitor != null )
+        {
+            visitor.visitLeave( node );
         }
 
+        stats.setCollectTime( ( System.nanoTime() - start ) / 1000000 );
+
         DependencyGraphTransformer transformer = session.getDependencyGraphTransformer();
-        if ( transformer != null )
+        if ( transformer != null && visitor == null )
         {
             try
             {
-                result.setRoot( transformer.transformGraph( node ) );
+                result.setRoot( transformGraph( transformer, node, session.getConfigProperties(), stats ) );
             }
             catch ( RepositoryException e )
             {
@@ -209,6 +445,17 @@ public class DefaultDependencyCollector
             }
         }
 
+        if ( visitor == null && result.getRoot() != null
+            && ConfigUtils.getBoolean( session, false, CONFIG_PROP_COMPACT_GRAPH ) )
+        {
+            result.setRoot( CompactDependencyGraph.newInstance( result.getRoot() ).getRoot() );
+        }
+
+        if ( logger.isDebugEnabled() )
+        {
+            logger.debug( "Dependency collection statistics: " + stats );
+        }
+
         if ( !result.getExceptions().isEmpty() )
         {
             throw new DependencyCollectionException( result );
@@ -217,6 +464,116 @@ public class DefaultDependencyCollector
         return result;
     }
 
+    private synchronized Executor getPrefetchExecutor()
+    {
+        if ( prefetchExecutor == null )
+        {
+            prefetchExecutor = Prefetcher.newExecutor();
+        }
+        return prefetchExecutor;
+    }
+
+    private long[] getPoolStats( DataPool pool )
+    {
+        return new long[] { pool.getDescriptorCache().getHits(), pool.getDescriptorCache().getMisses(),
+            pool.getArtifactPool().getHits(), pool.getArtifactPool().getMisses(), pool.getDependencyPool().getHits(),
+            pool.getDependencyPool().getMisses(), pool.getConstraintCache().getHits(),
+            pool.getConstraintCache().getMisses() };
+    }
+
+    private void updateStats( CollectStatistics stats, Args args, long[] poolStats )
+    {
+        DataPool pool = args.pool;
+        long[] current = getPoolStats( pool );
+
+        long descriptorReads = stats.getDescriptorReads() + args.descriptorReads;
+        long rangeResolutions = stats.getVersionRangeResolutions() + args.rangeResolutions;
+        if ( args.prefetcher != null )
+        {
+            descriptorReads += args.prefetcher.getDescriptorReads();
+            rangeResolutions += args.prefetcher.getVersionRangeResolutions();
+        }
+        stats.setDescriptorReads( descriptorReads );
+        stats.setVersionRangeResolutions( rangeResolutions );
+        stats.setNodeCount( stats.getNodeCount() + args.nodeCount );
+        stats.setMaxDepth( args.maxDepth );
+
+        stats.setCacheStatistics( "descriptors", current[0] - poolStats[0], current[1] - poolStats[1] );
+        stats.setCacheStatistics( "versionRanges", current[6] - poolStats[6], current[7] - poolStats[7] );
+        stats.setCacheStatistics( "nodes", pool.getNodeHits(), pool.getNodeMisses() );
+        stats.setCacheStatistics( "artifacts", current[2] - poolStats[2], current[3] - poolStats[3] );
+        stats.setCacheStatistics( "dependencies", current[4] - poolStats[4], current[5] - poolStats[5] );
+    }
+
+    private DependencyNode transformGraph( DependencyGraphTransformer transformer, DependencyNode node,
+                                           Map<?, ?> configProperties, CollectStatistics stats )
+        throws RepositoryException
+    {
+        if ( !( transformer instanceof ChainedDependencyGraphTransformer ) )
+        {
+            return transformGraph( transformer, transformer.getClass().getSimpleName(), node, configProperties,
+                                   stats );
+        }
+
+        /*
+         * Time the members of a chain separately, except for runs of fusible transformers whose passes share traversals
+         * and are hence timed together.
+         */
+        List<DependencyGraphTransformer> fused = new ArrayList<DependencyGraphTransformer>();
+        StringBuilder name = new StringBuilder( 128 );
+        for ( DependencyGraphTransformer t : ( (ChainedDependencyGraphTransformer) transformer ).getTransformers() )
+        {
+            if ( t instanceof FusibleDependencyGraphTransformer )
+            {
+                fused.add( t );
+                name.append( ( name.length() > 0 ) ? "+" : "" ).append( t.getClass().getSimpleName() );
+                continue;
+            }
+            if ( !fused.isEmpty() )
+            {
+                node = transformGraph( newChain( fused ), name.toString(), node, configProperties, stats );
+                fused.clear();
+                name.setLength( 0 );
+            }
+            node = transformGraph( t, node, configProperties, stats );
+        }
+        if ( !fused.isEmpty() )
+        {
+            node = transformGraph( newChain( fused ), name.toString(), node, configProperties, stats );
+        }
+        return node;
+    }
+
+    private static DependencyGraphTransformer newChain( List<DependencyGraphTransformer> transformers )
+    {
+        DependencyGraphTransformer[] chain = transformers.toArray( new DependencyGraphTransformer[transformers.size()] );
+        return new ChainedDependencyGraphTransformer( chain );
+    }
+
+    private DependencyNode transformGraph( DependencyGraphTransformer transformer, String name, DependencyNode node,
+                                           Map<?, ?> configProperties, CollectStatistics stats )
+        throws RepositoryException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            // run fusible transformers within a chain to make the session's configuration available to their passes
+            if ( transformer instanceof FusibleDependencyGraphTransformer )
+            {
+                transformer = new ChainedDependencyGraphTransformer( transformer );
+            }
+            if ( transformer instanceof ChainedDependencyGraphTransformer )
+            {
+                return ( (ChainedDependencyGraphTransformer) transformer ).transformGraph( node, configProperties );
+            }
+            return transformer.transformGraph( node );
+        }
+        finally
+        {
+            stats.addTransformTime( name, ( System.nanoTime() - start ) / 1000000 );
+        }
+    }
+
     private RepositorySystemSession optimizeSession( RepositorySystemSession session )
     {
         DefaultRepositorySystemSession optimized = new DefaultRepositorySystemSession( session );
@@ -255,17 +612,33 @@ public class DefaultDependencyCollector
         return result;
     }
 
-    private String getId( Artifact a )
+    static String getId( Artifact a )
     {
         return a.getGroupId() + ':' + a.getArtifactId() + ':' + a.getClassifier() + ':' + a.getExtension();
     }
 
-    private void process( RepositorySystemSession session, CollectResult result, DependencyNode node,
+    /**
+     * Collects the children of the specified node.
+     * 
+     * @return {@code false} if the visitor of a streaming collection asked to skip the remaining siblings of a child,
+     *         {@code true} otherwise.
+     */
+    private boolean process( Args args, DependencyNode node, PersistentHashMap<Object, DependencyNode> ancestors,
                           List<Dependency> dependencies, List<RemoteRepository> repositories,
                           DependencySelector depSelector, DependencyManager depManager,
-                          DependencyTraverser depTraverser, DataPool pool )
+                          DependencyTraverser depTraverser )
         throws DependencyCollectionException
     {
+        RepositorySystemSession session = args.session;
+        CollectResult result = args.result;
+        DataPool pool = args.pool;
+        Prefetcher prefetcher = args.prefetcher;
+
+        if ( prefetcher != null )
+        {
+            prefetcher.prefetch( dependencies, repositories, depSelector, depManager );
+        }
+
         nextDependency: for ( Dependency dependency : dependencies )
         {
             boolean disableVersionManagement = false;
@@ -317,8 +690,13 @@ public class DefaultDependencyCollector
 
                     Object key = pool.toKey( rangeRequest );
                     rangeResult = pool.getConstraint( key, rangeRequest );
+                    if ( rangeResult == null && prefetcher != null )
+                    {
+                        rangeResult = prefetcher.getConstraint( key, rangeRequest );
+                    }
                     if ( rangeResult == null )
                     {
+                        args.rangeResolutions++;
                         rangeResult = versionRangeResolver.resolveVersionRange( session, rangeRequest );
                         pool.putConstraint( key, rangeResult );
                     }
@@ -328,6 +706,18 @@ public class DefaultDependencyCollector
                         throw new VersionRangeResolutionException( rangeResult, "No versions available for "
                             + dependency.getArtifact() + " within specified range" );
                     }
+
+                    if ( !rangeResult.getVersionConstraint().getRanges().isEmpty() )
+                    {
+                        if ( args.skipped != null )
+                        {
+                            args.stopPruning();
+                        }
+                        if ( args.trackRanges )
+                        {
+                            args.rangeUsed( pool.toRangeUse( key, rangeResult.getVersionConstraint() ) );
+                        }
+                    }
                 }
                 catch ( VersionRangeResolutionException e )
                 {
@@ -343,26 +733,25 @@ public class DefaultDependencyCollector
 
                     Object nodeKey = pool.toKey( d, repositories, depSelector, depManager, depTraverser );
 
-                    LightDependencyNode existingNode = pool.getNode( nodeKey );
+                    LightDependencyNode existingNode = args.useNodes ? pool.getNode( nodeKey ) : null;
                     if ( existingNode != null )
                     {
-                        // if ( existingNode.getDepth() > node.getDepth() + 1 )
+                        if ( args.trackRanges )
+                        {
+                            args.rangesUsed( pool.getNodeRanges( nodeKey ) );
+                        }
+                        if ( args.shareSubtrees )
                         {
-                            copyNodes( node, existingNode );
+                            node.getChildren().add( existingNode );
+                        }
+                        else
+                        {
+                            copyNodes( args, node, existingNode );
                         }
                         continue;
                     }
 
-                    List<RemoteRepository> repos = null;
-                    ArtifactRepository repo = rangeResult.getRepository( version );
-                    if ( repo instanceof RemoteRepository )
-                    {
-                        repos = Collections.singletonList( (RemoteRepository) repo );
-                    }
-                    else if ( repo == null )
-                    {
-                        repos = repositories;
-                    }
+                    List<RemoteRepository> repos = getRemoteRepositories( rangeResult, version, repositories );
 
                     ArtifactDescriptorResult descriptorResult;
                     try
@@ -381,9 +770,15 @@ public class DefaultDependencyCollector
                         {
                             Object key = pool.toKey( descriptorRequest );
                             descriptorResult = pool.getDescriptor( key, descriptorRequest );
+                            if ( descriptorResult == null && prefetcher != null )
+                            {
+                                descriptorResult = prefetcher.getDescriptor( key, descriptorRequest );
+                            }
                             if ( descriptorResult == null )
                             {
-                                descriptorResult = descriptorReader.readArtifactDescriptor( session, descriptorRequest );
+                                args.descriptorReads++;
+                                descriptorResult =
+                                    descriptorReader.readArtifactDescriptor( session, descriptorRequest );
                                 pool.putDescriptor( key, descriptorResult );
                             }
                             d = d.setArtifact( descriptorResult.getArtifact() );
@@ -395,8 +790,10 @@ public class DefaultDependencyCollector
                         continue;
                     }
 
-                    if ( findDuplicate( node, d.getArtifact() ) != null )
+                    Object coordinateKey = new CoordinateKey( d.getArtifact() );
+                    if ( ancestors.containsKey( coordinateKey ) )
                     {
+                        // cycle
                         continue;
                     }
 
@@ -425,77 +822,393 @@ public class DefaultDependencyCollector
                     info.setContext( result.getRequest().getRequestContext() );
 
                     LightDependencyNode child = new LightDependencyNode( info, node );
+                    args.nodeCreated( child );
 
-                    node.getChildren().add( child );
+                    Collection<DataPool.RangeUse> subtreeRanges = null;
 
-                    if ( traverse && !descriptorResult.getDependencies().isEmpty() )
+                    boolean expand = traverse;
+                    if ( args.visitor != null )
                     {
-                        process( session, result, child, descriptorResult.getDependencies(),
+                        expand &= args.visitor.visitEnter( child );
+                    }
+                    else
+                    {
+                        node.getChildren().add( child );
+                    }
+
+                    if ( args.queue != null )
+                    {
+                        if ( expand && !descriptorResult.getDependencies().isEmpty() )
+                        {
+                            Expansion expansion =
+                                new Expansion( child, ancestors.put( coordinateKey, child ), descriptorResult,
+                                               repositories, depSelector, depManager, depTraverser );
+                            if ( args.isLoser( child, getId( d.getArtifact() ) ) )
+                            {
+                                args.skipped.add( expansion );
+                            }
+                            else
+                            {
+                                args.queue.add( expansion );
+                            }
+                        }
+                        else if ( args.skipped != null )
+                        {
+                            args.isLoser( child, getId( d.getArtifact() ) );
+                        }
+                    }
+                    else if ( expand && !descriptorResult.getDependencies().isEmpty() )
+                    {
+                        Map<Object, DataPool.RangeUse> ranges = args.ranges;
+                        args.ranges = null;
+
+                        process( args, child, ancestors.put( coordinateKey, child ),
+                                 descriptorResult.getDependencies(),
                                  remoteRepositoryManager.aggregateRepositories( session, repositories,
                                                                                 descriptorResult.getRepositories(),
                                                                                 true ),
-                                 depSelector.deriveChildSelector( child ),
-                                 depManager.deriveChildManager( child, descriptorResult.getManagedDependencies() ),
-                                 depTraverser.deriveChildTraverser( child ), pool );
+                                 pool.intern( depSelector.deriveChildSelector( child ) ),
+                                 pool.intern( depManager.deriveChildManager( child,
+                                                                             descriptorResult.getManagedDependencies() ) ),
+                                 pool.intern( depTraverser.deriveChildTraverser( child ) ) );
+
+                        if ( args.ranges != null )
+                        {
+                            subtreeRanges = new ArrayList<DataPool.RangeUse>( args.ranges.values() );
+                        }
+                        args.ranges = ranges;
+                        args.rangesUsed( subtreeRanges );
                     }
 
-                    pool.putNode( nodeKey, child );
+                    if ( args.visitor != null )
+                    {
+                        if ( !args.visitor.visitLeave( child ) )
+                        {
+                            return false;
+                        }
+                    }
+                    else if ( args.useNodes )
+                    {
+                        pool.putNode( nodeKey, child, subtreeRanges );
+                    }
                 }
 
                 break;
             }
         }
+
+        return true;
+    }
+
+    private void expand( Args args, Expansion expansion )
+        throws DependencyCollectionException
+    {
+        DataPool pool = args.pool;
+        DependencyNode child = expansion.node;
+        ArtifactDescriptorResult descriptorResult = expansion.descriptorResult;
+        process( args, child, expansion.ancestors, descriptorResult.getDependencies(),
+                 remoteRepositoryManager.aggregateRepositories( args.session, expansion.repositories,
+                                                                descriptorResult.getRepositories(), true ),
+                 pool.intern( expansion.depSelector.deriveChildSelector( child ) ),
+                 pool.intern( expansion.depManager.deriveChildManager( child,
+                                                                       descriptorResult.getManagedDependencies() ) ),
+                 pool.intern( expansion.depTraverser.deriveChildTraverser( child ) ) );
+    }
+
+    static List<RemoteRepository> getRemoteRepositories( VersionRangeResult rangeResult, Version version,
+                                                         List<RemoteRepository> repositories )
+    {
+        ArtifactRepository repo = rangeResult.getRepository( version );
+        if ( repo instanceof RemoteRepository )
+        {
+            return Collections.singletonList( (RemoteRepository) repo );
+        }
+        else if ( repo == null )
+        {
+            return repositories;
+        }
+        return null;
+    }
+
+    private void expandSharedNodes( DependencyNode root )
+        throws DependencyCollectionException
+    {
+        List<DependencyNode> children = new ArrayList<DependencyNode>( root.getChildren() );
+        root.getChildren().clear();
+        for ( DependencyNode child : children )
+        {
+            copyNodes( null, root, child );
+        }
     }
 
-    private void copyNodes( DependencyNode parent, DependencyNode child )
+    private void copyNodes( Args args, DependencyNode parent, DependencyNode child )
+        throws DependencyCollectionException
     {
         DependencyNodeInfo info = ( (LightDependencyNode) child ).getInfo();
         LightDependencyNode clone = new LightDependencyNode( info, parent );
+        if ( args != null )
+        {
+            args.nodeCreated( clone );
+        }
 
         parent.getChildren().add( clone );
 
         for ( DependencyNode c : child.getChildren() )
         {
-            copyNodes( clone, c );
+            copyNodes( args, clone, c );
         }
     }
 
-    private DependencyNode findDuplicate( DependencyNode node, Artifact artifact )
+    static final class CoordinateKey
     {
-        for ( DependencyNode n = node; n != null; n = n.getParent() )
+
+        private final Artifact artifact;
+
+        private final int hashCode;
+
+        public CoordinateKey( Artifact artifact )
+        {
+            this.artifact = artifact;
+
+            int hash = 17;
+            hash = hash * 31 + artifact.getArtifactId().hashCode();
+            hash = hash * 31 + artifact.getGroupId().hashCode();
+            hash = hash * 31 + artifact.getBaseVersion().hashCode();
+            hash = hash * 31 + artifact.getExtension().hashCode();
+            hash = hash * 31 + artifact.getClassifier().hashCode();
+            hashCode = hash;
+        }
+
+        @Override
+        public boolean equals( Object obj )
         {
-            Dependency dependency = n.getDependency();
-            if ( dependency == null )
+            if ( obj == this )
             {
-                break;
+                return true;
+            }
+            else if ( !( obj instanceof CoordinateKey ) )
+            {
+                return false;
+            }
+            CoordinateKey that = (CoordinateKey) obj;
+            Artifact a = that.artifact;
+            return hashCode == that.hashCode && artifact.getArtifactId().equals( a.getArtifactId() )
+                && artifact.getGroupId().equals( a.getGroupId() )
+                && artifact.getBaseVersion().equals( a.getBaseVersion() )
+                && artifact.getExtension().equals( a.getExtension() )
+                && artifact.getClassifier().equals( a.getClassifier() );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+    }
+
+    static final class Expansion
+    {
+
+        final DependencyNode node;
+
+        final PersistentHashMap<Object, DependencyNode> ancestors;
+
+        final ArtifactDescriptorResult descriptorResult;
+
+        final List<RemoteRepository> repositories;
+
+        final DependencySelector depSelector;
+
+        final DependencyManager depManager;
+
+        final DependencyTraverser depTraverser;
+
+        public Expansion( DependencyNode node, PersistentHashMap<Object, DependencyNode> ancestors,
+                          ArtifactDescriptorResult descriptorResult, List<RemoteRepository> repositories,
+                          DependencySelector depSelector, DependencyManager depManager,
+                          DependencyTraverser depTraverser )
+        {
+            this.node = node;
+            this.ancestors = ancestors;
+            this.descriptorResult = descriptorResult;
+            this.repositories = repositories;
+            this.depSelector = depSelector;
+            this.depManager = depManager;
+            this.depTraverser = depTraverser;
+        }
+
+    }
+
+    static final class Args
+    {
+
+        final RepositorySystemSession session;
+
+        final CollectResult result;
+
+        final DataPool pool;
+
+        final Prefetcher prefetcher;
+
+        final boolean shareSubtrees;
+
+        final DependencyVisitor visitor;
+
+        boolean useNodes;
+
+        boolean trackRanges;
+
+        /**
+         * The version ranges used within the subtree being collected, keyed by the range, {@code null} if none.
+         */
+        Map<Object, DataPool.RangeUse> ranges;
+
+        Queue<Expansion> queue;
+
+        Map<String, DependencyNode> winners;
+
+        List<Expansion> skipped;
+
+        long descriptorReads;
+
+        long rangeResolutions;
+
+        long nodeCount;
+
+        int maxDepth;
+
+        long maxNodes;
+
+        int depthLimit;
+
+        long deadline;
+
+        public Args( RepositorySystemSession session, CollectResult result, DataPool pool, Prefetcher prefetcher,
+                     boolean shareSubtrees, DependencyVisitor visitor )
+        {
+            this.session = session;
+            this.result = result;
+            this.pool = pool;
+            this.prefetcher = prefetcher;
+            this.shareSubtrees = shareSubtrees;
+            this.visitor = visitor;
+            this.useNodes = visitor == null;
+        }
+
+        void breadthFirst()
+        {
+            useNodes = false;
+            queue = new LinkedList<Expansion>();
+            winners = new HashMap<String, DependencyNode>();
+            skipped = new ArrayList<Expansion>();
+        }
+
+        /**
+         * Determines whether the specified node loses against an earlier node of the same conflict group and
+         * remembers the node as the winner otherwise. Relocated nodes are never considered losers as they can merge
+         * conflict groups.
+         */
+        boolean isLoser( DependencyNode node, String conflictId )
+        {
+            if ( skipped == null )
+            {
+                return false;
+            }
+            boolean loser = winners.containsKey( conflictId );
+            if ( !loser )
+            {
+                winners.put( conflictId, node );
+            }
+            List<Artifact> relocations = node.getRelocations();
+            if ( !relocations.isEmpty() )
+            {
+                for ( Artifact relocation : relocations )
+                {
+                    String id = getId( relocation );
+                    if ( !winners.containsKey( id ) )
+                    {
+                        winners.put( id, node );
+                    }
+                }
+                loser = false;
             }
+            return loser;
+        }
 
-            Artifact a = dependency.getArtifact();
-            if ( !a.getArtifactId().equals( artifact.getArtifactId() ) )
+        void rangeUsed( DataPool.RangeUse range )
+        {
+            if ( ranges == null )
             {
-                continue;
+                ranges = new HashMap<Object, DataPool.RangeUse>();
             }
-            if ( !a.getGroupId().equals( artifact.getGroupId() ) )
+            DataPool.RangeUse seen = ranges.get( range.key );
+            if ( seen == null || seen.timestamp > range.timestamp )
             {
-                continue;
+                ranges.put( range.key, range );
             }
-            if ( !a.getBaseVersion().equals( artifact.getBaseVersion() ) )
+        }
+
+        void rangesUsed( Collection<DataPool.RangeUse> ranges )
+        {
+            if ( ranges != null )
             {
-                continue;
+                for ( DataPool.RangeUse range : ranges )
+                {
+                    rangeUsed( range );
+                }
             }
-            if ( !a.getExtension().equals( artifact.getExtension() ) )
+        }
+
+        void stopPruning()
+        {
+            queue.addAll( skipped );
+            skipped = null;
+            winners = null;
+        }
+
+        void nodeCreated( DependencyNode node )
+            throws DependencyCollectionException
+        {
+            nodeCount++;
+            maxDepth = Math.max( maxDepth, node.getDepth() );
+
+            if ( maxNodes > 0 && nodeCount + 1 > maxNodes )
             {
-                continue;
+                abort( "Dependency graph exceeds the limit of " + maxNodes + " nodes", node );
             }
-            if ( !a.getClassifier().equals( artifact.getClassifier() ) )
+            if ( depthLimit > 0 && node.getDepth() > depthLimit )
             {
-                continue;
+                abort( "Dependency graph exceeds the maximum depth of " + depthLimit, node );
             }
+            if ( deadline != 0 && System.nanoTime() - deadline > 0 )
+            {
+                abort( "Dependency collection exceeds its time limit", node );
+            }
+            if ( result.getRequest().isCancelled() || Thread.currentThread().isInterrupted() )
+            {
+                abort( "Dependency collection has been cancelled", node );
+            }
+        }
 
-            return n;
+        private void abort( String message, DependencyNode node )
+            throws DependencyCollectionException
+        {
+            StringBuilder path = new StringBuilder( 256 );
+            for ( DependencyNode n = node; n != null; n = n.getParent() )
+            {
+                if ( n.getDependency() != null )
+                {
+                    if ( path.length() > 0 )
+                    {
+                        path.insert( 0, " -> " );
+                    }
+                    path.insert( 0, n.getDependency().getArtifact() );
+                }
+            }
+            throw new DependencyCollectionException( result, message + " at " + path );
         }
 
-        return null;
     }
 
 }
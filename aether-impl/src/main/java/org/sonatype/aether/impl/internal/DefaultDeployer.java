@@ -256,6 +256,10 @@ public class DefaultDeployer
             {
                 throw new DeploymentException( "Failed to update metadata " + metadata + ": " + e.getMessage(), e );
             }
+            finally
+            {
+                VersioningCache.getInstance().invalidate( dstFile );
+            }
         }
         else if ( metadata instanceof MergeableMetadata )
         {
@@ -273,6 +277,7 @@ public class DefaultDeployer
             download.setFile( dstFile );
             download.setChecksumPolicy( policy.getChecksumPolicy() );
             connector.get( null, Arrays.asList( download ) );
+            VersioningCache.getInstance().invalidate( dstFile );
 
             if ( listener != null )
             {
@@ -297,6 +302,10 @@ public class DefaultDeployer
             {
                 throw new DeploymentException( "Failed to update metadata " + metadata + ": " + e.getMessage(), e );
             }
+            finally
+            {
+                VersioningCache.getInstance().invalidate( dstFile );
+            }
         }
         else
         {
@@ -308,6 +317,10 @@ public class DefaultDeployer
             {
                 throw new DeploymentException( "Failed to update metadata " + metadata + ": " + e.getMessage(), e );
             }
+            finally
+            {
+                VersioningCache.getInstance().invalidate( dstFile );
+            }
         }
 
         UpdateCheck<Metadata, MetadataTransferException> check = new UpdateCheck<Metadata, MetadataTransferException>();
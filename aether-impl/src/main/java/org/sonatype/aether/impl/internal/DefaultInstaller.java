@@ -174,6 +174,7 @@ public class DefaultInstaller
         }
         finally
         {
+            VersioningCache.getInstance().invalidate( dstFile );
             metadataInstalled( session, metadata, dstFile, exception );
         }
     }
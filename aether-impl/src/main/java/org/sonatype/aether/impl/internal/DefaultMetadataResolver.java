@@ -450,6 +450,8 @@ public class DefaultMetadataResolver
                     connector.close();
                 }
 
+                VersioningCache.getInstance().invalidate( metadataFile );
+
                 exception = download.getException();
 
                 if ( request.isDeleteLocalCopyIfMissing() && exception instanceof MetadataNotFoundException )
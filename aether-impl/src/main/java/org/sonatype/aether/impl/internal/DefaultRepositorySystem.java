@@ -33,6 +33,7 @@ import org.sonatype.aether.Dependency;
 import org.sonatype.aether.DependencyCollectionException;
 import org.sonatype.aether.DependencyFilter;
 import org.sonatype.aether.DependencyNode;
+import org.sonatype.aether.DependencyVisitor;
 import org.sonatype.aether.DeployRequest;
 import org.sonatype.aether.DeployResult;
 import org.sonatype.aether.DeploymentException;
@@ -57,12 +58,14 @@ import org.sonatype.aether.impl.DependencyCollector;
 import org.sonatype.aether.impl.Deployer;
 import org.sonatype.aether.impl.Installer;
 import org.sonatype.aether.impl.MetadataResolver;
+import org.sonatype.aether.impl.StreamingDependencyCollector;
 import org.sonatype.aether.impl.VersionRangeResolver;
 import org.sonatype.aether.impl.VersionResolver;
 import org.sonatype.aether.spi.locator.Service;
 import org.sonatype.aether.spi.locator.ServiceLocator;
 import org.sonatype.aether.spi.log.Logger;
 import org.sonatype.aether.spi.log.NullLogger;
+import org.sonatype.aether.util.graph.IterativeDependencyTraversal;
 
 /**
  * @author Benjamin Bentmann
@@ -242,6 +245,36 @@ public class DefaultRepositorySystem
         return dependencyCollector.collectDependencies( session, request );
     }
 
+    /**
+     * Collects the transitive dependencies of an artifact and streams the dependency nodes to the specified visitor. If
+     * the configured dependency collector is a {@link StreamingDependencyCollector}, the nodes are visited as they are
+     * discovered without retaining the graph, otherwise the complete graph is collected first and then visited.
+     * 
+     * @param session The repository session, must not be {@code null}.
+     * @param request The collection request, must not be {@code null}.
+     * @param visitor The visitor to notify of the collected dependency nodes, must not be {@code null}.
+     * @return The collection result, never {@code null}.
+     * @throws DependencyCollectionException If the dependency tree could not be built.
+     * @see StreamingDependencyCollector#collectDependencies(RepositorySystemSession, CollectRequest, DependencyVisitor)
+     */
+    public CollectResult collectDependencies( RepositorySystemSession session, CollectRequest request,
+                                              DependencyVisitor visitor )
+        throws DependencyCollectionException
+    {
+        if ( visitor == null )
+        {
+            throw new IllegalArgumentException( "dependency visitor has not been specified" );
+        }
+        if ( dependencyCollector instanceof StreamingDependencyCollector )
+        {
+            return ( (StreamingDependencyCollector) dependencyCollector ).collectDependencies( session, request,
+                                                                                                visitor );
+        }
+        CollectResult result = dependencyCollector.collectDependencies( session, request );
+        result.getRoot().accept( visitor );
+        return result;
+    }
+
     public List<ArtifactResult> resolveDependencies( RepositorySystemSession session, DependencyNode node,
                                                      DependencyFilter filter )
         throws ArtifactResolutionException
@@ -263,19 +296,27 @@ public class DefaultRepositorySystem
         return results;
     }
 
-    private void toArtifactRequest( List<ArtifactRequest> requests, DependencyNode node, DependencyFilter filter )
+    private void toArtifactRequest( final List<ArtifactRequest> requests, DependencyNode node,
+                                    final DependencyFilter filter )
     {
-        Dependency dependency = node.getDependency();
-        if ( dependency != null && ( filter == null || filter.accept( node ) ) )
+        IterativeDependencyTraversal.traverse( node, new DependencyVisitor()
         {
-            ArtifactRequest request = new ArtifactRequest( node );
-            requests.add( request );
-        }
+            public boolean visitEnter( DependencyNode node )
+            {
+                Dependency dependency = node.getDependency();
+                if ( dependency != null && ( filter == null || filter.accept( node ) ) )
+                {
+                    ArtifactRequest request = new ArtifactRequest( node );
+                    requests.add( request );
+                }
+                return true;
+            }
 
-        for ( DependencyNode child : node.getChildren() )
-        {
-            toArtifactRequest( requests, child, filter );
-        }
+            public boolean visitLeave( DependencyNode node )
+            {
+                return true;
+            }
+        } );
     }
 
     public List<ArtifactResult> resolveDependencies( RepositorySystemSession session, CollectRequest request,
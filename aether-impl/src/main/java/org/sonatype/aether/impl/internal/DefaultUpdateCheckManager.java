@@ -73,7 +73,7 @@ public class DefaultUpdateCheckManager
         return ordinalOfUpdatePolicy( policy1 ) < ordinalOfUpdatePolicy( policy2 ) ? policy1 : policy2;
     }
 
-    private int ordinalOfUpdatePolicy( String policy )
+    static int ordinalOfUpdatePolicy( String policy )
     {
         if ( RepositoryPolicy.UPDATE_POLICY_DAILY.equals( policy ) )
         {
@@ -292,7 +292,7 @@ public class DefaultUpdateCheckManager
         }
     }
 
-    private boolean isUpdatedRequired( long lastModified, String policy )
+    static boolean isUpdatedRequired( long lastModified, String policy )
     {
         boolean checkForUpdates;
 
@@ -14,18 +14,17 @@ package org.sonatype.aether.impl.internal;
  */
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
-import org.codehaus.plexus.util.IOUtil;
 import org.sonatype.aether.ArtifactRepository;
 import org.sonatype.aether.DefaultMetadata;
 import org.sonatype.aether.InvalidVersionException;
@@ -34,7 +33,9 @@ import org.sonatype.aether.Metadata;
 import org.sonatype.aether.MetadataRequest;
 import org.sonatype.aether.MetadataResult;
 import org.sonatype.aether.RemoteRepository;
+import org.sonatype.aether.RepositoryCache;
 import org.sonatype.aether.RepositoryListener;
+import org.sonatype.aether.RepositoryPolicy;
 import org.sonatype.aether.RepositorySystemSession;
 import org.sonatype.aether.Version;
 import org.sonatype.aether.VersionConstraint;
@@ -43,18 +44,22 @@ import org.sonatype.aether.VersionRangeRequest;
 import org.sonatype.aether.VersionRangeResolutionException;
 import org.sonatype.aether.VersionRangeResult;
 import org.sonatype.aether.WorkspaceReader;
+import org.sonatype.aether.WorkspaceRepository;
 import org.sonatype.aether.util.listener.DefaultRepositoryEvent;
-import org.sonatype.aether.util.version.MavenVersionRange;
+import org.sonatype.aether.util.version.VersionIntervals;
 import org.sonatype.aether.impl.MetadataResolver;
 import org.sonatype.aether.impl.VersionRangeResolver;
 import org.sonatype.aether.impl.metadata.Versioning;
-import org.sonatype.aether.impl.metadata.io.xpp3.MetadataXpp3Reader;
 import org.sonatype.aether.spi.locator.Service;
 import org.sonatype.aether.spi.locator.ServiceLocator;
 import org.sonatype.aether.spi.log.Logger;
 import org.sonatype.aether.spi.log.NullLogger;
 
 /**
+ * The default version range resolver. If the repository session has a {@link RepositoryCache}, the versions found for a
+ * range are cached in it and reused by later requests for the same range until the update policy of the involved
+ * repositories calls for a new check.
+ * 
  * @author Benjamin Bentmann
  */
 @Component( role = VersionRangeResolver.class )
@@ -70,6 +75,10 @@ public class DefaultVersionRangeResolver
     @Requirement
     private MetadataResolver metadataResolver;
 
+    private final VersionScheme versionScheme = new MavenVersionScheme();
+
+    private final VersioningCache versioningCache = VersioningCache.getInstance();
+
     public void initService( ServiceLocator locator )
     {
         setLogger( locator.getService( Logger.class ) );
@@ -97,12 +106,10 @@ public class DefaultVersionRangeResolver
     {
         VersionRangeResult result = new VersionRangeResult( request );
 
-        VersionScheme versionScheme = new MavenVersionScheme();
-
         VersionConstraint versionConstraint;
         try
         {
-            versionConstraint = parseConstraint( request.getArtifact().getVersion(), versionScheme );
+            versionConstraint = versionScheme.parseVersionConstraint( request.getArtifact().getVersion() );
         }
         catch ( InvalidVersionException e )
         {
@@ -118,20 +125,47 @@ public class DefaultVersionRangeResolver
         }
         else
         {
-            Map<String, ArtifactRepository> versionIndex =
-                getVersions( session, result, request, getNature( session, versionConstraint.getRanges() ) );
+            Metadata.Nature nature = getNature( versionConstraint.getRanges() );
+
+            Key cacheKey = null;
+            RepositoryCache cache = session.getCache();
+            if ( cache != null )
+            {
+                cacheKey = new Key( session, request );
+
+                Object obj = cache.get( session, cacheKey );
+                if ( obj instanceof Record )
+                {
+                    Record record = (Record) obj;
+                    String policy = getUpdatePolicy( session, request.getRepositories(), nature );
+                    if ( !DefaultUpdateCheckManager.isUpdatedRequired( record.timestamp, policy ) )
+                    {
+                        for ( int i = 0; i < record.versions.size(); i++ )
+                        {
+                            Version ver = record.versions.get( i );
+                            result.addVersion( ver );
+                            result.setRepository( ver, CacheUtils.getRepository( session, request.getRepositories(),
+                                                                                 record.repoClasses.get( i ),
+                                                                                 record.repoIds.get( i ) ) );
+                            versionConstraint.setPreferredVersion( ver );
+                        }
+                        return result;
+                    }
+                }
+            }
 
-            List<Version> versions = new ArrayList<Version>();
+            Map<String, ArtifactRepository> versionIndex = getVersions( session, result, request, nature );
+
+            List<Version> versions = new ArrayList<Version>( versionIndex.size() );
+            Map<Version, ArtifactRepository> repositories =
+                new IdentityHashMap<Version, ArtifactRepository>( versionIndex.size() * 2 );
             for ( Map.Entry<String, ArtifactRepository> v : versionIndex.entrySet() )
             {
                 try
                 {
                     Version ver = versionScheme.parseVersion( v.getKey() );
-                    if ( versionConstraint.containsVersion( ver ) )
-                    {
-                        versions.add( ver );
-                        result.setRepository( ver, v.getValue() );
-                    }
+                    versions.add( ver );
+                    repositories.put( ver, v.getValue() );
                 }
                 catch ( InvalidVersionException e )
                 {
@@ -140,16 +174,61 @@ public class DefaultVersionRangeResolver
             }
 
             Collections.sort( versions );
-            for ( Version ver : versions )
+            for ( Version ver : VersionIntervals.of( versionConstraint ).filterVersions( versions ) )
             {
                 result.addVersion( ver );
+                result.setRepository( ver, repositories.get( ver ) );
                 versionConstraint.setPreferredVersion( ver );
             }
+
+            if ( cacheKey != null && result.getExceptions().isEmpty() )
+            {
+                cache.put( session, cacheKey, new Record( result ) );
+            }
         }
 
         return result;
     }
 
+    /**
+     * Gets the update policy that applies to the cached versions of a range, i.e. the session's update policy if set
+     * and otherwise the most frequent policy among the enabled policies of the repositories.
+     */
+    static String getUpdatePolicy( RepositorySystemSession session, List<RemoteRepository> repositories,
+                                   Metadata.Nature nature )
+    {
+        String policy = session.getUpdatePolicy();
+        if ( policy != null && policy.length() > 0 )
+        {
+            return policy;
+        }
+
+        policy = RepositoryPolicy.UPDATE_POLICY_NEVER;
+        for ( RemoteRepository repository : repositories )
+        {
+            if ( nature != Metadata.Nature.SNAPSHOT )
+            {
+                policy = getUpdatePolicy( policy, repository.getPolicy( false ) );
+            }
+            if ( nature != Metadata.Nature.RELEASE )
+            {
+                policy = getUpdatePolicy( policy, repository.getPolicy( true ) );
+            }
+        }
+        return policy;
+    }
+
+    private static String getUpdatePolicy( String policy, RepositoryPolicy repoPolicy )
+    {
+        if ( repoPolicy.isEnabled()
+            && DefaultUpdateCheckManager.ordinalOfUpdatePolicy( repoPolicy.getUpdatePolicy() )
+                < DefaultUpdateCheckManager.ordinalOfUpdatePolicy( policy ) )
+        {
+            return repoPolicy.getUpdatePolicy();
+        }
+        return policy;
+    }
+
     private Map<String, ArtifactRepository> getVersions( RepositorySystemSession session, VersionRangeResult result,
                                                          VersionRangeRequest request, Metadata.Nature nature )
     {
@@ -209,7 +288,7 @@ public class DefaultVersionRangeResolver
         return versionIndex;
     }
 
-    private Metadata.Nature getNature( RepositorySystemSession session, Collection<VersionRange> ranges )
+    static Metadata.Nature getNature( Collection<VersionRange> ranges )
     {
         for ( VersionRange range : ranges )
         {
@@ -225,14 +304,11 @@ public class DefaultVersionRangeResolver
     {
         Versioning versioning = null;
 
-        FileInputStream fis = null;
         try
         {
             if ( metadata != null && metadata.getFile() != null )
             {
-                fis = new FileInputStream( metadata.getFile() );
-                org.sonatype.aether.impl.metadata.Metadata m = new MetadataXpp3Reader().read( fis, false );
-                versioning = m.getVersioning();
+                versioning = versioningCache.read( metadata.getFile() );
             }
         }
         catch ( FileNotFoundException e )
@@ -244,10 +320,6 @@ public class DefaultVersionRangeResolver
             invalidMetadata( session, metadata, e );
             result.addException( e );
         }
-        finally
-        {
-            IOUtil.close( fis );
-        }
 
         return ( versioning != null ) ? versioning : new Versioning();
     }
@@ -263,134 +335,107 @@ public class DefaultVersionRangeResolver
         }
     }
 
-    private VersionConstraint parseConstraint( String version, VersionScheme scheme )
-        throws InvalidVersionException
+    private static class Key
     {
-        VersionConstraint constraint = new VersionConstraint();
 
-        String process = version;
+        private final String groupId;
 
-        while ( process.startsWith( "[" ) || process.startsWith( "(" ) )
-        {
-            int index1 = process.indexOf( ")" );
-            int index2 = process.indexOf( "]" );
+        private final String artifactId;
 
-            int index = index2;
-            if ( index2 < 0 || ( index1 >= 0 && index1 < index2 ) )
-            {
-                index = index1;
-            }
+        private final String version;
 
-            if ( index < 0 )
-            {
-                throw new InvalidVersionException( version, "Unbounded version range " + version );
-            }
+        private final String context;
+
+        private final File localRepo;
 
-            VersionRange range = parseRange( process.substring( 0, index + 1 ), scheme );
-            constraint.addRange( range );
+        private final WorkspaceRepository workspace;
 
-            process = process.substring( index + 1 ).trim();
+        private final List<RemoteRepository> repositories;
 
-            if ( process.length() > 0 && process.startsWith( "," ) )
+        private final int hashCode;
+
+        public Key( RepositorySystemSession session, VersionRangeRequest request )
+        {
+            groupId = request.getArtifact().getGroupId();
+            artifactId = request.getArtifact().getArtifactId();
+            version = request.getArtifact().getVersion();
+            context = request.getRequestContext();
+            localRepo = session.getLocalRepository().getBasedir();
+            workspace = CacheUtils.getWorkspace( session );
+            repositories = new ArrayList<RemoteRepository>( request.getRepositories().size() );
+            for ( RemoteRepository repository : request.getRepositories() )
             {
-                process = process.substring( 1 ).trim();
+                if ( repository.isRepositoryManager() )
+                {
+                    repositories.addAll( repository.getMirroredRepositories() );
+                }
+                else
+                {
+                    repositories.add( repository );
+                }
             }
+
+            int hash = 17;
+            hash = hash * 31 + groupId.hashCode();
+            hash = hash * 31 + artifactId.hashCode();
+            hash = hash * 31 + version.hashCode();
+            hash = hash * 31 + localRepo.hashCode();
+            hash = hash * 31 + CacheUtils.repositoriesHashCode( repositories );
+            hashCode = hash;
         }
 
-        if ( process.length() > 0 && !constraint.getRanges().isEmpty() )
+        @Override
+        public boolean equals( Object obj )
         {
-            throw new InvalidVersionException( version, "Invalid version range " + version
-                + ", expected [ or ( but got " + process );
+            if ( obj == this )
+            {
+                return true;
+            }
+            else if ( obj == null || !getClass().equals( obj.getClass() ) )
+            {
+                return false;
+            }
+
+            Key that = (Key) obj;
+            return artifactId.equals( that.artifactId ) && groupId.equals( that.groupId )
+                && version.equals( that.version ) && context.equals( that.context )
+                && localRepo.equals( that.localRepo ) && CacheUtils.eq( workspace, that.workspace )
+                && CacheUtils.repositoriesEquals( repositories, that.repositories );
         }
 
-        if ( constraint.getRanges().isEmpty() )
+        @Override
+        public int hashCode()
         {
-            constraint.setPreferredVersion( scheme.parseVersion( version ) );
+            return hashCode;
         }
 
-        return constraint;
     }
 
-    private VersionRange parseRange( String range, VersionScheme scheme )
-        throws InvalidVersionException
+    private static class Record
     {
-        String process = range;
-
-        boolean lowerBoundInclusive;
-        if ( range.startsWith( "[" ) )
-        {
-            lowerBoundInclusive = true;
-        }
-        else if ( range.startsWith( "(" ) )
-        {
-            lowerBoundInclusive = false;
-        }
-        else
-        {
-            throw new InvalidVersionException( range, "Invalid version range " + range
-                + ", a range must start with either [ or (" );
-        }
-
-        boolean upperBoundInclusive;
-        if ( range.endsWith( "]" ) )
-        {
-            upperBoundInclusive = true;
-        }
-        else if ( range.endsWith( ")" ) )
-        {
-            upperBoundInclusive = false;
-        }
-        else
-        {
-            throw new InvalidVersionException( range, "Invalid version range " + range
-                + ", a range must end with either [ or (" );
-        }
-
-        process = process.substring( 1, process.length() - 1 );
 
-        VersionRange versionRange;
+        final List<Version> versions;
 
-        int index = process.indexOf( "," );
+        final List<String> repoIds;
 
-        if ( index < 0 )
-        {
-            if ( !lowerBoundInclusive || !upperBoundInclusive )
-            {
-                throw new InvalidVersionException( range, "Invalid version range " + range
-                    + ", single version must be surrounded by []" );
-            }
+        final List<Class<?>> repoClasses;
 
-            Version version = scheme.parseVersion( process.trim() );
+        final long timestamp;
 
-            versionRange = new MavenVersionRange( version, lowerBoundInclusive, version, upperBoundInclusive );
-        }
-        else
+        public Record( VersionRangeResult result )
         {
-            String lowerBound = process.substring( 0, index ).trim();
-            String upperBound = process.substring( index + 1 ).trim();
-
-            Version lowerVersion = null;
-            if ( lowerBound.length() > 0 )
-            {
-                lowerVersion = scheme.parseVersion( lowerBound );
-            }
-
-            Version upperVersion = null;
-            if ( upperBound.length() > 0 )
+            versions = new ArrayList<Version>( result.getVersions() );
+            repoIds = new ArrayList<String>( versions.size() );
+            repoClasses = new ArrayList<Class<?>>( versions.size() );
+            for ( Version version : versions )
             {
-                upperVersion = scheme.parseVersion( upperBound );
+                ArtifactRepository repository = result.getRepository( version );
+                repoIds.add( ( repository != null ) ? repository.getId() : null );
+                repoClasses.add( ( repository != null ) ? repository.getClass() : null );
             }
-
-            if ( upperVersion != null && lowerVersion != null && upperVersion.compareTo( lowerVersion ) < 0 )
-            {
-                throw new InvalidVersionException( range, "Invalid version range " + range
-                    + ", lower bound must not be greater than upper bound" );
-            }
-
-            versionRange = new MavenVersionRange( lowerVersion, lowerBoundInclusive, upperVersion, upperBoundInclusive );
+            timestamp = System.currentTimeMillis();
         }
 
-        return versionRange;
     }
 
 }
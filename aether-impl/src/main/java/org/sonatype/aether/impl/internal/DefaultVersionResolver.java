@@ -14,7 +14,6 @@ package org.sonatype.aether.impl.internal;
  */
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -24,7 +23,6 @@ import java.util.Map;
 
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
-import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.StringUtils;
 import org.sonatype.aether.Artifact;
 import org.sonatype.aether.ArtifactRepository;
@@ -48,7 +46,6 @@ import org.sonatype.aether.impl.VersionResolver;
 import org.sonatype.aether.impl.metadata.Snapshot;
 import org.sonatype.aether.impl.metadata.SnapshotVersion;
 import org.sonatype.aether.impl.metadata.Versioning;
-import org.sonatype.aether.impl.metadata.io.xpp3.MetadataXpp3Reader;
 import org.sonatype.aether.spi.locator.Service;
 import org.sonatype.aether.spi.locator.ServiceLocator;
 import org.sonatype.aether.spi.log.Logger;
@@ -76,6 +73,8 @@ public class DefaultVersionResolver
     @Requirement
     private MetadataResolver metadataResolver;
 
+    private final VersioningCache versioningCache = VersioningCache.getInstance();
+
     public void initService( ServiceLocator locator )
     {
         setLogger( locator.getService( Logger.class ) );
@@ -264,14 +263,11 @@ public class DefaultVersionResolver
     {
         Versioning versioning = null;
 
-        FileInputStream fis = null;
         try
         {
             if ( metadata != null && metadata.getFile() != null )
             {
-                fis = new FileInputStream( metadata.getFile() );
-                org.sonatype.aether.impl.metadata.Metadata m = new MetadataXpp3Reader().read( fis, false );
-                versioning = m.getVersioning();
+                versioning = versioningCache.read( metadata.getFile() );
             }
         }
         catch ( FileNotFoundException e )
@@ -283,10 +279,6 @@ public class DefaultVersionResolver
             invalidMetadata( session, metadata, e );
             result.addException( e );
         }
-        finally
-        {
-            IOUtil.close( fis );
-        }
 
         return ( versioning != null ) ? versioning : new Versioning();
     }
@@ -23,6 +23,7 @@ import org.sonatype.aether.DependencyVisitor;
 import org.sonatype.aether.RemoteRepository;
 import org.sonatype.aether.Version;
 import org.sonatype.aether.VersionConstraint;
+import org.sonatype.aether.util.graph.IterativeDependencyTraversal;
 
 /**
  * @author Benjamin Bentmann
@@ -172,18 +173,7 @@ final class LightDependencyNode
 
     public boolean accept( DependencyVisitor visitor )
     {
-        if ( visitor.visitEnter( this ) )
-        {
-            for ( DependencyNode child : getChildren() )
-            {
-                if ( !child.accept( visitor ) )
-                {
-                    break;
-                }
-            }
-        }
-
-        return visitor.visitLeave( this );
+        return IterativeDependencyTraversal.traverse( this, visitor );
     }
 
     @Override
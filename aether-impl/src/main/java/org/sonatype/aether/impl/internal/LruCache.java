@@ -0,0 +1,145 @@
+package org.sonatype.aether.impl.internal;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread-safe cache with a fixed capacity that evicts the least recently used entry once it is full. Unlike a
+ * {@link java.util.WeakHashMap}, the entries are strongly referenced and their lifetime does not depend on the garbage
+ * collector. The cache keeps track of its hits, misses and evictions.
+ * 
+ * @author Benjamin Bentmann
+ */
+final class LruCache<K, V>
+{
+
+    private final int maxSize;
+
+    private final Map<K, V> entries;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    /**
+     * Creates a new cache with the specified capacity.
+     * 
+     * @param maxSize The maximum number of entries to keep, a non-positive value effectively disables caching.
+     */
+    public LruCache( int maxSize )
+    {
+        this.maxSize = Math.max( 0, maxSize );
+        this.entries = new LinkedHashMap<K, V>( Math.min( this.maxSize, 256 ) + 1, 0.75f, true )
+        {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<K, V> eldest )
+            {
+                if ( size() > LruCache.this.maxSize )
+                {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+
+        };
+    }
+
+    public synchronized V get( Object key )
+    {
+        V value = entries.get( key );
+        if ( value != null )
+        {
+            hits++;
+        }
+        else
+        {
+            misses++;
+        }
+        return value;
+    }
+
+    /**
+     * Gets the value for the specified key without counting a hit or miss. Like {@link #get(Object)}, this marks the
+     * entry as recently used.
+     * 
+     * @param key The key of the entry to look up, may be {@code null}.
+     * @return The cached value or {@code null} if none.
+     */
+    public synchronized V peek( Object key )
+    {
+        return entries.get( key );
+    }
+
+    public synchronized void put( K key, V value )
+    {
+        entries.put( key, value );
+    }
+
+    public synchronized V remove( Object key )
+    {
+        return entries.remove( key );
+    }
+
+    /**
+     * Gets a snapshot of the entries of this cache, ordered from the least recently used to the most recently used
+     * entry. Taking the snapshot does not count as a use of the entries.
+     * 
+     * @return The (modifiable) snapshot of the entries, never {@code null}.
+     */
+    public synchronized Map<K, V> toMap()
+    {
+        return new LinkedHashMap<K, V>( entries );
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "size=" + entries.size() + "/" + maxSize + ", hits=" + hits + ", misses=" + misses + ", evictions="
+            + evictions;
+    }
+
+}
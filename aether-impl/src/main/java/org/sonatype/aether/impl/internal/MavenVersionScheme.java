@@ -13,20 +13,241 @@ package org.sonatype.aether.impl.internal;
  * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
  */
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 import org.sonatype.aether.InvalidVersionException;
+import org.sonatype.aether.Version;
+import org.sonatype.aether.VersionConstraint;
+import org.sonatype.aether.VersionRange;
 import org.sonatype.aether.util.version.MavenVersion;
+import org.sonatype.aether.util.version.MavenVersionRange;
 
 /**
+ * The Maven version scheme. The scheme keeps bounded caches of the versions and version constraints it has parsed
+ * such that repeated strings, e.g. the versions listed by the metadata of an artifact that is resolved for many ranges,
+ * yield shared instances instead of being parsed over and over again. As the scheme is shared by concurrent sessions
+ * and threads, the caches do not lock on lookups and do not count their hits and misses unless requested.
+ * 
  * @author Benjamin Bentmann
  */
 class MavenVersionScheme
     implements VersionScheme
 {
 
-    public MavenVersion parseVersion( String version )
+    static final int DEFAULT_MAX_VERSIONS = 4096;
+
+    static final int DEFAULT_MAX_CONSTRAINTS = 1024;
+
+    private final ConcurrentLruCache<String, Version> versions;
+
+    private final ConcurrentLruCache<String, VersionConstraint> constraints;
+
+    public MavenVersionScheme()
+    {
+        this( DEFAULT_MAX_VERSIONS, DEFAULT_MAX_CONSTRAINTS );
+    }
+
+    /**
+     * Creates a new version scheme with the specified cache capacities.
+     * 
+     * @param maxVersions The maximum number of parsed versions to keep, a non-positive value disables caching.
+     * @param maxConstraints The maximum number of parsed constraints to keep, a non-positive value disables caching.
+     */
+    public MavenVersionScheme( int maxVersions, int maxConstraints )
+    {
+        this( maxVersions, maxConstraints, false );
+    }
+
+    /**
+     * Creates a new version scheme with the specified cache capacities.
+     * 
+     * @param maxVersions The maximum number of parsed versions to keep, a non-positive value disables caching.
+     * @param maxConstraints The maximum number of parsed constraints to keep, a non-positive value disables caching.
+     * @param recordStats {@code true} to count the hits and misses of the caches, {@code false} otherwise.
+     */
+    MavenVersionScheme( int maxVersions, int maxConstraints, boolean recordStats )
+    {
+        versions = new ConcurrentLruCache<String, Version>( maxVersions, recordStats );
+        constraints = new ConcurrentLruCache<String, VersionConstraint>( maxConstraints, recordStats );
+    }
+
+    public Version parseVersion( String version )
+        throws InvalidVersionException
+    {
+        Version result = versions.get( version );
+        if ( result == null )
+        {
+            result = new MavenVersion( version );
+            versions.put( version, result );
+        }
+        return result;
+    }
+
+    public VersionConstraint parseVersionConstraint( String constraint )
+        throws InvalidVersionException
+    {
+        VersionConstraint result = constraints.get( constraint );
+        if ( result == null )
+        {
+            result = parseConstraint( constraint );
+            constraints.put( constraint, result );
+        }
+
+        /*
+         * NOTE: The API allows to update a constraint (e.g. the resolver records the preferred version), so the cached
+         * instance is never handed out. Its ranges are an immutable set which the returned constraint shares until a
+         * range is added to it, leaving a single small allocation per lookup.
+         */
+        return new VersionConstraint( result.getRanges(), result.getPreferredVersion() );
+    }
+
+    private VersionConstraint parseConstraint( String version )
         throws InvalidVersionException
     {
-        return new MavenVersion( version );
+        Set<VersionRange> ranges = new HashSet<VersionRange>();
+
+        String process = version;
+
+        while ( process.startsWith( "[" ) || process.startsWith( "(" ) )
+        {
+            int index1 = process.indexOf( ")" );
+            int index2 = process.indexOf( "]" );
+
+            int index = index2;
+            if ( index2 < 0 || ( index1 >= 0 && index1 < index2 ) )
+            {
+                index = index1;
+            }
+
+            if ( index < 0 )
+            {
+                throw new InvalidVersionException( version, "Unbounded version range " + version );
+            }
+
+            VersionRange range = parseRange( process.substring( 0, index + 1 ) );
+            ranges.add( range );
+
+            process = process.substring( index + 1 ).trim();
+
+            if ( process.length() > 0 && process.startsWith( "," ) )
+            {
+                process = process.substring( 1 ).trim();
+            }
+        }
+
+        if ( process.length() > 0 && !ranges.isEmpty() )
+        {
+            throw new InvalidVersionException( version, "Invalid version range " + version
+                + ", expected [ or ( but got " + process );
+        }
+
+        Version preferredVersion = null;
+        if ( ranges.isEmpty() )
+        {
+            preferredVersion = parseVersion( version );
+        }
+
+        return new VersionConstraint( Collections.unmodifiableSet( ranges ), preferredVersion );
+    }
+
+    private VersionRange parseRange( String range )
+        throws InvalidVersionException
+    {
+        String process = range;
+
+        boolean lowerBoundInclusive;
+        if ( range.startsWith( "[" ) )
+        {
+            lowerBoundInclusive = true;
+        }
+        else if ( range.startsWith( "(" ) )
+        {
+            lowerBoundInclusive = false;
+        }
+        else
+        {
+            throw new InvalidVersionException( range, "Invalid version range " + range
+                + ", a range must start with either [ or (" );
+        }
+
+        boolean upperBoundInclusive;
+        if ( range.endsWith( "]" ) )
+        {
+            upperBoundInclusive = true;
+        }
+        else if ( range.endsWith( ")" ) )
+        {
+            upperBoundInclusive = false;
+        }
+        else
+        {
+            throw new InvalidVersionException( range, "Invalid version range " + range
+                + ", a range must end with either [ or (" );
+        }
+
+        process = process.substring( 1, process.length() - 1 );
+
+        VersionRange versionRange;
+
+        int index = process.indexOf( "," );
+
+        if ( index < 0 )
+        {
+            if ( !lowerBoundInclusive || !upperBoundInclusive )
+            {
+                throw new InvalidVersionException( range, "Invalid version range " + range
+                    + ", single version must be surrounded by []" );
+            }
+
+            Version version = parseVersion( process.trim() );
+
+            versionRange = new MavenVersionRange( version, lowerBoundInclusive, version, upperBoundInclusive );
+        }
+        else
+        {
+            String lowerBound = process.substring( 0, index ).trim();
+            String upperBound = process.substring( index + 1 ).trim();
+
+            Version lowerVersion = null;
+            if ( lowerBound.length() > 0 )
+            {
+                lowerVersion = parseVersion( lowerBound );
+            }
+
+            Version upperVersion = null;
+            if ( upperBound.length() > 0 )
+            {
+                upperVersion = parseVersion( upperBound );
+            }
+
+            if ( upperVersion != null && lowerVersion != null && upperVersion.compareTo( lowerVersion ) < 0 )
+            {
+                throw new InvalidVersionException( range, "Invalid version range " + range
+                    + ", lower bound must not be greater than upper bound" );
+            }
+
+            versionRange = new MavenVersionRange( lowerVersion, lowerBoundInclusive, upperVersion, upperBoundInclusive );
+        }
+
+        return versionRange;
+    }
+
+    public ConcurrentLruCache<String, Version> getVersionCache()
+    {
+        return versions;
+    }
+
+    public ConcurrentLruCache<String, VersionConstraint> getConstraintCache()
+    {
+        return constraints;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "versions: " + versions + ", constraints: " + constraints;
     }
 
 }
@@ -12,35 +12,121 @@ package org.sonatype.aether.impl.internal;
  * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
  * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
  */
-
 import java.lang.ref.WeakReference;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Pool of immutable object instances, used to avoid excessive memory consumption of dependency graph.
+ * Pool of immutable object instances, used to avoid excessive memory consumption of dependency graph. The pool only
+ * weakly references the pooled instances, i.e. it never keeps an instance alive that is no longer used elsewhere. As
+ * the pool is shared by all collections within a session, it is split into segments that are locked independently of
+ * each other. The pool counts its hits (i.e. duplicates that were replaced by a pooled instance) and misses.
  * 
  * @author Benjamin Bentmann
  */
 class ObjectPool<T>
 {
 
-    private final Map<Object, WeakReference<T>> objects = new WeakHashMap<Object, WeakReference<T>>( 256 );
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    @SuppressWarnings( "unchecked" )
+    public ObjectPool()
+    {
+        segments = new ObjectPool.Segment[SEGMENTS];
+        for ( int i = 0; i < segments.length; i++ )
+        {
+            segments[i] = new Segment();
+        }
+    }
+
+    public T intern( T object )
+    {
+        int hash = object.hashCode();
+        hash ^= ( hash >>> 20 ) ^ ( hash >>> 12 );
+        hash ^= ( hash >>> 7 ) ^ ( hash >>> 4 );
+
+        return segments[hash & ( SEGMENTS - 1 )].intern( object );
+    }
+
+    /**
+     * Gets the number of instances currently held by this pool. As the instances are weakly referenced, this number
+     * can shrink at any time.
+     * 
+     * @return The number of pooled instances.
+     */
+    public int size()
+    {
+        int size = 0;
+        for ( Segment segment : segments )
+        {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Gets the ratio of interned objects that were replaced by an already pooled instance.
+     * 
+     * @return The deduplication rate, between {@code 0} and {@code 1}.
+     */
+    public double getDedupRate()
+    {
+        long h = hits.get();
+        long total = h + misses.get();
+        return ( total > 0 ) ? h / (double) total : 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses();
+    }
 
-    public synchronized T intern( T object )
+    private final class Segment
     {
-        WeakReference<T> pooledRef = objects.get( object );
-        if ( pooledRef != null )
+
+        private final Map<Object, WeakReference<T>> objects = new WeakHashMap<Object, WeakReference<T>>( 64 );
+
+        public synchronized T intern( T object )
         {
-            T pooled = pooledRef.get();
-            if ( pooled != null )
+            WeakReference<T> pooledRef = objects.get( object );
+            if ( pooledRef != null )
             {
-                return pooled;
+                T pooled = pooledRef.get();
+                if ( pooled != null )
+                {
+                    hits.incrementAndGet();
+                    return pooled;
+                }
             }
+
+            misses.incrementAndGet();
+            objects.put( object, new WeakReference<T>( object ) );
+            return object;
+        }
+
+        public synchronized int size()
+        {
+            return objects.size();
         }
 
-        objects.put( object, new WeakReference<T>( object ) );
-        return object;
     }
 
 }
@@ -0,0 +1,705 @@
+package org.sonatype.aether.impl.internal;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sonatype.aether.Artifact;
+import org.sonatype.aether.ArtifactDescriptorException;
+import org.sonatype.aether.ArtifactDescriptorRequest;
+import org.sonatype.aether.ArtifactDescriptorResult;
+import org.sonatype.aether.Dependency;
+import org.sonatype.aether.DependencyManagement;
+import org.sonatype.aether.DependencyManager;
+import org.sonatype.aether.DependencySelector;
+import org.sonatype.aether.RemoteRepository;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.Version;
+import org.sonatype.aether.VersionRangeRequest;
+import org.sonatype.aether.VersionRangeResolutionException;
+import org.sonatype.aether.VersionRangeResult;
+import org.sonatype.aether.impl.ArtifactDescriptorCallback;
+import org.sonatype.aether.impl.ArtifactDescriptorReader;
+import org.sonatype.aether.impl.BatchArtifactDescriptorReader;
+import org.sonatype.aether.impl.VersionRangeResolver;
+
+/**
+ * Resolves version ranges and reads artifact descriptors ahead of the dependency collector, running at most the given
+ * number of tasks at a time on an executor that is shared with other collections (see {@link #newExecutor()}).
+ * The collector still walks the graph sequentially and in the same order, it merely finds the results of the remote
+ * accesses for the siblings of a node already computed (or in progress) when it gets to them. Completed results are
+ * published to the {@link DataPool} and only the futures of pending or failed items are kept here, i.e. the prefetcher
+ * holds no second copy of the results. Failures are rethrown to the collector when it asks for the corresponding item
+ * and are discarded thereafter. If the descriptor reader supports batches, the descriptors for all versions of a group of
+ * siblings are read with a single batch request.
+ * 
+ * @author Benjamin Bentmann
+ */
+final class Prefetcher
+{
+
+    private final RepositorySystemSession session;
+
+    private final DataPool pool;
+
+    private final String context;
+
+    private final VersionRangeResolver versionRangeResolver;
+
+    private final ArtifactDescriptorReader descriptorReader;
+
+    private final BatchArtifactDescriptorReader batchReader;
+
+    private final Executor executor;
+
+    private final int threads;
+
+    private final LinkedList<Runnable> queue = new LinkedList<Runnable>();
+
+    private final Set<Thread> running = new HashSet<Thread>();
+
+    private int workers;
+
+    private boolean closed;
+
+    private final AtomicLong descriptorReads = new AtomicLong();
+
+    private final AtomicLong rangeResolutions = new AtomicLong();
+
+    private final ConcurrentHashMap<Object, FutureTask<VersionRangeResult>> constraints =
+        new ConcurrentHashMap<Object, FutureTask<VersionRangeResult>>( 256 );
+
+    private final ConcurrentHashMap<Object, FutureTask<ArtifactDescriptorResult>> descriptors =
+        new ConcurrentHashMap<Object, FutureTask<ArtifactDescriptorResult>>( 256 );
+
+    public Prefetcher( RepositorySystemSession session, DataPool pool, String context, int threads, Executor executor,
+                       VersionRangeResolver versionRangeResolver, ArtifactDescriptorReader descriptorReader )
+    {
+        this.session = session;
+        this.pool = pool;
+        this.context = context;
+        this.versionRangeResolver = versionRangeResolver;
+        this.descriptorReader = descriptorReader;
+        if ( descriptorReader instanceof BatchArtifactDescriptorReader )
+        {
+            this.batchReader = (BatchArtifactDescriptorReader) descriptorReader;
+        }
+        else
+        {
+            this.batchReader = null;
+        }
+        this.threads = threads;
+        this.executor = executor;
+    }
+
+    /**
+     * Creates an executor for prefetching that can be shared by all collections. Its daemon threads are started on
+     * demand and terminate when idle, the number of threads used by a single collection is limited by its prefetcher.
+     */
+    public static Executor newExecutor()
+    {
+        ThreadFactory threadFactory = new ThreadFactory()
+        {
+
+            private final AtomicInteger counter = new AtomicInteger();
+
+            public Thread newThread( Runnable r )
+            {
+                Thread thread = new Thread( r, "aether-prefetch-" + counter.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+
+        };
+        return new ThreadPoolExecutor( 0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                                       threadFactory );
+    }
+
+    private void execute( Runnable task )
+    {
+        synchronized ( queue )
+        {
+            if ( closed )
+            {
+                return;
+            }
+            queue.add( task );
+            if ( workers >= threads )
+            {
+                return;
+            }
+            workers++;
+        }
+        executor.execute( new Runnable()
+        {
+            public void run()
+            {
+                work();
+            }
+        } );
+    }
+
+    void work()
+    {
+        Thread thread = Thread.currentThread();
+        while ( true )
+        {
+            Runnable task;
+            synchronized ( queue )
+            {
+                task = closed ? null : queue.poll();
+                if ( task == null )
+                {
+                    workers--;
+                    queue.notifyAll();
+                    return;
+                }
+                running.add( thread );
+            }
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                synchronized ( queue )
+                {
+                    running.remove( thread );
+                }
+                // clear a possible interrupt from close() before the shared thread is reused
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * Schedules the version range resolution and descriptor reads for the specified sibling dependencies. The
+     * dependency selector and manager are applied exactly like the collector does for the first pass over a
+     * dependency, i.e. relocations that are discovered later on are not prefetched.
+     */
+    public void prefetch( List<Dependency> dependencies, List<RemoteRepository> repositories,
+                          DependencySelector depSelector, DependencyManager depManager )
+    {
+        if ( batchReader != null )
+        {
+            prefetchBatch( dependencies, repositories, depSelector, depManager );
+            return;
+        }
+
+        for ( Dependency dependency : dependencies )
+        {
+            dependency = manage( dependency, depSelector, depManager );
+            if ( dependency == null )
+            {
+                continue;
+            }
+
+            VersionRangeRequest rangeRequest = newRangeRequest( dependency, repositories );
+
+            Object key = pool.toKey( rangeRequest );
+            VersionRangeResult rangeResult = pool.peekConstraint( key, rangeRequest );
+            if ( rangeResult != null )
+            {
+                prefetchDescriptors( dependency, repositories, rangeResult );
+            }
+            else
+            {
+                prefetchConstraint( key, dependency, repositories, rangeRequest );
+            }
+        }
+    }
+
+    private Dependency manage( Dependency dependency, DependencySelector depSelector, DependencyManager depManager )
+    {
+        if ( !depSelector.selectDependency( dependency ) )
+        {
+            return null;
+        }
+
+        DependencyManagement depMngt = depManager.manageDependency( dependency );
+        if ( depMngt != null && depMngt.getVersion() != null )
+        {
+            Artifact artifact = dependency.getArtifact();
+            dependency = dependency.setArtifact( artifact.setVersion( depMngt.getVersion() ) );
+        }
+
+        return dependency;
+    }
+
+    private VersionRangeRequest newRangeRequest( Dependency dependency, List<RemoteRepository> repositories )
+    {
+        VersionRangeRequest rangeRequest = new VersionRangeRequest();
+        rangeRequest.setArtifact( dependency.getArtifact() );
+        rangeRequest.setRepositories( repositories );
+        rangeRequest.setRequestContext( context );
+        return rangeRequest;
+    }
+
+    private ArtifactDescriptorRequest newDescriptorRequest( Dependency dependency, List<RemoteRepository> repositories,
+                                                            VersionRangeResult rangeResult, Version version )
+    {
+        ArtifactDescriptorRequest descriptorRequest = new ArtifactDescriptorRequest();
+        descriptorRequest.setArtifact( dependency.getArtifact().setVersion( version.toString() ) );
+        descriptorRequest.setRepositories( DefaultDependencyCollector.getRemoteRepositories( rangeResult, version,
+                                                                                           repositories ) );
+        descriptorRequest.setRequestContext( context );
+        return descriptorRequest;
+    }
+
+    private void prefetchBatch( List<Dependency> dependencies, final List<RemoteRepository> repositories,
+                                DependencySelector depSelector, DependencyManager depManager )
+    {
+        final List<Sibling> siblings = new ArrayList<Sibling>( dependencies.size() );
+
+        for ( Dependency dependency : dependencies )
+        {
+            dependency = manage( dependency, depSelector, depManager );
+            if ( dependency == null || dependency.getArtifact().getFile() != null )
+            {
+                continue;
+            }
+
+            Sibling sibling = new Sibling( dependency, newRangeRequest( dependency, repositories ) );
+            sibling.rangeKey = pool.toKey( sibling.rangeRequest );
+            sibling.rangeResult = pool.peekConstraint( sibling.rangeKey, sibling.rangeRequest );
+            if ( sibling.rangeResult == null )
+            {
+                Pending<VersionRangeResult> range = new Pending<VersionRangeResult>();
+                if ( constraints.putIfAbsent( sibling.rangeKey, range ) != null )
+                {
+                    // another batch takes care of this range and its descriptors
+                    continue;
+                }
+                sibling.range = range;
+            }
+            siblings.add( sibling );
+        }
+
+        if ( !siblings.isEmpty() )
+        {
+            execute( new Runnable()
+            {
+                public void run()
+                {
+                    readBatch( siblings, repositories );
+                }
+            } );
+        }
+    }
+
+    void readBatch( List<Sibling> siblings, List<RemoteRepository> repositories )
+    {
+        final Map<ArtifactDescriptorRequest, Pending<ArtifactDescriptorResult>> requests =
+            new LinkedHashMap<ArtifactDescriptorRequest, Pending<ArtifactDescriptorResult>>();
+
+        for ( Sibling sibling : siblings )
+        {
+            VersionRangeResult rangeResult = sibling.rangeResult;
+            if ( rangeResult == null )
+            {
+                try
+                {
+                    rangeResolutions.incrementAndGet();
+                    rangeResult = versionRangeResolver.resolveVersionRange( session, sibling.rangeRequest );
+                }
+                catch ( VersionRangeResolutionException e )
+                {
+                    sibling.range.setException( e );
+                    continue;
+                }
+                catch ( RuntimeException e )
+                {
+                    sibling.range.setException( e );
+                    continue;
+                }
+            }
+
+            // schedule descriptors before publishing the range to ensure the collector will find them
+            for ( Version version : rangeResult.getVersions() )
+            {
+                ArtifactDescriptorRequest descriptorRequest =
+                    newDescriptorRequest( sibling.dependency, repositories, rangeResult, version );
+
+                Object key = pool.toKey( descriptorRequest );
+                if ( descriptors.containsKey( key ) || pool.hasDescriptor( key ) )
+                {
+                    continue;
+                }
+
+                Pending<ArtifactDescriptorResult> descriptor = new Pending<ArtifactDescriptorResult>( key );
+                if ( descriptors.putIfAbsent( key, descriptor ) == null )
+                {
+                    requests.put( descriptorRequest, descriptor );
+                }
+            }
+
+            if ( sibling.range != null )
+            {
+                pool.putConstraint( sibling.rangeKey, rangeResult );
+                sibling.range.set( rangeResult );
+                constraints.remove( sibling.rangeKey, sibling.range );
+            }
+        }
+
+        if ( requests.isEmpty() )
+        {
+            return;
+        }
+
+        descriptorReads.addAndGet( requests.size() );
+        try
+        {
+            batchReader.readArtifactDescriptors( session, requests.keySet(), new ArtifactDescriptorCallback()
+            {
+                public void descriptorRead( ArtifactDescriptorResult result )
+                {
+                    Pending<ArtifactDescriptorResult> descriptor = requests.get( result.getRequest() );
+                    if ( descriptor != null )
+                    {
+                        pool.putDescriptor( descriptor.key, result );
+                        descriptor.set( result );
+                        descriptors.remove( descriptor.key, descriptor );
+                    }
+                }
+
+                public void descriptorFailed( ArtifactDescriptorException exception )
+                {
+                    Pending<ArtifactDescriptorResult> descriptor =
+                        requests.get( exception.getResult().getRequest() );
+                    if ( descriptor != null )
+                    {
+                        descriptor.setException( exception );
+                    }
+                }
+            } );
+        }
+        catch ( RuntimeException e )
+        {
+            for ( Pending<ArtifactDescriptorResult> descriptor : requests.values() )
+            {
+                descriptor.setException( e );
+            }
+        }
+        finally
+        {
+            for ( Map.Entry<ArtifactDescriptorRequest, Pending<ArtifactDescriptorResult>> entry : requests.entrySet() )
+            {
+                entry.getValue().setException( new IllegalStateException( "batch reader provided no result for "
+                    + entry.getKey().getArtifact() ) );
+            }
+        }
+    }
+
+    private void prefetchConstraint( final Object key, final Dependency dependency,
+                                     final List<RemoteRepository> repositories, final VersionRangeRequest rangeRequest )
+    {
+        if ( constraints.containsKey( key ) )
+        {
+            return;
+        }
+
+        FutureTask<VersionRangeResult> task = new FutureTask<VersionRangeResult>( new Callable<VersionRangeResult>()
+        {
+            public VersionRangeResult call()
+                throws Exception
+            {
+                rangeResolutions.incrementAndGet();
+                VersionRangeResult rangeResult = versionRangeResolver.resolveVersionRange( session, rangeRequest );
+                // schedule descriptors before publishing the range to ensure the collector will find them
+                prefetchDescriptors( dependency, repositories, rangeResult );
+                pool.putConstraint( key, rangeResult );
+                // the result is available from the pool now, the future is only kept while pending or failed
+                constraints.remove( key );
+                return rangeResult;
+            }
+        } );
+
+        if ( constraints.putIfAbsent( key, task ) == null )
+        {
+            execute( task );
+        }
+    }
+
+    private void prefetchDescriptors( Dependency dependency, List<RemoteRepository> repositories,
+                                      VersionRangeResult rangeResult )
+    {
+        if ( dependency.getArtifact().getFile() != null )
+        {
+            // system dependency, there's no descriptor to read
+            return;
+        }
+
+        for ( Version version : rangeResult.getVersions() )
+        {
+            final ArtifactDescriptorRequest descriptorRequest =
+                newDescriptorRequest( dependency, repositories, rangeResult, version );
+
+            final Object key = pool.toKey( descriptorRequest );
+            if ( descriptors.containsKey( key ) || pool.hasDescriptor( key ) )
+            {
+                continue;
+            }
+
+            FutureTask<ArtifactDescriptorResult> task =
+                new FutureTask<ArtifactDescriptorResult>( new Callable<ArtifactDescriptorResult>()
+                {
+                    public ArtifactDescriptorResult call()
+                        throws Exception
+                    {
+                        descriptorReads.incrementAndGet();
+                        ArtifactDescriptorResult descriptorResult =
+                            descriptorReader.readArtifactDescriptor( session, descriptorRequest );
+                        pool.putDescriptor( key, descriptorResult );
+                        descriptors.remove( key );
+                        return descriptorResult;
+                    }
+                } );
+
+            if ( descriptors.putIfAbsent( key, task ) == null )
+            {
+                execute( task );
+            }
+        }
+    }
+
+    /**
+     * Waits for the prefetched version range with the specified key. The future of the range is discarded once its
+     * result has been handed out.
+     * 
+     * @return The version range result or {@code null} if the range has not been scheduled for prefetching.
+     */
+    public VersionRangeResult getConstraint( Object key, VersionRangeRequest request )
+        throws VersionRangeResolutionException
+    {
+        FutureTask<VersionRangeResult> task = constraints.get( key );
+        if ( task == null )
+        {
+            // the range might have completed since the collector looked it up, which already counted the miss
+            return pool.peekConstraint( key, request );
+        }
+        try
+        {
+            return task.get();
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if ( cause instanceof VersionRangeResolutionException )
+            {
+                throw (VersionRangeResolutionException) cause;
+            }
+            throw unchecked( cause );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        finally
+        {
+            if ( task.isDone() )
+            {
+                constraints.remove( key, task );
+            }
+        }
+    }
+
+    /**
+     * Waits for the prefetched artifact descriptor with the specified key. The future of the descriptor is discarded
+     * once its result has been handed out.
+     * 
+     * @return The descriptor result or {@code null} if the descriptor has not been scheduled for prefetching.
+     */
+    public ArtifactDescriptorResult getDescriptor( Object key, ArtifactDescriptorRequest request )
+        throws ArtifactDescriptorException
+    {
+        FutureTask<ArtifactDescriptorResult> task = descriptors.get( key );
+        if ( task == null )
+        {
+            // the descriptor might have completed since the collector looked it up, which already counted the miss
+            return pool.peekDescriptor( key, request );
+        }
+        try
+        {
+            return task.get();
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if ( cause instanceof ArtifactDescriptorException )
+            {
+                throw (ArtifactDescriptorException) cause;
+            }
+            throw unchecked( cause );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        finally
+        {
+            if ( task.isDone() )
+            {
+                descriptors.remove( key, task );
+            }
+        }
+    }
+
+    /**
+     * The dependency of a sibling group whose descriptors are read in a batch.
+     */
+    static final class Sibling
+    {
+
+        final Dependency dependency;
+
+        final VersionRangeRequest rangeRequest;
+
+        Object rangeKey;
+
+        VersionRangeResult rangeResult;
+
+        Pending<VersionRangeResult> range;
+
+        public Sibling( Dependency dependency, VersionRangeRequest rangeRequest )
+        {
+            this.dependency = dependency;
+            this.rangeRequest = rangeRequest;
+        }
+
+    }
+
+    /**
+     * A future whose value is set by a batch instead of computed by a task. Setting the value of an already completed
+     * future has no effect.
+     */
+    static final class Pending<V>
+        extends FutureTask<V>
+    {
+
+        private static final Runnable NOOP = new Runnable()
+        {
+            public void run()
+            {
+                // not used
+            }
+        };
+
+        final Object key;
+
+        public Pending()
+        {
+            this( null );
+        }
+
+        public Pending( Object key )
+        {
+            super( NOOP, null );
+            this.key = key;
+        }
+
+        @Override
+        public void set( V value )
+        {
+            super.set( value );
+        }
+
+        @Override
+        public void setException( Throwable exception )
+        {
+            super.setException( exception );
+        }
+
+    }
+
+    private static RuntimeException unchecked( Throwable cause )
+    {
+        if ( cause instanceof RuntimeException )
+        {
+            return (RuntimeException) cause;
+        }
+        if ( cause instanceof Error )
+        {
+            throw (Error) cause;
+        }
+        return new IllegalStateException( cause );
+    }
+
+    /**
+     * Gets the number of futures held by this prefetcher, i.e. of the items that are still pending or whose failure
+     * has not been handed out yet.
+     */
+    int getPendingCount()
+    {
+        return constraints.size() + descriptors.size();
+    }
+
+    public long getDescriptorReads()
+    {
+        return descriptorReads.get();
+    }
+
+    public long getVersionRangeResolutions()
+    {
+        return rangeResolutions.get();
+    }
+
+    /**
+     * Discards any pending prefetches, interrupts the running ones and waits for them to finish, such that no
+     * repository is accessed on behalf of the collection once this method returns.
+     */
+    public void close()
+    {
+        synchronized ( queue )
+        {
+            closed = true;
+            queue.clear();
+            for ( Thread thread : running )
+            {
+                thread.interrupt();
+            }
+            while ( workers > 0 )
+            {
+                try
+                {
+                    queue.wait();
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+}
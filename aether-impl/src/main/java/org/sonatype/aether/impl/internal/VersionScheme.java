@@ -15,6 +15,7 @@ package org.sonatype.aether.impl.internal;
 
 import org.sonatype.aether.InvalidVersionException;
 import org.sonatype.aether.Version;
+import org.sonatype.aether.VersionConstraint;
 
 /**
  * @author Benjamin Bentmann
@@ -25,4 +26,14 @@ interface VersionScheme
     Version parseVersion( String version )
         throws InvalidVersionException;
 
+    /**
+     * Parses the specified version constraint, i.e. either a single version or a comma separated list of ranges.
+     * 
+     * @param constraint The constraint to parse, must not be {@code null}.
+     * @return The parsed constraint, never {@code null}. The caller may freely update the returned instance.
+     * @throws InvalidVersionException If the constraint is invalid.
+     */
+    VersionConstraint parseVersionConstraint( String constraint )
+        throws InvalidVersionException;
+
 }
@@ -0,0 +1,153 @@
+package org.sonatype.aether.impl.internal;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.sonatype.aether.impl.metadata.Versioning;
+import org.sonatype.aether.impl.metadata.io.xpp3.MetadataXpp3Reader;
+
+/**
+ * A cache of the versioning information parsed from {@code maven-metadata.xml} files. The cache is shared by all
+ * sessions within the JVM and holds a bounded number of files, evicting the least recently used one. A cached entry is
+ * only used as long as the size and the modification timestamp of its file are unchanged, besides components that
+ * (re)write a metadata file should {@link #invalidate(File) invalidate} its entry as a rewrite within the granularity of
+ * the file system timestamps could go unnoticed otherwise. The returned versioning is shared among all readers of the
+ * file and must not be modified.
+ * 
+ * @author Benjamin Bentmann
+ */
+final class VersioningCache
+{
+
+    static final int DEFAULT_MAX_SIZE = 4096;
+
+    private static final VersioningCache INSTANCE = new VersioningCache( DEFAULT_MAX_SIZE );
+
+    private final LruCache<String, Entry> entries;
+
+    /**
+     * Gets the cache shared by all sessions.
+     * 
+     * @return The shared cache, never {@code null}.
+     */
+    public static VersioningCache getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Creates a new cache with the specified capacity.
+     * 
+     * @param maxSize The maximum number of metadata files to keep, a non-positive value effectively disables caching.
+     */
+    public VersioningCache( int maxSize )
+    {
+        entries = new LruCache<String, Entry>( maxSize );
+    }
+
+    /**
+     * Reads the versioning from the specified metadata file, parsing the file only if it is not cached or has changed
+     * since it was cached.
+     * 
+     * @param file The metadata file to read, must not be {@code null}.
+     * @return The (read-only) versioning of the metadata or {@code null} if the metadata has none.
+     * @throws IOException If the file could not be read, e.g. because it does not exist.
+     * @throws XmlPullParserException If the file could not be parsed.
+     */
+    public Versioning read( File file )
+        throws IOException, XmlPullParserException
+    {
+        String key = getKey( file );
+        long length = file.length();
+        long lastModified = file.lastModified();
+
+        Entry entry = entries.get( key );
+        if ( entry != null && entry.length == length && entry.lastModified == lastModified )
+        {
+            return entry.versioning;
+        }
+
+        Versioning versioning;
+        FileInputStream fis = new FileInputStream( file );
+        try
+        {
+            versioning = new MetadataXpp3Reader().read( fis, false ).getVersioning();
+        }
+        finally
+        {
+            IOUtil.close( fis );
+        }
+
+        entries.put( key, new Entry( length, lastModified, versioning ) );
+
+        return versioning;
+    }
+
+    /**
+     * Discards the cached versioning of the specified metadata file, if any.
+     * 
+     * @param file The metadata file that has been (re)written or deleted, must not be {@code null}.
+     */
+    public void invalidate( File file )
+    {
+        entries.remove( getKey( file ) );
+    }
+
+    private static String getKey( File file )
+    {
+        try
+        {
+            return file.getCanonicalPath();
+        }
+        catch ( IOException e )
+        {
+            return file.getAbsolutePath();
+        }
+    }
+
+    public LruCache<String, ?> getEntryCache()
+    {
+        return entries;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "files: " + entries;
+    }
+
+    private static final class Entry
+    {
+
+        final long length;
+
+        final long lastModified;
+
+        final Versioning versioning;
+
+        public Entry( long length, long lastModified, Versioning versioning )
+        {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.versioning = versioning;
+        }
+
+    }
+
+}
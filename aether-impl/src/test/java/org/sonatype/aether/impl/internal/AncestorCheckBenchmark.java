@@ -0,0 +1,153 @@
+package org.sonatype.aether.impl.internal;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import org.sonatype.aether.Artifact;
+import org.sonatype.aether.DefaultArtifact;
+import org.sonatype.aether.Dependency;
+import org.sonatype.aether.DependencyNode;
+import org.sonatype.aether.util.PersistentHashMap;
+import org.sonatype.aether.util.graph.DefaultDependencyNode;
+
+/**
+ * Compares the cycle check of the dependency collector, i.e. a lookup in the persistent map of ancestor coordinates,
+ * with the previous walk up the parent chain. For each depth, a chain of nodes is built and the check is performed for
+ * a set of candidate children that mostly do not occur among the ancestors, like in a real graph. This is not a unit
+ * test, run it via its main method.
+ * 
+ * @author Benjamin Bentmann
+ */
+public class AncestorCheckBenchmark
+{
+
+    private static final int CANDIDATES = 16;
+
+    private static final int ROUNDS = 20000;
+
+    public static void main( String[] args )
+    {
+        int[] depths = { 5, 10, 30, 60, 100 };
+
+        // warm up
+        for ( int depth : depths )
+        {
+            run( depth, ROUNDS / 10 );
+        }
+
+        System.out.println( "depth  parent-walk[ns/check]  ancestor-map[ns/check]" );
+        for ( int depth : depths )
+        {
+            long[] times = run( depth, ROUNDS );
+            long checks = (long) ROUNDS * CANDIDATES;
+            System.out.println( String.format( "%5d  %21.1f  %22.1f", depth, times[0] / (double) checks, times[1]
+                / (double) checks ) );
+        }
+    }
+
+    private static long[] run( int depth, int rounds )
+    {
+        DependencyNode node = null;
+        PersistentHashMap<Object, DependencyNode> ancestors = PersistentHashMap.emptyMap();
+        for ( int i = 0; i < depth; i++ )
+        {
+            Artifact artifact = new DefaultArtifact( "org.example.group" + i, "artifact-" + i, "jar", "1.0." + i );
+            node = new DefaultDependencyNode( new Dependency( artifact, "compile" ), node );
+            ancestors = ancestors.put( new DefaultDependencyCollector.CoordinateKey( artifact ), node );
+        }
+
+        Artifact[] candidates = new Artifact[CANDIDATES];
+        for ( int i = 0; i < candidates.length; i++ )
+        {
+            int id = ( i == 0 ) ? 0 : depth + i;
+            candidates[i] = new DefaultArtifact( "org.example.group" + id, "artifact-" + id, "jar", "1.0." + id );
+        }
+
+        int hits = 0;
+
+        long start = System.nanoTime();
+        for ( int r = 0; r < rounds; r++ )
+        {
+            for ( Artifact candidate : candidates )
+            {
+                if ( findDuplicate( node, candidate ) != null )
+                {
+                    hits++;
+                }
+            }
+        }
+        long walk = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for ( int r = 0; r < rounds; r++ )
+        {
+            for ( Artifact candidate : candidates )
+            {
+                if ( ancestors.containsKey( new DefaultDependencyCollector.CoordinateKey( candidate ) ) )
+                {
+                    hits--;
+                }
+            }
+        }
+        long lookup = System.nanoTime() - start;
+
+        if ( hits != 0 )
+        {
+            throw new IllegalStateException( "inconsistent cycle checks" );
+        }
+
+        return new long[] { walk, lookup };
+    }
+
+    /*
+     * The former cycle check of the collector.
+     */
+    private static DependencyNode findDuplicate( DependencyNode node, Artifact artifact )
+    {
+        for ( DependencyNode n = node; n != null; n = n.getParent() )
+        {
+            Dependency dependency = n.getDependency();
+            if ( dependency == null )
+            {
+                break;
+            }
+
+            Artifact a = dependency.getArtifact();
+            if ( !a.getArtifactId().equals( artifact.getArtifactId() ) )
+            {
+                continue;
+            }
+            if ( !a.getGroupId().equals( artifact.getGroupId() ) )
+            {
+                continue;
+            }
+            if ( !a.getBaseVersion().equals( artifact.getBaseVersion() ) )
+            {
+                continue;
+            }
+            if ( !a.getExtension().equals( artifact.getExtension() ) )
+            {
+                continue;
+            }
+            if ( !a.getClassifier().equals( artifact.getClassifier() ) )
+            {
+                continue;
+            }
+
+            return n;
+        }
+
+        return null;
+    }
+
+}
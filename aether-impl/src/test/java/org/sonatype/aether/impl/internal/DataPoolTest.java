@@ -0,0 +1,128 @@
+package org.sonatype.aether.impl.internal;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.aether.DefaultArtifact;
+import org.sonatype.aether.Dependency;
+import org.sonatype.aether.RemoteRepository;
+import org.sonatype.aether.RepositoryPolicy;
+import org.sonatype.aether.VersionRangeRequest;
+import org.sonatype.aether.VersionRangeResult;
+import org.sonatype.aether.util.DefaultRepositorySystemSession;
+
+/**
+ * @author Benjamin Bentmann
+ */
+public class DataPoolTest
+{
+
+    private DefaultRepositorySystemSession session;
+
+    private VersionRangeRequest request;
+
+    private VersionRangeResult result;
+
+    @Before
+    public void setup()
+        throws Exception
+    {
+        session = new DefaultRepositorySystemSession();
+
+        RemoteRepository repository = new RemoteRepository( "test", "default", "file:///tmp/repo" );
+        repository.setPolicy( false, new RepositoryPolicy( true, RepositoryPolicy.UPDATE_POLICY_NEVER,
+                                                           RepositoryPolicy.CHECKSUM_POLICY_WARN ) );
+        request =
+            new VersionRangeRequest( new DefaultArtifact( "gid:aid:[1.0,2.0)" ),
+                                     Collections.singletonList( repository ), "" );
+
+        MavenVersionScheme scheme = new MavenVersionScheme();
+        result = new VersionRangeResult( request );
+        result.setVersionConstraint( scheme.parseVersionConstraint( "[1.0,2.0)" ) );
+        result.addVersion( scheme.parseVersion( "1.5" ) );
+        result.setRepository( result.getVersions().get( 0 ), repository );
+    }
+
+    @Test
+    public void testPreviousPoolIsNotModified()
+    {
+        DataPool previous = new DataPool( session );
+        DataPool pool = new DataPool( session, previous.snapshot() );
+        pool.putConstraint( pool.toKey( request ), result );
+
+        assertNotNull( pool.getConstraint( pool.toKey( request ), request ) );
+        assertNull( previous.getConstraint( previous.toKey( request ), request ) );
+        assertEquals( 0, previous.getConstraintCache().size() );
+    }
+
+    @Test
+    public void testFreshRangesAreReused()
+    {
+        DataPool previous = new DataPool( session );
+        previous.putConstraint( previous.toKey( request ), result );
+
+        DataPool pool = new DataPool( session, previous.snapshot() );
+        VersionRangeResult reused = pool.getConstraint( pool.toKey( request ), request );
+        assertNotNull( reused );
+        assertEquals( result.getVersions(), reused.getVersions() );
+    }
+
+    @Test
+    public void testStaleRangesAreDropped()
+    {
+        DataPool previous = new DataPool( session );
+        previous.putConstraint( previous.toKey( request ), result );
+
+        session.setUpdatePolicy( RepositoryPolicy.UPDATE_POLICY_ALWAYS );
+        DataPool pool = new DataPool( session, previous.snapshot() );
+        assertNull( pool.getConstraint( pool.toKey( request ), request ) );
+        assertEquals( 1, previous.getConstraintCache().size() );
+    }
+
+    private Object putNode( DataPool pool, String coords )
+    {
+        DefaultRepositorySystemSession session = DefaultRepositorySystemSession.newMavenRepositorySystemSession();
+        Dependency dependency = new Dependency( new DefaultArtifact( coords ), "compile" );
+        Object key =
+            pool.toKey( dependency, request.getRepositories(), pool.intern( session.getDependencySelector() ),
+                        pool.intern( session.getDependencyManager() ),
+                        pool.intern( session.getDependencyTraverser() ) );
+        pool.putNode( key, new LightDependencyNode( new DependencyNodeInfo( dependency ), null ), null );
+        return key;
+    }
+
+    @Test
+    public void testSnapshotKeepsOnlyUsedNodes()
+    {
+        DataPool first = new DataPool( session );
+        Object used = putNode( first, "gid:a:1" );
+        Object unused = putNode( first, "gid:b:1" );
+        DataPool.Snapshot snapshot = first.snapshot();
+        assertEquals( 2, snapshot.nodes.size() );
+
+        DataPool second = new DataPool( session, snapshot );
+        assertNotNull( second.getNode( used ) );
+        DataPool.Snapshot next = second.snapshot();
+        assertEquals( 1, next.nodes.size() );
+        assertTrue( next.nodes.containsKey( used ) );
+        assertFalse( next.nodes.containsKey( unused ) );
+        assertEquals( 2, snapshot.nodes.size() );
+    }
+
+}
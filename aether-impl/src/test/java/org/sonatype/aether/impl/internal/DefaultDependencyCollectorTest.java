@@ -0,0 +1,627 @@
+package org.sonatype.aether.impl.internal;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.aether.Artifact;
+import org.sonatype.aether.ArtifactDescriptorException;
+import org.sonatype.aether.ArtifactDescriptorRequest;
+import org.sonatype.aether.ArtifactDescriptorResult;
+import org.sonatype.aether.CollectRequest;
+import org.sonatype.aether.CollectResult;
+import org.sonatype.aether.CollectStatistics;
+import org.sonatype.aether.DefaultArtifact;
+import org.sonatype.aether.Dependency;
+import org.sonatype.aether.DependencyCollectionException;
+import org.sonatype.aether.DependencyNode;
+import org.sonatype.aether.DependencyVisitor;
+import org.sonatype.aether.RepositoryPolicy;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.Version;
+import org.sonatype.aether.VersionConstraint;
+import org.sonatype.aether.VersionRangeRequest;
+import org.sonatype.aether.VersionRangeResolutionException;
+import org.sonatype.aether.VersionRangeResult;
+import org.sonatype.aether.impl.ArtifactDescriptorCallback;
+import org.sonatype.aether.impl.ArtifactDescriptorReader;
+import org.sonatype.aether.impl.BatchArtifactDescriptorReader;
+import org.sonatype.aether.impl.VersionRangeResolver;
+import org.sonatype.aether.util.DefaultRepositoryCache;
+import org.sonatype.aether.util.DefaultRepositorySystemSession;
+import org.sonatype.aether.util.graph.CloningDependencyVisitor;
+
+/**
+ * @author Benjamin Bentmann
+ */
+public class DefaultDependencyCollectorTest
+{
+
+    private DefaultDependencyCollector collector;
+
+    private DefaultRepositorySystemSession session;
+
+    private StubArtifactDescriptorReader descriptorReader;
+
+    @Before
+    public void setup()
+    {
+        descriptorReader = new StubArtifactDescriptorReader();
+
+        collector = new DefaultDependencyCollector();
+        collector.setRemoteRepositoryManager( new DefaultRemoteRepositoryManager() );
+        collector.setArtifactDescriptorReader( descriptorReader );
+        collector.setVersionRangeResolver( new StubVersionRangeResolver() );
+
+        session = DefaultRepositorySystemSession.newMavenRepositorySystemSession();
+        session.setDependencyGraphTransformer( null );
+
+        descriptorReader.add( "gid:a:1", "gid:b:1", "gid:c:1" );
+        descriptorReader.add( "gid:b:1", "gid:d:1", "gid:e:1" );
+        descriptorReader.add( "gid:c:1", "gid:d:1", "gid:f:1" );
+        descriptorReader.add( "gid:d:1", "gid:g:1" );
+        descriptorReader.add( "gid:e:1", "gid:a:1" );
+    }
+
+    private CollectResult collect( int threads )
+        throws Exception
+    {
+        session.setConfigProperties( Collections.singletonMap( DefaultDependencyCollector.CONFIG_PROP_THREADS,
+                                                               Integer.toString( threads ) ) );
+
+        CollectRequest request = new CollectRequest();
+        request.addDependency( new Dependency( new DefaultArtifact( "gid:a:1" ), "compile" ) );
+        request.addDependency( new Dependency( new DefaultArtifact( "gid:c:1" ), "compile" ) );
+        return collector.collectDependencies( session, request );
+    }
+
+    private static void dump( StringBuilder buffer, DependencyNode node, String indent )
+    {
+        buffer.append( indent ).append( node.getDependency() ).append( '\n' );
+        for ( DependencyNode child : node.getChildren() )
+        {
+            dump( buffer, child, indent + "  " );
+        }
+    }
+
+    private static String dump( CollectResult result )
+    {
+        StringBuilder buffer = new StringBuilder( 1024 );
+        dump( buffer, result.getRoot(), "" );
+        return buffer.toString();
+    }
+
+    @Test
+    public void testConcurrentCollectionYieldsSameGraph()
+        throws Exception
+    {
+        String expected = dump( collect( 1 ) );
+        assertTrue( expected, expected.contains( "gid:g:jar:1" ) );
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            assertEquals( expected, dump( collect( 4 ) ) );
+        }
+    }
+
+    @Test
+    public void testConcurrentCollectionOverlapsRequests()
+        throws Exception
+    {
+        final CountDownLatch latch = new CountDownLatch( 2 );
+        final AtomicBoolean timedOut = new AtomicBoolean();
+        collector.setArtifactDescriptorReader( new ArtifactDescriptorReader()
+        {
+            public ArtifactDescriptorResult readArtifactDescriptor( RepositorySystemSession session,
+                                                                    ArtifactDescriptorRequest request )
+                throws ArtifactDescriptorException
+            {
+                // the descriptors of the two top-level dependencies are only read if their reads overlap
+                latch.countDown();
+                try
+                {
+                    if ( !latch.await( 10, TimeUnit.SECONDS ) )
+                    {
+                        timedOut.set( true );
+                    }
+                }
+                catch ( InterruptedException e )
+                {
+                    timedOut.set( true );
+                }
+                return descriptorReader.readArtifactDescriptor( session, request );
+            }
+        } );
+
+        String graph = dump( collect( 4 ) );
+
+        assertFalse( "descriptor reads did not overlap", timedOut.get() );
+        collector.setArtifactDescriptorReader( descriptorReader );
+        session.setCache( new DefaultRepositoryCache() );
+        assertEquals( dump( collect( 1 ) ), graph );
+    }
+
+    @Test
+    public void testConcurrentCollectionCountsCacheLookupsOnce()
+        throws Exception
+    {
+        session.setCache( new DefaultRepositoryCache() );
+        CollectStatistics expected = collect( 1 ).getStatistics();
+
+        session.setCache( new DefaultRepositoryCache() );
+        CollectStatistics actual = collect( 4 ).getStatistics();
+
+        for ( String cache : new String[] { "descriptors", "versionRanges" } )
+        {
+            assertEquals( cache, expected.getCacheHits( cache ) + expected.getCacheMisses( cache ),
+                          actual.getCacheHits( cache ) + actual.getCacheMisses( cache ) );
+        }
+        assertEquals( expected.getDescriptorReads(), actual.getDescriptorReads() );
+    }
+
+    @Test
+    public void testSharedSubtrees()
+        throws Exception
+    {
+        String expected = dump( collect( 1 ) );
+
+        session.setConfigProperties( Collections.singletonMap( DefaultDependencyCollector.CONFIG_PROP_SHARE_SUBTREES,
+                                                               "true" ) );
+        CollectRequest request = new CollectRequest();
+        request.addDependency( new Dependency( new DefaultArtifact( "gid:a:1" ), "compile" ) );
+        request.addDependency( new Dependency( new DefaultArtifact( "gid:c:1" ), "compile" ) );
+        CollectResult result = collector.collectDependencies( session, request );
+
+        assertEquals( expected, dump( result ) );
+
+        DependencyNode b = result.getRoot().getChildren().get( 0 ).getChildren().get( 0 );
+        DependencyNode c = result.getRoot().getChildren().get( 0 ).getChildren().get( 1 );
+        assertSame( b.getChildren().get( 0 ), c.getChildren().get( 0 ) );
+
+        CloningDependencyVisitor cloner = new CloningDependencyVisitor();
+        result.getRoot().accept( cloner );
+        b = cloner.getRootNode().getChildren().get( 0 ).getChildren().get( 0 );
+        c = cloner.getRootNode().getChildren().get( 0 ).getChildren().get( 1 );
+        assertNotSame( b.getChildren().get( 0 ), c.getChildren().get( 0 ) );
+        assertSame( c, c.getChildren().get( 0 ).getParent() );
+    }
+
+    @Test
+    public void testCompactGraph()
+        throws Exception
+    {
+        String expected = dump( collect( 1 ) );
+
+        Map<String, String> config = new HashMap<String, String>();
+        config.put( DefaultDependencyCollector.CONFIG_PROP_SHARE_SUBTREES, "true" );
+        config.put( DefaultDependencyCollector.CONFIG_PROP_COMPACT_GRAPH, "true" );
+        session.setConfigProperties( config );
+        CollectRequest request = new CollectRequest();
+        request.addDependency( new Dependency( new DefaultArtifact( "gid:a:1" ), "compile" ) );
+        request.addDependency( new Dependency( new DefaultArtifact( "gid:c:1" ), "compile" ) );
+        CollectResult result = collector.collectDependencies( session, request );
+
+        assertEquals( expected, dump( result ) );
+        assertEquals( "CompactDependencyNode", result.getRoot().getClass().getSimpleName() );
+        DependencyNode b = result.getRoot().getChildren().get( 0 ).getChildren().get( 0 );
+        assertEquals( b, b.getChildren().get( 0 ).getParent() );
+    }
+
+    @Test
+    public void testCollectionLimits()
+        throws Exception
+    {
+        CollectRequest request = new CollectRequest();
+        request.addDependency( new Dependency( new DefaultArtifact( "gid:a:1" ), "compile" ) );
+
+        session.setConfigProperties( Collections.singletonMap( DefaultDependencyCollector.CONFIG_PROP_MAX_NODES,
+                                                               "4" ) );
+        try
+        {
+            collector.collectDependencies( session, request );
+            fail( "node limit not enforced" );
+        }
+        catch ( DependencyCollectionException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "gid:a:jar:1 -> gid:b:jar:1 -> gid:d:jar:1" ) );
+            assertEquals( 4, countNodes( e.getResult().getRoot(), 0 )[0] );
+        }
+
+        session.setConfigProperties( Collections.singletonMap( DefaultDependencyCollector.CONFIG_PROP_MAX_DEPTH,
+                                                               "2" ) );
+        try
+        {
+            collector.collectDependencies( session, request );
+            fail( "depth limit not enforced" );
+        }
+        catch ( DependencyCollectionException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "gid:a:jar:1 -> gid:b:jar:1 -> gid:d:jar:1" ) );
+        }
+
+        session.setConfigProperties( null );
+        request.cancel();
+        try
+        {
+            collector.collectDependencies( session, request );
+            fail( "cancellation not honored" );
+        }
+        catch ( DependencyCollectionException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "cancelled" ) );
+        }
+    }
+
+    private List<Exception> collectErrors( int threads )
+        throws Exception
+    {
+        try
+        {
+            collect( threads );
+            fail( "missing descriptor not reported" );
+            return null;
+        }
+        catch ( DependencyCollectionException e )
+        {
+            return e.getResult().getExceptions();
+        }
+    }
+
+    private static int[] countNodes( DependencyNode node, int depth )
+    {
+        int[] counts = { 1, depth };
+        for ( DependencyNode child : node.getChildren() )
+        {
+            int[] c = countNodes( child, depth + 1 );
+            counts[0] += c[0];
+            counts[1] = Math.max( counts[1], c[1] );
+        }
+        return counts;
+    }
+
+    @Test
+    public void testStatistics()
+        throws Exception
+    {
+        CollectResult result = collect( 1 );
+        CollectStatistics stats = result.getStatistics();
+
+        int[] counts = countNodes( result.getRoot(), 0 );
+        assertEquals( counts[0], stats.getNodeCount() );
+        assertEquals( counts[1], stats.getMaxDepth() );
+        assertEquals( 7, stats.getDescriptorReads() );
+        assertEquals( 7, stats.getVersionRangeResolutions() );
+        assertTrue( stats.getCacheHits( "descriptors" ) > 0 );
+        assertEquals( stats.getDescriptorReads(), stats.getCacheMisses( "descriptors" ) );
+    }
+
+    @Test
+    public void testIncrementalCollection()
+        throws Exception
+    {
+        descriptorReader.add( "gid:c:2", "gid:d:1", "gid:h:1" );
+
+        CollectRequest request = new CollectRequest();
+        request.addDependency( new Dependency( new DefaultArtifact( "gid:a:1" ), "compile" ) );
+        request.addDependency( new Dependency( new DefaultArtifact( "gid:c:2" ), "compile" ) );
+        String expected = dump( collector.collectDependencies( session, request ) );
+
+        session.setConfigProperties( Collections.singletonMap( DefaultDependencyCollector.CONFIG_PROP_INCREMENTAL,
+                                                               "true" ) );
+        CollectRequest previousRequest = new CollectRequest();
+        previousRequest.addDependency( new Dependency( new DefaultArtifact( "gid:a:1" ), "compile" ) );
+        previousRequest.addDependency( new Dependency( new DefaultArtifact( "gid:c:1" ), "compile" ) );
+        CollectResult previous = collector.collectDependencies( session, previousRequest );
+        String previousGraph = dump( previous );
+
+        request.setPreviousResult( previous );
+        CollectResult result = collector.collectDependencies( session, request );
+
+        assertEquals( expected, dump( result ) );
+        assertEquals( previousGraph, dump( previous ) );
+        assertEquals( 2, result.getStatistics().getDescriptorReads() );
+        assertTrue( result.getStatistics().getCacheHits( "nodes" ) >= 2 );
+    }
+
+    @Test
+    public void testIncrementalCollectionPicksUpNewVersions()
+        throws Exception
+    {
+        StubVersionRangeResolver versionRangeResolver = new StubVersionRangeResolver();
+        versionRangeResolver.publish( "gid:x:1.0" );
+        collector.setVersionRangeResolver( versionRangeResolver );
+        descriptorReader.add( "gid:p:1", "gid:x:[1,2)" );
+
+        session.setConfigProperties( Collections.singletonMap( DefaultDependencyCollector.CONFIG_PROP_INCREMENTAL,
+                                                               "true" ) );
+        CollectRequest request = new CollectRequest();
+        request.addDependency( new Dependency( new DefaultArtifact( "gid:a:1" ), "compile" ) );
+        request.addDependency( new Dependency( new DefaultArtifact( "gid:p:1" ), "compile" ) );
+        CollectResult previous = collector.collectDependencies( session, request );
+        String previousGraph = dump( previous );
+        assertTrue( previousGraph, previousGraph.contains( "gid:x:jar:1.0" ) );
+
+        versionRangeResolver.publish( "gid:x:1.5" );
+        request.setPreviousResult( previous );
+        CollectResult result = collector.collectDependencies( session, request );
+        assertEquals( previousGraph, dump( result ) );
+
+        session.setUpdatePolicy( RepositoryPolicy.UPDATE_POLICY_ALWAYS );
+        request.setPreviousResult( result );
+        result = collector.collectDependencies( session, request );
+        String graph = dump( result );
+        assertTrue( graph, graph.contains( "gid:x:jar:1.5" ) );
+        assertTrue( result.getStatistics().getCacheHits( "nodes" ) >= 1 );
+    }
+
+    @Test
+    public void testStreamingCollection()
+        throws Exception
+    {
+        String expected = dump( collect( 1 ) );
+
+        final StringBuilder buffer = new StringBuilder( 1024 );
+        DependencyVisitor visitor = new DependencyVisitor()
+        {
+
+            private String indent = "";
+
+            public boolean visitEnter( DependencyNode node )
+            {
+                assertTrue( node.getChildren().isEmpty() );
+                buffer.append( indent ).append( node.getDependency() ).append( '\n' );
+                indent += "  ";
+                return true;
+            }
+
+            public boolean visitLeave( DependencyNode node )
+            {
+                indent = indent.substring( 2 );
+                return true;
+            }
+
+        };
+
+        CollectRequest request = new CollectRequest();
+        request.addDependency( new Dependency( new DefaultArtifact( "gid:a:1" ), "compile" ) );
+        request.addDependency( new Dependency( new DefaultArtifact( "gid:c:1" ), "compile" ) );
+        CollectResult result = collector.collectDependencies( session, request, visitor );
+
+        assertEquals( expected, buffer.toString() );
+        assertTrue( result.getRoot().getChildren().isEmpty() );
+    }
+
+    @Test
+    public void testNearestWinsPruning()
+        throws Exception
+    {
+        descriptorReader.add( "gid:p:1", "gid:q:1", "gid:x:2" );
+        descriptorReader.add( "gid:q:1", "gid:x:1" );
+        descriptorReader.add( "gid:x:1", "gid:y:1" );
+        descriptorReader.add( "gid:x:2", "gid:z:1" );
+
+        RepositorySystemSession defaults = DefaultRepositorySystemSession.newMavenRepositorySystemSession();
+        session.setDependencyGraphTransformer( defaults.getDependencyGraphTransformer() );
+
+        CollectRequest request = new CollectRequest();
+        request.addDependency( new Dependency( new DefaultArtifact( "gid:p:1" ), "compile" ) );
+        CollectResult result = collector.collectDependencies( session, request );
+        String expected = dump( result );
+        assertEquals( 6, result.getStatistics().getDescriptorReads() );
+
+        session.setConfigProperties( Collections.singletonMap( DefaultDependencyCollector.CONFIG_PROP_NEAREST_WINS,
+                                                               "true" ) );
+        result = collector.collectDependencies( session, request );
+        assertEquals( expected, dump( result ) );
+        assertEquals( 5, result.getStatistics().getDescriptorReads() );
+    }
+
+    @Test
+    public void testBatchDescriptorReads()
+        throws Exception
+    {
+        descriptorReader.fail( "gid:f:1" );
+
+        List<Exception> expected = collectErrors( 1 );
+
+        StubBatchArtifactDescriptorReader batchReader = new StubBatchArtifactDescriptorReader( descriptorReader );
+        collector.setArtifactDescriptorReader( batchReader );
+        List<Exception> actual = collectErrors( 1 );
+
+        assertEquals( expected.size(), actual.size() );
+        assertTrue( batchReader.batches.contains( 2 ) );
+
+        descriptorReader.failures.clear();
+        assertEquals( dump( collect( 1 ) ), dump( collect( 4 ) ) );
+    }
+
+    @Test
+    public void testConcurrentCollectionReportsDescriptorErrors()
+        throws Exception
+    {
+        descriptorReader.fail( "gid:f:1" );
+
+        List<Exception> expected = collectErrors( 1 );
+        List<Exception> actual = collectErrors( 4 );
+
+        assertEquals( expected.size(), actual.size() );
+        for ( Exception e : actual )
+        {
+            assertTrue( e.toString(), e instanceof ArtifactDescriptorException );
+        }
+    }
+
+    static class StubArtifactDescriptorReader
+        implements ArtifactDescriptorReader
+    {
+
+        private final Map<String, List<Dependency>> dependencies = new HashMap<String, List<Dependency>>();
+
+        final List<String> failures = new ArrayList<String>();
+
+        public void add( String coords, String... deps )
+        {
+            List<Dependency> list = new ArrayList<Dependency>();
+            for ( String dep : deps )
+            {
+                list.add( new Dependency( new DefaultArtifact( dep ), "compile" ) );
+            }
+            dependencies.put( key( new DefaultArtifact( coords ) ), list );
+        }
+
+        public void fail( String coords )
+        {
+            failures.add( key( new DefaultArtifact( coords ) ) );
+        }
+
+        private static String key( Artifact artifact )
+        {
+            return artifact.getGroupId() + ':' + artifact.getArtifactId() + ':' + artifact.getVersion();
+        }
+
+        public ArtifactDescriptorResult readArtifactDescriptor( RepositorySystemSession session,
+                                                                ArtifactDescriptorRequest request )
+            throws ArtifactDescriptorException
+        {
+            ArtifactDescriptorResult result = new ArtifactDescriptorResult( request );
+            result.setArtifact( request.getArtifact() );
+
+            String key = key( request.getArtifact() );
+            if ( failures.contains( key ) )
+            {
+                throw new ArtifactDescriptorException( result );
+            }
+
+            List<Dependency> deps = dependencies.get( key );
+            result.setDependencies( ( deps != null ) ? deps : Collections.<Dependency> emptyList() );
+            return result;
+        }
+
+    }
+
+    static class StubBatchArtifactDescriptorReader
+        implements BatchArtifactDescriptorReader
+    {
+
+        private final ArtifactDescriptorReader reader;
+
+        final List<Integer> batches = Collections.synchronizedList( new ArrayList<Integer>() );
+
+        public StubBatchArtifactDescriptorReader( ArtifactDescriptorReader reader )
+        {
+            this.reader = reader;
+        }
+
+        public ArtifactDescriptorResult readArtifactDescriptor( RepositorySystemSession session,
+                                                                ArtifactDescriptorRequest request )
+            throws ArtifactDescriptorException
+        {
+            return reader.readArtifactDescriptor( session, request );
+        }
+
+        public void readArtifactDescriptors( RepositorySystemSession session,
+                                             Collection<? extends ArtifactDescriptorRequest> requests,
+                                             ArtifactDescriptorCallback callback )
+        {
+            batches.add( requests.size() );
+            for ( ArtifactDescriptorRequest request : requests )
+            {
+                try
+                {
+                    callback.descriptorRead( reader.readArtifactDescriptor( session, request ) );
+                }
+                catch ( ArtifactDescriptorException e )
+                {
+                    callback.descriptorFailed( e );
+                }
+            }
+        }
+
+    }
+
+    static class StubVersionRangeResolver
+        implements VersionRangeResolver
+    {
+
+        private final Map<String, List<String>> versions = new HashMap<String, List<String>>();
+
+        public synchronized void publish( String coords )
+        {
+            Artifact artifact = new DefaultArtifact( coords );
+            String key = artifact.getGroupId() + ':' + artifact.getArtifactId();
+            List<String> list = versions.get( key );
+            if ( list == null )
+            {
+                list = new ArrayList<String>();
+                versions.put( key, list );
+            }
+            list.add( artifact.getVersion() );
+        }
+
+        public synchronized VersionRangeResult resolveVersionRange( RepositorySystemSession session,
+                                                                    VersionRangeRequest request )
+            throws VersionRangeResolutionException
+        {
+            VersionRangeResult result = new VersionRangeResult( request );
+            try
+            {
+                MavenVersionScheme scheme = new MavenVersionScheme();
+                Artifact artifact = request.getArtifact();
+                VersionConstraint constraint = scheme.parseVersionConstraint( artifact.getVersion() );
+                if ( constraint.getRanges().isEmpty() )
+                {
+                    Version version = scheme.parseVersion( artifact.getVersion() );
+                    result.addVersion( version );
+                    result.setVersionConstraint( new VersionConstraint().setPreferredVersion( version ) );
+                }
+                else
+                {
+                    List<String> published = versions.get( artifact.getGroupId() + ':' + artifact.getArtifactId() );
+                    if ( published != null )
+                    {
+                        for ( String v : published )
+                        {
+                            Version version = scheme.parseVersion( v );
+                            if ( constraint.containsVersion( version ) )
+                            {
+                                result.addVersion( version );
+                            }
+                        }
+                    }
+                    result.setVersionConstraint( constraint );
+                }
+            }
+            catch ( Exception e )
+            {
+                result.addException( e );
+                throw new VersionRangeResolutionException( result );
+            }
+            return result;
+        }
+
+    }
+
+}
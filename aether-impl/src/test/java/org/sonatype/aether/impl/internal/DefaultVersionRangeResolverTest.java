@@ -0,0 +1,152 @@
+package org.sonatype.aether.impl.internal;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.aether.DefaultArtifact;
+import org.sonatype.aether.MetadataRequest;
+import org.sonatype.aether.MetadataResult;
+import org.sonatype.aether.RemoteRepository;
+import org.sonatype.aether.RepositoryPolicy;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.VersionRangeRequest;
+import org.sonatype.aether.VersionRangeResult;
+import org.sonatype.aether.impl.MetadataResolver;
+import org.sonatype.aether.util.DefaultRepositoryCache;
+import org.sonatype.aether.util.DefaultRepositorySystemSession;
+
+/**
+ * @author Benjamin Bentmann
+ */
+public class DefaultVersionRangeResolverTest
+{
+
+    private File basedir;
+
+    private File metadataFile;
+
+    private DefaultRepositorySystemSession session;
+
+    private StubMetadataResolver metadataResolver;
+
+    private DefaultVersionRangeResolver resolver;
+
+    private VersionRangeRequest request;
+
+    @Before
+    public void setup()
+        throws IOException
+    {
+        basedir = File.createTempFile( "aether-", ".test" );
+        basedir.delete();
+        basedir.mkdirs();
+
+        metadataFile = new File( basedir, "maven-metadata-remote.xml" );
+        FileOutputStream os = new FileOutputStream( metadataFile );
+        try
+        {
+            os.write( ( "<metadata><versioning><versions><version>1.0</version><version>1.5</version>"
+                + "<version>2.0</version></versions></versioning></metadata>" ).getBytes( "UTF-8" ) );
+        }
+        finally
+        {
+            IOUtil.close( os );
+        }
+
+        session = new DefaultRepositorySystemSession();
+        session.setLocalRepositoryManager( new SimpleLocalRepositoryManager( new File( basedir, "local" ) ) );
+        session.setCache( new DefaultRepositoryCache() );
+
+        metadataResolver = new StubMetadataResolver();
+        resolver = new DefaultVersionRangeResolver();
+        resolver.setMetadataResolver( metadataResolver );
+
+        RemoteRepository repository = new RemoteRepository( "test", "default", basedir.toURI().toString() );
+        repository.setPolicy( false, new RepositoryPolicy( true, RepositoryPolicy.UPDATE_POLICY_NEVER,
+                                                           RepositoryPolicy.CHECKSUM_POLICY_WARN ) );
+        request =
+            new VersionRangeRequest( new DefaultArtifact( "gid:aid:[1.0,2.0)" ),
+                                     Collections.singletonList( repository ), "" );
+    }
+
+    @After
+    public void teardown()
+        throws IOException
+    {
+        FileUtils.deleteDirectory( basedir );
+    }
+
+    @Test
+    public void testCachedRange()
+        throws Exception
+    {
+        VersionRangeResult result = resolver.resolveVersionRange( session, request );
+        assertEquals( "[1.0, 1.5]", result.getVersions().toString() );
+        assertEquals( 1, metadataResolver.calls );
+
+        result = resolver.resolveVersionRange( session, request );
+        assertEquals( "[1.0, 1.5]", result.getVersions().toString() );
+        assertEquals( "1.5", result.getVersionConstraint().getPreferredVersion().toString() );
+        assertSame( request.getRepositories().get( 0 ), result.getRepository( result.getVersions().get( 0 ) ) );
+        assertEquals( 1, metadataResolver.calls );
+    }
+
+    @Test
+    public void testUpdatePolicyAlwaysBypassesCache()
+        throws Exception
+    {
+        session.setUpdatePolicy( RepositoryPolicy.UPDATE_POLICY_ALWAYS );
+
+        resolver.resolveVersionRange( session, request );
+        resolver.resolveVersionRange( session, request );
+        assertEquals( 2, metadataResolver.calls );
+    }
+
+    class StubMetadataResolver
+        implements MetadataResolver
+    {
+
+        int calls;
+
+        public List<MetadataResult> resolveMetadata( RepositorySystemSession session,
+                                                     Collection<? extends MetadataRequest> requests )
+        {
+            calls++;
+            List<MetadataResult> results = new ArrayList<MetadataResult>();
+            for ( MetadataRequest request : requests )
+            {
+                MetadataResult result = new MetadataResult( request );
+                result.setMetadata( request.getMetadata().setFile( metadataFile ) );
+                results.add( result );
+            }
+            return results;
+        }
+
+    }
+
+}
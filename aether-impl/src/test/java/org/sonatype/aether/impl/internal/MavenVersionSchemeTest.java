@@ -0,0 +1,178 @@
+package org.sonatype.aether.impl.internal;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.sonatype.aether.InvalidVersionException;
+import org.sonatype.aether.Version;
+import org.sonatype.aether.VersionConstraint;
+
+/**
+ * @author Benjamin Bentmann
+ */
+public class MavenVersionSchemeTest
+{
+
+    @Test
+    public void testRepeatedVersionsAreShared()
+        throws Exception
+    {
+        MavenVersionScheme scheme = new MavenVersionScheme( 16, 16, true );
+
+        Version version = scheme.parseVersion( "1.0-SNAPSHOT" );
+        assertSame( version, scheme.parseVersion( "1.0-SNAPSHOT" ) );
+        assertNotSame( version, scheme.parseVersion( "1.0-snapshot" ) );
+
+        assertEquals( 1, scheme.getVersionCache().getHits() );
+        assertEquals( 2, scheme.getVersionCache().getMisses() );
+    }
+
+    @Test
+    public void testRepeatedConstraintsShareRangesButNotConstraint()
+        throws Exception
+    {
+        MavenVersionScheme scheme = new MavenVersionScheme( 16, 16, true );
+
+        VersionConstraint constraint = scheme.parseVersionConstraint( "[1.0,2.0),[3.0,)" );
+        assertEquals( 2, constraint.getRanges().size() );
+        constraint.setPreferredVersion( scheme.parseVersion( "3.1" ) );
+
+        VersionConstraint other = scheme.parseVersionConstraint( "[1.0,2.0),[3.0,)" );
+        assertNotSame( constraint, other );
+        assertNull( other.getPreferredVersion() );
+        assertEquals( constraint.getRanges(), other.getRanges() );
+        assertEquals( 1, scheme.getConstraintCache().getHits() );
+    }
+
+    @Test
+    public void testConstraintsCopyRangesOnlyWhenModified()
+        throws Exception
+    {
+        MavenVersionScheme scheme = new MavenVersionScheme();
+
+        VersionConstraint constraint = scheme.parseVersionConstraint( "[1.0,2.0)" );
+        VersionConstraint other = scheme.parseVersionConstraint( "[1.0,2.0)" );
+        assertSame( constraint.getRanges(), other.getRanges() );
+
+        constraint.addRange( scheme.parseVersionConstraint( "[3.0,)" ).getRanges().iterator().next() );
+        assertEquals( 2, constraint.getRanges().size() );
+        assertEquals( 1, other.getRanges().size() );
+        assertEquals( 1, scheme.parseVersionConstraint( "[1.0,2.0)" ).getRanges().size() );
+    }
+
+    @Test
+    public void testStatsAreDisabledByDefault()
+        throws Exception
+    {
+        MavenVersionScheme scheme = new MavenVersionScheme();
+
+        scheme.parseVersion( "1.0" );
+        scheme.parseVersion( "1.0" );
+        assertEquals( 0, scheme.getVersionCache().getHits() );
+        assertEquals( 0, scheme.getVersionCache().getMisses() );
+        assertEquals( 1, scheme.getVersionCache().size() );
+    }
+
+    @Test
+    public void testDisabledCaches()
+        throws Exception
+    {
+        MavenVersionScheme scheme = new MavenVersionScheme( 0, 0 );
+
+        assertNotSame( scheme.parseVersion( "1.0" ), scheme.parseVersion( "1.0" ) );
+        assertEquals( scheme.parseVersionConstraint( "1.0" ), scheme.parseVersionConstraint( "1.0" ) );
+        assertEquals( 0, scheme.getVersionCache().size() );
+    }
+
+    @Test
+    public void testCacheIsBounded()
+        throws Exception
+    {
+        MavenVersionScheme scheme = new MavenVersionScheme( 16, 16 );
+
+        Version hot = scheme.parseVersion( "1.0" );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            scheme.parseVersion( "2." + i );
+            assertSame( hot, scheme.parseVersion( "1.0" ) );
+            assertTrue( scheme.getVersionCache().size() <= 16 );
+        }
+        assertTrue( scheme.getVersionCache().getEvictions() > 0 );
+    }
+
+    @Test
+    public void testConcurrentParsing()
+        throws Exception
+    {
+        final MavenVersionScheme scheme = new MavenVersionScheme( 64, 64, true );
+        final AtomicInteger failures = new AtomicInteger();
+
+        Thread[] threads = new Thread[8];
+        for ( int t = 0; t < threads.length; t++ )
+        {
+            final int seed = t;
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for ( int i = 0; i < 5000; i++ )
+                    {
+                        String version = "1." + ( ( i * 7 + seed ) % 100 );
+                        try
+                        {
+                            if ( !version.equals( scheme.parseVersion( version ).toString() ) )
+                            {
+                                failures.incrementAndGet();
+                            }
+                        }
+                        catch ( InvalidVersionException e )
+                        {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        assertEquals( 0, failures.get() );
+        assertEquals( 8 * 5000, scheme.getVersionCache().getHits() + scheme.getVersionCache().getMisses() );
+        assertTrue( scheme.getVersionCache().size() <= 64 );
+    }
+
+    @Test( expected = InvalidVersionException.class )
+    public void testInvalidConstraintIsNotCached()
+        throws Exception
+    {
+        MavenVersionScheme scheme = new MavenVersionScheme();
+        try
+        {
+            scheme.parseVersionConstraint( "[1.0" );
+        }
+        finally
+        {
+            assertEquals( 0, scheme.getConstraintCache().size() );
+        }
+    }
+
+}
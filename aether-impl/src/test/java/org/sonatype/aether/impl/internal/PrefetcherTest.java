@@ -0,0 +1,171 @@
+package org.sonatype.aether.impl.internal;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.aether.ArtifactDescriptorException;
+import org.sonatype.aether.ArtifactDescriptorRequest;
+import org.sonatype.aether.ArtifactDescriptorResult;
+import org.sonatype.aether.DefaultArtifact;
+import org.sonatype.aether.Dependency;
+import org.sonatype.aether.RemoteRepository;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.Version;
+import org.sonatype.aether.VersionRangeRequest;
+import org.sonatype.aether.VersionRangeResult;
+import org.sonatype.aether.impl.ArtifactDescriptorReader;
+import org.sonatype.aether.util.DefaultRepositorySystemSession;
+
+/**
+ * @author Benjamin Bentmann
+ */
+public class PrefetcherTest
+{
+
+    private DefaultRepositorySystemSession session;
+
+    private DataPool pool;
+
+    private DefaultDependencyCollectorTest.StubArtifactDescriptorReader descriptorReader;
+
+    private Prefetcher prefetcher;
+
+    private final List<RemoteRepository> repositories = Collections.emptyList();
+
+    @Before
+    public void setup()
+    {
+        session = DefaultRepositorySystemSession.newMavenRepositorySystemSession();
+        pool = new DataPool( session );
+        descriptorReader = new DefaultDependencyCollectorTest.StubArtifactDescriptorReader();
+        prefetcher =
+            new Prefetcher( session, pool, "", 2, Prefetcher.newExecutor(),
+                            new DefaultDependencyCollectorTest.StubVersionRangeResolver(), descriptorReader );
+    }
+
+    @After
+    public void teardown()
+    {
+        prefetcher.close();
+    }
+
+    private VersionRangeResult getConstraint( Dependency dependency )
+        throws Exception
+    {
+        VersionRangeRequest request = new VersionRangeRequest( dependency.getArtifact(), repositories, "" );
+        VersionRangeResult result = prefetcher.getConstraint( pool.toKey( request ), request );
+        assertNotNull( result );
+        return result;
+    }
+
+    private Object getDescriptor( Dependency dependency, VersionRangeResult rangeResult )
+        throws Exception
+    {
+        Version version = rangeResult.getVersions().get( 0 );
+        ArtifactDescriptorRequest request = new ArtifactDescriptorRequest();
+        request.setArtifact( dependency.getArtifact().setVersion( version.toString() ) );
+        request.setRepositories( DefaultDependencyCollector.getRemoteRepositories( rangeResult, version,
+                                                                                   repositories ) );
+        request.setRequestContext( "" );
+        return prefetcher.getDescriptor( pool.toKey( request ), request );
+    }
+
+    @Test
+    public void testConsumedFuturesAreDiscarded()
+        throws Exception
+    {
+        descriptorReader.fail( "gid:c:1" );
+
+        List<Dependency> dependencies = new ArrayList<Dependency>();
+        for ( String coords : new String[] { "gid:a:1", "gid:b:1", "gid:c:1" } )
+        {
+            dependencies.add( new Dependency( new DefaultArtifact( coords ), "compile" ) );
+        }
+        prefetcher.prefetch( dependencies, repositories, session.getDependencySelector(),
+                             session.getDependencyManager() );
+
+        for ( Dependency dependency : dependencies )
+        {
+            VersionRangeResult rangeResult = getConstraint( dependency );
+            try
+            {
+                assertNotNull( getDescriptor( dependency, rangeResult ) );
+                assertFalse( "gid:c:1 should have failed", "c".equals( dependency.getArtifact().getArtifactId() ) );
+            }
+            catch ( ArtifactDescriptorException e )
+            {
+                assertEquals( "c", dependency.getArtifact().getArtifactId() );
+            }
+        }
+
+        assertEquals( 0, prefetcher.getPendingCount() );
+        assertEquals( 3, pool.getConstraintCache().size() );
+        assertEquals( 2, pool.getDescriptorCache().size() );
+    }
+
+    @Test
+    public void testCloseWaitsForRunningTasks()
+        throws Exception
+    {
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final AtomicBoolean daemon = new AtomicBoolean();
+        final AtomicBoolean finished = new AtomicBoolean();
+        ArtifactDescriptorReader reader = new ArtifactDescriptorReader()
+        {
+            public ArtifactDescriptorResult readArtifactDescriptor( RepositorySystemSession session,
+                                                                    ArtifactDescriptorRequest request )
+                throws ArtifactDescriptorException
+            {
+                Thread thread = Thread.currentThread();
+                daemon.set( thread.isDaemon() && thread.getName().startsWith( "aether-prefetch-" ) );
+                started.countDown();
+                ArtifactDescriptorResult result = new ArtifactDescriptorResult( request );
+                try
+                {
+                    Thread.sleep( 10000 );
+                }
+                catch ( InterruptedException e )
+                {
+                    finished.set( true );
+                }
+                throw new ArtifactDescriptorException( result );
+            }
+        };
+
+        Prefetcher prefetcher =
+            new Prefetcher( session, pool, "", 2, Prefetcher.newExecutor(),
+                            new DefaultDependencyCollectorTest.StubVersionRangeResolver(), reader );
+        prefetcher.prefetch( Collections.singletonList( new Dependency( new DefaultArtifact( "gid:a:1" ),
+                                                                        "compile" ) ), repositories,
+                             session.getDependencySelector(), session.getDependencyManager() );
+        assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+
+        prefetcher.close();
+        assertTrue( finished.get() );
+        assertTrue( daemon.get() );
+        assertFalse( Thread.currentThread().isInterrupted() );
+    }
+
+}
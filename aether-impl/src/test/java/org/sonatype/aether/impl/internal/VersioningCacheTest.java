@@ -0,0 +1,153 @@
+package org.sonatype.aether.impl.internal;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.aether.DefaultMetadata;
+import org.sonatype.aether.InstallRequest;
+import org.sonatype.aether.LocalRepositoryManager;
+import org.sonatype.aether.Metadata;
+import org.sonatype.aether.impl.metadata.Versioning;
+import org.sonatype.aether.util.DefaultRepositorySystemSession;
+
+/**
+ * @author Benjamin Bentmann
+ */
+public class VersioningCacheTest
+{
+
+    private File file;
+
+    private VersioningCache cache;
+
+    @Before
+    public void setup()
+        throws IOException
+    {
+        file = File.createTempFile( "maven-metadata-", ".xml" );
+        cache = new VersioningCache( 16 );
+    }
+
+    @After
+    public void teardown()
+    {
+        file.delete();
+    }
+
+    private void write( String... versions )
+        throws IOException
+    {
+        write( file, versions );
+    }
+
+    private static void write( File file, String... versions )
+        throws IOException
+    {
+        StringBuilder buffer = new StringBuilder( "<metadata><versioning><versions>" );
+        for ( String version : versions )
+        {
+            buffer.append( "<version>" ).append( version ).append( "</version>" );
+        }
+        buffer.append( "</versions></versioning></metadata>" );
+
+        FileOutputStream os = new FileOutputStream( file );
+        try
+        {
+            os.write( buffer.toString().getBytes( "UTF-8" ) );
+        }
+        finally
+        {
+            IOUtil.close( os );
+        }
+    }
+
+    @Test
+    public void testUnchangedFileIsParsedOnce()
+        throws Exception
+    {
+        write( "1.0", "2.0" );
+        Versioning versioning = cache.read( file );
+        assertEquals( "[1.0, 2.0]", versioning.getVersions().toString() );
+        assertSame( versioning, cache.read( file ) );
+        assertSame( versioning, cache.read( new File( file.getParentFile(), "." + File.separator + file.getName() ) ) );
+        assertEquals( 1, cache.getEntryCache().getMisses() );
+    }
+
+    @Test
+    public void testModifiedFileIsReparsed()
+        throws Exception
+    {
+        write( "1.0" );
+        cache.read( file );
+        write( "1.0", "1.1" );
+        assertEquals( "[1.0, 1.1]", cache.read( file ).getVersions().toString() );
+    }
+
+    @Test
+    public void testInvalidatedFileIsReparsed()
+        throws Exception
+    {
+        write( "1.0" );
+        long lastModified = file.lastModified();
+        Versioning versioning = cache.read( file );
+        write( "2.0" );
+        file.setLastModified( lastModified );
+        assertSame( versioning, cache.read( file ) );
+        cache.invalidate( file );
+        assertEquals( "[2.0]", cache.read( file ).getVersions().toString() );
+    }
+
+    @Test
+    public void testInstallerInvalidatesMetadata()
+        throws Exception
+    {
+        File basedir = new File( file.getPath() + ".repo" );
+        try
+        {
+            DefaultRepositorySystemSession session = new DefaultRepositorySystemSession();
+            session.setLocalRepositoryManager( new SimpleLocalRepositoryManager( basedir ) );
+            LocalRepositoryManager lrm = session.getLocalRepositoryManager();
+
+            Metadata metadata =
+                new DefaultMetadata( "gid", "aid", "maven-metadata-local.xml", Metadata.Nature.RELEASE );
+            metadata = metadata.setFile( file );
+            File installed = new File( basedir, lrm.getPathForLocalMetadata( metadata ) );
+
+            write( "1.0" );
+            new DefaultInstaller().install( session, new InstallRequest().addMetadata( metadata ) );
+            long lastModified = installed.lastModified();
+            VersioningCache shared = VersioningCache.getInstance();
+            assertEquals( "[1.0]", shared.read( installed ).getVersions().toString() );
+
+            write( "2.0" );
+            new DefaultInstaller().install( session, new InstallRequest().addMetadata( metadata ) );
+            installed.setLastModified( lastModified );
+            assertEquals( "[2.0]", shared.read( installed ).getVersions().toString() );
+        }
+        finally
+        {
+            FileUtils.deleteDirectory( basedir );
+        }
+    }
+
+}
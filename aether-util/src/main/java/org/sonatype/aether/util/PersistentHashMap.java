@@ -0,0 +1,505 @@
+package org.sonatype.aether.util;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable hash map that shares structure between its versions. Adding an entry creates a new map that reuses all
+ * but the path to the modified entry from the original map, i.e. updates take time and space logarithmic in the size
+ * of the map (with a base of 32). This makes the map suitable to carry state along the branches of a recursion, each
+ * branch can extend the map without copying it or affecting its siblings. Internally, the map is a hash array mapped
+ * trie. The map does not support {@code null} keys but allows {@code null} values.
+ * 
+ * @author Benjamin Bentmann
+ */
+public final class PersistentHashMap<K, V>
+    implements Iterable<Map.Entry<K, V>>
+{
+
+    private static final PersistentHashMap<Object, Object> EMPTY =
+        new PersistentHashMap<Object, Object>( new BitmapNode( 0, new Object[0] ), 0, 0 );
+
+    private final Node root;
+
+    private final int size;
+
+    private final int hashCode;
+
+    private PersistentHashMap( Node root, int size, int hashCode )
+    {
+        this.root = root;
+        this.size = size;
+        this.hashCode = hashCode;
+    }
+
+    /**
+     * Gets an empty map.
+     * 
+     * @return The empty map, never {@code null}.
+     */
+    @SuppressWarnings( "unchecked" )
+    public static <K, V> PersistentHashMap<K, V> emptyMap()
+    {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Gets the number of entries in this map.
+     * 
+     * @return The number of entries in this map.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Indicates whether this map is empty.
+     * 
+     * @return {@code true} if the map has no entries, {@code false} otherwise.
+     */
+    public boolean isEmpty()
+    {
+        return size <= 0;
+    }
+
+    /**
+     * Indicates whether this map contains a mapping for the specified key.
+     * 
+     * @param key The key to check, may be {@code null}.
+     * @return {@code true} if the map contains the key, {@code false} otherwise.
+     */
+    public boolean containsKey( Object key )
+    {
+        return key != null && root.find( key, hash( key ), 0 ) != null;
+    }
+
+    /**
+     * Gets the value associated with the specified key.
+     * 
+     * @param key The key to look up, may be {@code null}.
+     * @return The value associated with the key or {@code null} if none.
+     */
+    @SuppressWarnings( "unchecked" )
+    public V get( Object key )
+    {
+        if ( key == null )
+        {
+            return null;
+        }
+        Entry entry = root.find( key, hash( key ), 0 );
+        return ( entry != null ) ? (V) entry.value : null;
+    }
+
+    /**
+     * Creates a new map that contains all entries of this map plus the specified mapping. An existing mapping for the
+     * key is replaced. This map itself remains unchanged.
+     * 
+     * @param key The key of the mapping, must not be {@code null}.
+     * @param value The value of the mapping, may be {@code null}.
+     * @return The updated map, never {@code null}. If the map already contains an equal mapping, this map is returned.
+     */
+    public PersistentHashMap<K, V> put( K key, V value )
+    {
+        if ( key == null )
+        {
+            throw new IllegalArgumentException( "key has not been specified" );
+        }
+        int hash = hash( key );
+        Entry existing = root.find( key, hash, 0 );
+        if ( existing != null && eq( existing.value, value ) )
+        {
+            return this;
+        }
+        Entry entry = new Entry( key, value, hash );
+        Node newRoot = root.put( entry, 0 );
+        if ( existing != null )
+        {
+            return new PersistentHashMap<K, V>( newRoot, size, hashCode - existing.hashCode() + entry.hashCode() );
+        }
+        return new PersistentHashMap<K, V>( newRoot, size + 1, hashCode + entry.hashCode() );
+    }
+
+    /**
+     * Creates a new map that contains all entries of this map plus all mappings from the specified map.
+     * 
+     * @param map The mappings to add, may be {@code null}.
+     * @return The updated map, never {@code null}.
+     */
+    public PersistentHashMap<K, V> putAll( Map<? extends K, ? extends V> map )
+    {
+        PersistentHashMap<K, V> result = this;
+        if ( map != null )
+        {
+            for ( Map.Entry<? extends K, ? extends V> entry : map.entrySet() )
+            {
+                result = result.put( entry.getKey(), entry.getValue() );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Iterates the entries of this map. The iteration order is unspecified but stable for equal maps that were built
+     * by adding the same keys.
+     * 
+     * @return The entry iterator, never {@code null}.
+     */
+    public Iterator<Map.Entry<K, V>> iterator()
+    {
+        return new EntryIterator<K, V>( root );
+    }
+
+    private static int hash( Object key )
+    {
+        int h = key.hashCode();
+        // spread the bits as the low bits select the slots of the upper levels of the trie
+        h ^= ( h >>> 20 ) ^ ( h >>> 12 );
+        return h ^ ( h >>> 7 ) ^ ( h >>> 4 );
+    }
+
+    static boolean eq( Object o1, Object o2 )
+    {
+        return ( o1 != null ) ? o1.equals( o2 ) : o2 == null;
+    }
+
+    @Override
+    public boolean equals( Object obj )
+    {
+        if ( obj == this )
+        {
+            return true;
+        }
+        else if ( !( obj instanceof PersistentHashMap<?, ?> ) )
+        {
+            return false;
+        }
+        PersistentHashMap<?, ?> that = (PersistentHashMap<?, ?>) obj;
+        if ( size != that.size || hashCode != that.hashCode )
+        {
+            return false;
+        }
+        if ( root == that.root )
+        {
+            return true;
+        }
+        for ( Map.Entry<K, V> entry : this )
+        {
+            Entry other = that.root.find( entry.getKey(), ( (Entry) entry ).hash, 0 );
+            if ( other == null || !eq( entry.getValue(), other.value ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the hash code of this map. The hash code is computed like {@link Map#hashCode()}, i.e. as the sum of the
+     * hash codes of the entries, and is cached.
+     */
+    @Override
+    public int hashCode()
+    {
+        return hashCode;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder buffer = new StringBuilder( 64 );
+        buffer.append( '{' );
+        for ( Map.Entry<K, V> entry : this )
+        {
+            if ( buffer.length() > 1 )
+            {
+                buffer.append( ", " );
+            }
+            buffer.append( entry );
+        }
+        buffer.append( '}' );
+        return buffer.toString();
+    }
+
+    static final class Entry
+        implements Map.Entry<Object, Object>
+    {
+
+        final Object key;
+
+        final Object value;
+
+        final int hash;
+
+        Entry( Object key, Object value, int hash )
+        {
+            this.key = key;
+            this.value = value;
+            this.hash = hash;
+        }
+
+        public Object getKey()
+        {
+            return key;
+        }
+
+        public Object getValue()
+        {
+            return value;
+        }
+
+        public Object setValue( Object value )
+        {
+            throw new UnsupportedOperationException( "entries of persistent maps are immutable" );
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            if ( obj == this )
+            {
+                return true;
+            }
+            else if ( !( obj instanceof Map.Entry<?, ?> ) )
+            {
+                return false;
+            }
+            Map.Entry<?, ?> that = (Map.Entry<?, ?>) obj;
+            return eq( key, that.getKey() ) && eq( value, that.getValue() );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return key.hashCode() ^ ( ( value != null ) ? value.hashCode() : 0 );
+        }
+
+        @Override
+        public String toString()
+        {
+            return key + "=" + value;
+        }
+
+    }
+
+    static abstract class Node
+    {
+
+        abstract Entry find( Object key, int hash, int shift );
+
+        abstract Node put( Entry entry, int shift );
+
+        abstract void collect( LinkedList<Object> pending );
+
+    }
+
+    /**
+     * A trie node with up to 32 slots, each holding either an entry or a child node. Only occupied slots are stored,
+     * the bitmap tells which slots these are.
+     */
+    static final class BitmapNode
+        extends Node
+    {
+
+        final int bitmap;
+
+        final Object[] slots;
+
+        BitmapNode( int bitmap, Object[] slots )
+        {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        @Override
+        Entry find( Object key, int hash, int shift )
+        {
+            int bit = 1 << ( ( hash >>> shift ) & 31 );
+            if ( ( bitmap & bit ) == 0 )
+            {
+                return null;
+            }
+            Object slot = slots[Integer.bitCount( bitmap & ( bit - 1 ) )];
+            if ( slot instanceof Node )
+            {
+                return ( (Node) slot ).find( key, hash, shift + 5 );
+            }
+            Entry entry = (Entry) slot;
+            return ( entry.hash == hash && key.equals( entry.key ) ) ? entry : null;
+        }
+
+        @Override
+        Node put( Entry entry, int shift )
+        {
+            int bit = 1 << ( ( entry.hash >>> shift ) & 31 );
+            int index = Integer.bitCount( bitmap & ( bit - 1 ) );
+            if ( ( bitmap & bit ) == 0 )
+            {
+                Object[] newSlots = new Object[slots.length + 1];
+                System.arraycopy( slots, 0, newSlots, 0, index );
+                newSlots[index] = entry;
+                System.arraycopy( slots, index, newSlots, index + 1, slots.length - index );
+                return new BitmapNode( bitmap | bit, newSlots );
+            }
+
+            Object slot = slots[index];
+            Object newSlot;
+            if ( slot instanceof Node )
+            {
+                newSlot = ( (Node) slot ).put( entry, shift + 5 );
+            }
+            else
+            {
+                Entry existing = (Entry) slot;
+                if ( existing.hash == entry.hash && existing.key.equals( entry.key ) )
+                {
+                    newSlot = entry;
+                }
+                else if ( existing.hash == entry.hash )
+                {
+                    newSlot = new CollisionNode( entry.hash, new Entry[] { existing, entry } );
+                }
+                else
+                {
+                    Node node = new BitmapNode( 0, new Object[0] );
+                    newSlot = node.put( existing, shift + 5 ).put( entry, shift + 5 );
+                }
+            }
+
+            Object[] newSlots = slots.clone();
+            newSlots[index] = newSlot;
+            return new BitmapNode( bitmap, newSlots );
+        }
+
+        @Override
+        void collect( LinkedList<Object> pending )
+        {
+            for ( int i = slots.length - 1; i >= 0; i-- )
+            {
+                pending.addFirst( slots[i] );
+            }
+        }
+
+    }
+
+    /**
+     * A leaf node holding entries whose keys have the same (full) hash code.
+     */
+    static final class CollisionNode
+        extends Node
+    {
+
+        final int hash;
+
+        final Entry[] entries;
+
+        CollisionNode( int hash, Entry[] entries )
+        {
+            this.hash = hash;
+            this.entries = entries;
+        }
+
+        @Override
+        Entry find( Object key, int hash, int shift )
+        {
+            if ( hash == this.hash )
+            {
+                for ( Entry entry : entries )
+                {
+                    if ( key.equals( entry.key ) )
+                    {
+                        return entry;
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        Node put( Entry entry, int shift )
+        {
+            if ( entry.hash != hash )
+            {
+                // push this node one level down and let a bitmap node distinguish the hashes
+                Node node = new BitmapNode( 1 << ( ( hash >>> shift ) & 31 ), new Object[] { this } );
+                return node.put( entry, shift );
+            }
+            for ( int i = 0; i < entries.length; i++ )
+            {
+                if ( entry.key.equals( entries[i].key ) )
+                {
+                    Entry[] newEntries = entries.clone();
+                    newEntries[i] = entry;
+                    return new CollisionNode( hash, newEntries );
+                }
+            }
+            Entry[] newEntries = new Entry[entries.length + 1];
+            System.arraycopy( entries, 0, newEntries, 0, entries.length );
+            newEntries[entries.length] = entry;
+            return new CollisionNode( hash, newEntries );
+        }
+
+        @Override
+        void collect( LinkedList<Object> pending )
+        {
+            for ( int i = entries.length - 1; i >= 0; i-- )
+            {
+                pending.addFirst( entries[i] );
+            }
+        }
+
+    }
+
+    static final class EntryIterator<K, V>
+        implements Iterator<Map.Entry<K, V>>
+    {
+
+        private final LinkedList<Object> pending = new LinkedList<Object>();
+
+        EntryIterator( Node root )
+        {
+            root.collect( pending );
+        }
+
+        public boolean hasNext()
+        {
+            while ( !pending.isEmpty() && pending.getFirst() instanceof Node )
+            {
+                ( (Node) pending.removeFirst() ).collect( pending );
+            }
+            return !pending.isEmpty();
+        }
+
+        @SuppressWarnings( "unchecked" )
+        public Map.Entry<K, V> next()
+        {
+            if ( !hasNext() )
+            {
+                throw new NoSuchElementException();
+            }
+            return (Map.Entry<K, V>) pending.removeFirst();
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException( "persistent maps are immutable" );
+        }
+
+    }
+
+}
@@ -72,7 +72,7 @@ public class ArtifactListGenerator
     public static List<Artifact> getArtifacts( DependencyNode node )
     {
         ArtifactListGenerator alg = new ArtifactListGenerator();
-        node.accept( alg );
+        IterativeDependencyTraversal.traverse( node, alg );
         return alg.getArtifacts();
     }
 
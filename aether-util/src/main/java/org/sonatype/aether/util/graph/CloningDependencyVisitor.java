@@ -22,7 +22,8 @@ import org.sonatype.aether.DependencyVisitor;
  * A dependency visitor that constructs a clone of the visited dependency graph. If such a visitor is passed into a
  * {@link FilteringDependencyVisitor}, a sub tree can be created. This class creates shallow clones of the visited
  * dependency nodes but clients can create a subclass and override {@link #clone(DependencyNode, DependencyNode)} to
- * alter the clone process.
+ * alter the clone process. As the clone is created while walking the graph, a dependency graph whose nodes are shared
+ * among several parents gets expanded into a proper tree whose nodes all have distinct clones.
  * 
  * @author Benjamin Bentmann
  */
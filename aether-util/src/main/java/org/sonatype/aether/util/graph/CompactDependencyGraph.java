@@ -0,0 +1,607 @@
+package org.sonatype.aether.util.graph;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sonatype.aether.Artifact;
+import org.sonatype.aether.Dependency;
+import org.sonatype.aether.DependencyNode;
+import org.sonatype.aether.DependencyVisitor;
+import org.sonatype.aether.RemoteRepository;
+import org.sonatype.aether.Version;
+import org.sonatype.aether.VersionConstraint;
+
+/**
+ * A memory efficient representation of a dependency tree. The nodes are numbered in depth-first pre-order, i.e. the
+ * subtree of a node occupies a contiguous range of node indices starting with the node itself, and the structure of the
+ * tree is stored in primitive arrays. The dependencies, versions and the remaining, rarely distinct node attributes are
+ * interned into tables and referenced by their index, values set via the mutators of the nodes are interned alike and
+ * replace the values they supersede in the tables. For compatibility, {@link #getRoot()} provides a
+ * {@link DependencyNode} view of the graph whose nodes are created on demand. The structure of this view is read-only,
+ * i.e. its lists of children cannot be modified, and the view nodes of the same graph position are equal but not
+ * necessarily identical. A graph whose nodes are shared among several parents gets expanded into a proper tree.
+ * 
+ * @author Benjamin Bentmann
+ */
+public final class CompactDependencyGraph
+{
+
+    private final int count;
+
+    private final int[] parents;
+
+    private final int[] sizes;
+
+    private final int[] depths;
+
+    private final int[] dependencyIds;
+
+    private final int[] versionIds;
+
+    private final int[] attributeIds;
+
+    private final Table<Dependency> dependencies;
+
+    private final Table<Version> versions;
+
+    private final Table<Attributes> attributes;
+
+    private Object[] conflictIds;
+
+    CompactDependencyGraph( Builder builder )
+    {
+        count = builder.count;
+        parents = trim( builder.parents, count );
+        sizes = trim( builder.sizes, count );
+        depths = trim( builder.depths, count );
+        dependencyIds = trim( builder.dependencyIds, count );
+        versionIds = trim( builder.versionIds, count );
+        attributeIds = trim( builder.attributeIds, count );
+        dependencies = builder.dependencies;
+        versions = builder.versions;
+        attributes = builder.attributes;
+        conflictIds = builder.conflictIds;
+    }
+
+    private static int[] trim( int[] array, int length )
+    {
+        if ( array.length == length )
+        {
+            return array;
+        }
+        int[] trimmed = new int[length];
+        System.arraycopy( array, 0, trimmed, 0, length );
+        return trimmed;
+    }
+
+    /**
+     * Creates a compact copy of the specified dependency graph.
+     * 
+     * @param root The root node of the dependency graph to copy, must not be {@code null}.
+     * @return The compact dependency graph, never {@code null}.
+     */
+    public static CompactDependencyGraph newInstance( DependencyNode root )
+    {
+        Builder builder = new Builder();
+        IterativeDependencyTraversal.traverse( root, builder );
+        return builder.getGraph();
+    }
+
+    /**
+     * Gets the number of nodes in this graph.
+     * 
+     * @return The number of nodes in this graph.
+     */
+    public int getNodeCount()
+    {
+        return count;
+    }
+
+    /**
+     * Gets the number of distinct dependencies referenced by the nodes of this graph.
+     * 
+     * @return The number of distinct dependencies.
+     */
+    public synchronized int getDependencyCount()
+    {
+        return dependencies.size();
+    }
+
+    /**
+     * Gets the root node of this graph.
+     * 
+     * @return The root node or {@code null} if the graph is empty.
+     */
+    public DependencyNode getRoot()
+    {
+        return ( count > 0 ) ? getNode( 0 ) : null;
+    }
+
+    /**
+     * Gets a view of the specified node.
+     * 
+     * @param index The index of the node, must be non-negative and less than the node count.
+     * @return The view of the node, never {@code null}.
+     */
+    public DependencyNode getNode( int index )
+    {
+        if ( index < 0 || index >= count )
+        {
+            throw new IndexOutOfBoundsException( "node index " + index + " not in [0, " + count + ")" );
+        }
+        return new CompactDependencyNode( this, index );
+    }
+
+    /**
+     * Gets the index of the parent of the specified node.
+     * 
+     * @param index The index of the node.
+     * @return The index of the parent node or {@code -1} for the root node.
+     */
+    public int getParent( int index )
+    {
+        return parents[index];
+    }
+
+    /**
+     * Gets the number of nodes in the subtree rooted at the specified node, including the node itself. The nodes of
+     * the subtree have the indices {@code index} to {@code index + getSubtreeSize(index) - 1}.
+     * 
+     * @param index The index of the node.
+     * @return The size of the subtree.
+     */
+    public int getSubtreeSize( int index )
+    {
+        return sizes[index];
+    }
+
+    /**
+     * Gets the depth of the specified node, the root node has depth zero.
+     * 
+     * @param index The index of the node.
+     * @return The depth of the node.
+     */
+    public int getDepth( int index )
+    {
+        return depths[index];
+    }
+
+    /**
+     * Gets the dependency of the specified node.
+     * 
+     * @param index The index of the node.
+     * @return The dependency or {@code null} if none.
+     */
+    public synchronized Dependency getDependency( int index )
+    {
+        return dependencies.get( dependencyIds[index] );
+    }
+
+    /**
+     * Gets the version of the specified node.
+     * 
+     * @param index The index of the node.
+     * @return The version or {@code null} if none.
+     */
+    public synchronized Version getVersion( int index )
+    {
+        return versions.get( versionIds[index] );
+    }
+
+    int[] getChildren( int index )
+    {
+        int n = 0;
+        for ( int child = index + 1, end = index + sizes[index]; child < end; child += sizes[child] )
+        {
+            n++;
+        }
+        int[] children = new int[n];
+        n = 0;
+        for ( int child = index + 1, end = index + sizes[index]; child < end; child += sizes[child] )
+        {
+            children[n++] = child;
+        }
+        return children;
+    }
+
+    synchronized Attributes getAttributes( int index )
+    {
+        return attributes.get( attributeIds[index] );
+    }
+
+    synchronized void setAttributes( int index, Attributes attribs )
+    {
+        attributeIds[index] = attributes.replace( attributeIds[index], attribs );
+    }
+
+    synchronized void setDependency( int index, Dependency dependency )
+    {
+        dependencyIds[index] = dependencies.replace( dependencyIds[index], dependency );
+    }
+
+    synchronized Object getConflictId( int index )
+    {
+        return ( conflictIds != null ) ? conflictIds[index] : null;
+    }
+
+    synchronized void setConflictId( int index, Object conflictId )
+    {
+        if ( conflictIds == null )
+        {
+            if ( conflictId == null )
+            {
+                return;
+            }
+            conflictIds = new Object[count];
+        }
+        conflictIds[index] = conflictId;
+    }
+
+    /**
+     * The attributes of a node which are usually shared by many nodes.
+     */
+    static final class Attributes
+    {
+
+        final VersionConstraint versionConstraint;
+
+        final String context;
+
+        final String premanagedVersion;
+
+        final String premanagedScope;
+
+        final List<RemoteRepository> repositories;
+
+        final List<Artifact> relocations;
+
+        final List<Artifact> aliases;
+
+        private final int hashCode;
+
+        Attributes( VersionConstraint versionConstraint, String context, String premanagedVersion,
+                    String premanagedScope, List<RemoteRepository> repositories, List<Artifact> relocations,
+                    List<Artifact> aliases )
+        {
+            this.versionConstraint = versionConstraint;
+            this.context = context;
+            this.premanagedVersion = premanagedVersion;
+            this.premanagedScope = premanagedScope;
+            this.repositories = repositories;
+            this.relocations = relocations;
+            this.aliases = aliases;
+
+            int hash = 17;
+            hash = hash * 31 + hash( versionConstraint );
+            hash = hash * 31 + hash( context );
+            hash = hash * 31 + hash( premanagedVersion );
+            hash = hash * 31 + hash( premanagedScope );
+            hash = hash * 31 + hash( repositories );
+            hash = hash * 31 + hash( relocations );
+            hash = hash * 31 + hash( aliases );
+            hashCode = hash;
+        }
+
+        Attributes( DependencyNode node )
+        {
+            this( node.getVersionConstraint(), node.getContext(), node.getPremanagedVersion(),
+                  node.getPremanagedScope(), node.getRepositories(), node.getRelocations(), node.getAliases() );
+        }
+
+        private static int hash( Object obj )
+        {
+            return ( obj != null ) ? obj.hashCode() : 0;
+        }
+
+        private static boolean eq( Object o1, Object o2 )
+        {
+            return ( o1 != null ) ? o1.equals( o2 ) : o2 == null;
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            if ( obj == this )
+            {
+                return true;
+            }
+            else if ( !( obj instanceof Attributes ) )
+            {
+                return false;
+            }
+            Attributes that = (Attributes) obj;
+            return hashCode == that.hashCode && eq( versionConstraint, that.versionConstraint )
+                && eq( context, that.context ) && eq( premanagedVersion, that.premanagedVersion )
+                && eq( premanagedScope, that.premanagedScope ) && eq( repositories, that.repositories )
+                && eq( relocations, that.relocations ) && eq( aliases, that.aliases );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+    }
+
+    /**
+     * An interning table that assigns ids to distinct values and counts the references to each id. The slot of a value
+     * that is no longer referenced is reused for the next new value, i.e. the table never grows beyond the number of
+     * values that are referenced at the same time.
+     */
+    static final class Table<T>
+    {
+
+        private final List<T> values = new ArrayList<T>();
+
+        private final Map<T, Integer> ids = new HashMap<T, Integer>();
+
+        private int[] refs = new int[16];
+
+        private int[] free = new int[16];
+
+        private int freeCount;
+
+        private int nullId = -1;
+
+        T get( int id )
+        {
+            return values.get( id );
+        }
+
+        /**
+         * Gets the number of distinct values that are currently referenced.
+         */
+        int size()
+        {
+            return values.size() - freeCount;
+        }
+
+        private int find( T value )
+        {
+            if ( value == null )
+            {
+                return nullId;
+            }
+            Integer id = ids.get( value );
+            return ( id != null ) ? id.intValue() : -1;
+        }
+
+        private void map( T value, int id )
+        {
+            if ( value == null )
+            {
+                nullId = id;
+            }
+            else
+            {
+                ids.put( value, Integer.valueOf( id ) );
+            }
+        }
+
+        private void unmap( T value )
+        {
+            if ( value == null )
+            {
+                nullId = -1;
+            }
+            else
+            {
+                ids.remove( value );
+            }
+        }
+
+        /**
+         * Adds a reference to the specified value.
+         * 
+         * @return The id of the value.
+         */
+        int intern( T value )
+        {
+            int id = find( value );
+            if ( id < 0 )
+            {
+                if ( freeCount > 0 )
+                {
+                    id = free[--freeCount];
+                    values.set( id, value );
+                }
+                else
+                {
+                    id = values.size();
+                    values.add( value );
+                    if ( id >= refs.length )
+                    {
+                        int[] grown = new int[refs.length * 2];
+                        System.arraycopy( refs, 0, grown, 0, refs.length );
+                        refs = grown;
+                    }
+                }
+                map( value, id );
+            }
+            refs[id]++;
+            return id;
+        }
+
+        /**
+         * Removes a reference to the value with the specified id, freeing its slot once it is no longer referenced.
+         */
+        void release( int id )
+        {
+            if ( --refs[id] <= 0 )
+            {
+                unmap( values.get( id ) );
+                values.set( id, null );
+                if ( freeCount >= free.length )
+                {
+                    int[] grown = new int[free.length * 2];
+                    System.arraycopy( free, 0, grown, 0, free.length );
+                    free = grown;
+                }
+                free[freeCount++] = id;
+            }
+        }
+
+        /**
+         * Moves one reference from the value with the specified id to the specified value.
+         * 
+         * @return The id of the new value.
+         */
+        int replace( int id, T value )
+        {
+            int existing = find( value );
+            if ( existing == id )
+            {
+                return id;
+            }
+            if ( existing < 0 && refs[id] == 1 )
+            {
+                unmap( values.get( id ) );
+                values.set( id, value );
+                map( value, id );
+                return id;
+            }
+            int replacement = intern( value );
+            release( id );
+            return replacement;
+        }
+
+    }
+
+    /**
+     * A dependency visitor that builds a compact graph from the visited nodes. As the builder only relies on the order
+     * of the visits, it can also be used with a streaming dependency collection.
+     */
+    public static final class Builder
+        implements DependencyVisitor
+    {
+
+        int count;
+
+        int[] parents = new int[256];
+
+        int[] sizes = new int[256];
+
+        int[] depths = new int[256];
+
+        int[] dependencyIds = new int[256];
+
+        int[] versionIds = new int[256];
+
+        int[] attributeIds = new int[256];
+
+        final Table<Dependency> dependencies = new Table<Dependency>();
+
+        final Table<Version> versions = new Table<Version>();
+
+        final Table<Attributes> attributes = new Table<Attributes>();
+
+        Object[] conflictIds;
+
+        private int current = -1;
+
+        private boolean done;
+
+        public boolean visitEnter( DependencyNode node )
+        {
+            if ( done )
+            {
+                throw new IllegalStateException( "graph has already been built" );
+            }
+
+            if ( count >= parents.length )
+            {
+                int capacity = parents.length * 2;
+                parents = grow( parents, capacity );
+                sizes = grow( sizes, capacity );
+                depths = grow( depths, capacity );
+                dependencyIds = grow( dependencyIds, capacity );
+                versionIds = grow( versionIds, capacity );
+                attributeIds = grow( attributeIds, capacity );
+                if ( conflictIds != null )
+                {
+                    Object[] ids = new Object[capacity];
+                    System.arraycopy( conflictIds, 0, ids, 0, count );
+                    conflictIds = ids;
+                }
+            }
+
+            int index = count++;
+            parents[index] = current;
+            depths[index] = ( current >= 0 ) ? depths[current] + 1 : 0;
+            dependencyIds[index] = dependencies.intern( node.getDependency() );
+            versionIds[index] = versions.intern( node.getVersion() );
+            attributeIds[index] = attributes.intern( new Attributes( node ) );
+
+            Object conflictId = node.getConflictId();
+            if ( conflictId != null )
+            {
+                if ( conflictIds == null )
+                {
+                    conflictIds = new Object[parents.length];
+                }
+                conflictIds[index] = conflictId;
+            }
+
+            current = index;
+            return true;
+        }
+
+        public boolean visitLeave( DependencyNode node )
+        {
+            sizes[current] = count - current;
+            current = parents[current];
+            if ( current < 0 )
+            {
+                done = true;
+            }
+            return true;
+        }
+
+        private static int[] grow( int[] array, int capacity )
+        {
+            int[] grown = new int[capacity];
+            System.arraycopy( array, 0, grown, 0, array.length );
+            return grown;
+        }
+
+        /**
+         * Gets the graph built from the visited nodes.
+         * 
+         * @return The compact dependency graph, never {@code null}.
+         * @throws IllegalStateException If the visit of the root node has not been completed yet.
+         */
+        public CompactDependencyGraph getGraph()
+        {
+            if ( !done && count > 0 )
+            {
+                throw new IllegalStateException( "visit of root node has not been completed" );
+            }
+            if ( conflictIds != null && conflictIds.length != count )
+            {
+                Object[] ids = new Object[count];
+                System.arraycopy( conflictIds, 0, ids, 0, count );
+                conflictIds = ids;
+            }
+            done = true;
+            return new CompactDependencyGraph( this );
+        }
+
+    }
+
+}
@@ -0,0 +1,224 @@
+package org.sonatype.aether.util.graph;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.sonatype.aether.Artifact;
+import org.sonatype.aether.Dependency;
+import org.sonatype.aether.DependencyNode;
+import org.sonatype.aether.DependencyVisitor;
+import org.sonatype.aether.RemoteRepository;
+import org.sonatype.aether.Version;
+import org.sonatype.aether.VersionConstraint;
+import org.sonatype.aether.util.graph.CompactDependencyGraph.Attributes;
+
+/**
+ * A view of a node from a {@link CompactDependencyGraph}.
+ * 
+ * @author Benjamin Bentmann
+ */
+final class CompactDependencyNode
+    implements DependencyNode
+{
+
+    private final CompactDependencyGraph graph;
+
+    private final int index;
+
+    private List<DependencyNode> children;
+
+    public CompactDependencyNode( CompactDependencyGraph graph, int index )
+    {
+        this.graph = graph;
+        this.index = index;
+    }
+
+    public DependencyNode getParent()
+    {
+        int parent = graph.getParent( index );
+        return ( parent >= 0 ) ? graph.getNode( parent ) : null;
+    }
+
+    public int getDepth()
+    {
+        return graph.getDepth( index );
+    }
+
+    public List<DependencyNode> getChildren()
+    {
+        if ( children == null )
+        {
+            children = new Children( graph, graph.getChildren( index ) );
+        }
+        return children;
+    }
+
+    public Dependency getDependency()
+    {
+        return graph.getDependency( index );
+    }
+
+    public Version getVersion()
+    {
+        return graph.getVersion( index );
+    }
+
+    public Object getConflictId()
+    {
+        return graph.getConflictId( index );
+    }
+
+    public DependencyNode setConflictId( Object conflictId )
+    {
+        graph.setConflictId( index, conflictId );
+        return this;
+    }
+
+    public String getContext()
+    {
+        return graph.getAttributes( index ).context;
+    }
+
+    public DependencyNode setContext( String context )
+    {
+        Attributes a = graph.getAttributes( index );
+        graph.setAttributes( index, new Attributes( a.versionConstraint, ( context != null ) ? context : "",
+                                                    a.premanagedVersion, a.premanagedScope, a.repositories,
+                                                    a.relocations, a.aliases ) );
+        return this;
+    }
+
+    public List<Artifact> getRelocations()
+    {
+        return graph.getAttributes( index ).relocations;
+    }
+
+    public List<Artifact> getAliases()
+    {
+        return graph.getAttributes( index ).aliases;
+    }
+
+    public VersionConstraint getVersionConstraint()
+    {
+        return graph.getAttributes( index ).versionConstraint;
+    }
+
+    public DependencyNode setVersionConstraint( VersionConstraint versionConstraint )
+    {
+        Attributes a = graph.getAttributes( index );
+        graph.setAttributes( index, new Attributes( versionConstraint, a.context, a.premanagedVersion,
+                                                    a.premanagedScope, a.repositories, a.relocations, a.aliases ) );
+        return this;
+    }
+
+    public DependencyNode setScope( String scope )
+    {
+        graph.setDependency( index, getDependency().setScope( scope ) );
+        return this;
+    }
+
+    public DependencyNode setArtifact( Artifact artifact )
+    {
+        graph.setDependency( index, getDependency().setArtifact( artifact ) );
+        return this;
+    }
+
+    public String getPremanagedVersion()
+    {
+        return graph.getAttributes( index ).premanagedVersion;
+    }
+
+    public String getPremanagedScope()
+    {
+        return graph.getAttributes( index ).premanagedScope;
+    }
+
+    public List<RemoteRepository> getRepositories()
+    {
+        return graph.getAttributes( index ).repositories;
+    }
+
+    public DependencyNode setRepositories( List<RemoteRepository> repositories )
+    {
+        Attributes a = graph.getAttributes( index );
+        graph.setAttributes( index, new Attributes( a.versionConstraint, a.context, a.premanagedVersion,
+                                                    a.premanagedScope, repositories, a.relocations, a.aliases ) );
+        return this;
+    }
+
+    public boolean accept( DependencyVisitor visitor )
+    {
+        return IterativeDependencyTraversal.traverse( this, visitor );
+    }
+
+    @Override
+    public boolean equals( Object obj )
+    {
+        if ( obj == this )
+        {
+            return true;
+        }
+        else if ( !( obj instanceof CompactDependencyNode ) )
+        {
+            return false;
+        }
+        CompactDependencyNode that = (CompactDependencyNode) obj;
+        return index == that.index && graph == that.graph;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return index * 31 + System.identityHashCode( graph );
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.valueOf( getDependency() );
+    }
+
+    static final class Children
+        extends AbstractList<DependencyNode>
+        implements RandomAccess
+    {
+
+        private final CompactDependencyGraph graph;
+
+        private final int[] indices;
+
+        public Children( CompactDependencyGraph graph, int[] indices )
+        {
+            this.graph = graph;
+            this.indices = indices;
+        }
+
+        @Override
+        public DependencyNode get( int index )
+        {
+            return graph.getNode( indices[index] );
+        }
+
+        @Override
+        public int size()
+        {
+            return indices.length;
+        }
+
+    }
+
+}
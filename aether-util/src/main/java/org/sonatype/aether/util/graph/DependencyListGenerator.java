@@ -72,7 +72,7 @@ public class DependencyListGenerator
     public static List<Dependency> getDependencies( DependencyNode node )
     {
         DependencyListGenerator alg = new DependencyListGenerator();
-        node.accept( alg );
+        IterativeDependencyTraversal.traverse( node, alg );
         return alg.getDependencies();
     }
 
@@ -74,7 +74,7 @@ public class FileListGenerator
     public static List<File> getFiles( DependencyNode node )
     {
         FileListGenerator flg = new FileListGenerator();
-        node.accept( flg );
+        IterativeDependencyTraversal.traverse( node, flg );
         return flg.getFiles();
     }
 
@@ -108,7 +108,7 @@ public class FileListGenerator
     public static String getClassPath( DependencyNode node )
     {
         FileListGenerator flg = new FileListGenerator();
-        node.accept( flg );
+        IterativeDependencyTraversal.traverse( node, flg );
         return flg.getClassPath();
     }
 
@@ -0,0 +1,180 @@
+package org.sonatype.aether.util.graph;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.util.List;
+
+import org.sonatype.aether.DependencyNode;
+import org.sonatype.aether.DependencyVisitor;
+
+/**
+ * Traverses a dependency graph in depth-first order using an explicit stack instead of recursion, i.e. the depth of the
+ * graph is not limited by the stack size of the calling thread. The visitor is called back exactly like
+ * {@link DependencyNode#accept(DependencyVisitor)} would do, only that the children of a node are traversed directly
+ * rather than via their own {@code accept()} method. The children of a node are looked up after the node has been
+ * entered, so a visitor may still modify them from {@link DependencyVisitor#visitEnter(DependencyNode)}.
+ * 
+ * @author Benjamin Bentmann
+ */
+public final class IterativeDependencyTraversal
+{
+
+    private IterativeDependencyTraversal()
+    {
+        // hide constructor
+    }
+
+    /**
+     * Traverses the specified node and potentially its descendants using the given visitor.
+     * 
+     * @param node The node to start the traversal at, must not be {@code null}.
+     * @param visitor The visitor to call back, must not be {@code null}.
+     * @return {@code true} to visit siblings nodes of the specified node as well, {@code false} to skip siblings.
+     */
+    public static boolean traverse( DependencyNode node, DependencyVisitor visitor )
+    {
+        if ( !visitor.visitEnter( node ) )
+        {
+            return visitor.visitLeave( node );
+        }
+
+        List<DependencyNode> children = node.getChildren();
+        if ( children.isEmpty() )
+        {
+            return visitor.visitLeave( node );
+        }
+
+        Stack stack = new Stack();
+        stack.push( node, children );
+
+        while ( true )
+        {
+            DependencyNode child = stack.next();
+            if ( child != null )
+            {
+                if ( visitor.visitEnter( child ) )
+                {
+                    children = child.getChildren();
+                    if ( !children.isEmpty() )
+                    {
+                        stack.push( child, children );
+                        continue;
+                    }
+                }
+                if ( !visitor.visitLeave( child ) )
+                {
+                    stack.skip();
+                }
+                continue;
+            }
+
+            DependencyNode parent = stack.pop();
+            boolean siblings = visitor.visitLeave( parent );
+            if ( stack.isEmpty() )
+            {
+                return siblings;
+            }
+            if ( !siblings )
+            {
+                stack.skip();
+            }
+        }
+    }
+
+    /**
+     * The nodes being visited along with their children and the position of the next child to visit. Leaves are never
+     * pushed onto the stack.
+     */
+    static final class Stack
+    {
+
+        private DependencyNode[] nodes = new DependencyNode[16];
+
+        private Object[] children = new Object[16];
+
+        private int[] positions = new int[16];
+
+        private int size;
+
+        public void push( DependencyNode node, List<DependencyNode> children )
+        {
+            if ( size >= nodes.length )
+            {
+                grow();
+            }
+            this.nodes[size] = node;
+            this.children[size] = children;
+            this.positions[size] = 0;
+            size++;
+        }
+
+        public DependencyNode pop()
+        {
+            size--;
+            DependencyNode node = nodes[size];
+            nodes[size] = null;
+            children[size] = null;
+            return node;
+        }
+
+        public boolean isEmpty()
+        {
+            return size <= 0;
+        }
+
+        /**
+         * Gets the next child of the top node, or {@code null} if all children have been visited.
+         */
+        public DependencyNode next()
+        {
+            int top = size - 1;
+            List<?> list = (List<?>) children[top];
+            int position = positions[top];
+            if ( position >= list.size() )
+            {
+                return null;
+            }
+            positions[top] = position + 1;
+            return (DependencyNode) list.get( position );
+        }
+
+        /**
+         * Skips the remaining children of the top node.
+         */
+        public void skip()
+        {
+            int top = size - 1;
+            positions[top] = ( (List<?>) children[top] ).size();
+        }
+
+        private void grow()
+        {
+            int n = nodes.length * 2;
+
+            DependencyNode[] nodes = new DependencyNode[n];
+            System.arraycopy( this.nodes, 0, nodes, 0, size );
+            this.nodes = nodes;
+
+            Object[] children = new Object[n];
+            System.arraycopy( this.children, 0, children, 0, size );
+            this.children = children;
+
+            int[] positions = new int[n];
+            System.arraycopy( this.positions, 0, positions, 0, size );
+            this.positions = positions;
+        }
+
+    }
+
+}
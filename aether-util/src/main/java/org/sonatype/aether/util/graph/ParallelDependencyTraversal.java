@@ -0,0 +1,392 @@
+package org.sonatype.aether.util.graph;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sonatype.aether.DependencyNode;
+import org.sonatype.aether.DependencyVisitor;
+
+/**
+ * Traverses a dependency graph in depth-first order using several threads. The graph is cut into segments: The nodes
+ * of the upper levels form segments of their own and are visited by the calling thread, the subtrees below those
+ * levels are visited concurrently. Each segment is visited by its own visitor. A visitor sees its nodes in the order of
+ * a sequential traversal and the visitor of an upper node is only left once all segments below the node have been
+ * visited, i.e. {@link DependencyVisitor#visitLeave(DependencyNode)} is still called in post-order. The visitors are
+ * returned in the order in which a sequential traversal would have entered the first node of their segment, such that
+ * their results can be merged deterministically. Skipping siblings via the return value of
+ * {@link DependencyVisitor#visitLeave(DependencyNode)} is honored by leaving out the visitors of the skipped segments
+ * from the result, these segments may nevertheless have been visited. Graphs with fewer nodes than a threshold are
+ * traversed sequentially by the calling thread.
+ * 
+ * @author Benjamin Bentmann
+ */
+public final class ParallelDependencyTraversal
+{
+
+    /**
+     * The default minimum number of nodes for a graph to be traversed in parallel.
+     */
+    public static final int DEFAULT_MIN_NODES = 1000;
+
+    /**
+     * The number of subtrees per thread that the traversal aims for to balance the load among the threads.
+     */
+    private static final int SUBTREES_PER_THREAD = 4;
+
+    /**
+     * The maximum depth of the upper nodes, cutting the graph any deeper would merely shift the work to the calling
+     * thread.
+     */
+    private static final int MAX_SPLIT_DEPTH = 3;
+
+    private static Executor sharedExecutor;
+
+    private final int threads;
+
+    private final int minNodes;
+
+    private final Executor executor;
+
+    /**
+     * Creates a new traversal with the specified number of threads taken from an executor shared by all traversals.
+     * 
+     * @param threads The number of threads to visit the subtrees with, a value less than {@code 2} causes the graph to
+     *            be traversed sequentially by the calling thread.
+     */
+    public ParallelDependencyTraversal( int threads )
+    {
+        this( threads, DEFAULT_MIN_NODES, null );
+    }
+
+    /**
+     * Creates a new traversal with the specified number of threads taken from the given executor.
+     * 
+     * @param threads The number of threads to visit the subtrees with, a value less than {@code 2} causes the graph to
+     *            be traversed sequentially by the calling thread.
+     * @param minNodes The minimum number of nodes for a graph to be traversed in parallel.
+     * @param executor The executor to run the threads on, may be {@code null} to use an executor shared by all
+     *            traversals. The executor must be able to run the specified number of tasks concurrently and may not
+     *            run them on the calling thread.
+     */
+    public ParallelDependencyTraversal( int threads, int minNodes, Executor executor )
+    {
+        this.threads = threads;
+        this.minNodes = minNodes;
+        this.executor = ( executor != null ) ? executor : getSharedExecutor();
+    }
+
+    private static synchronized Executor getSharedExecutor()
+    {
+        if ( sharedExecutor == null )
+        {
+            ThreadFactory threadFactory = new ThreadFactory()
+            {
+
+                private final AtomicInteger counter = new AtomicInteger();
+
+                public Thread newThread( Runnable r )
+                {
+                    Thread thread = new Thread( r, "aether-traversal-" + counter.incrementAndGet() );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+
+            };
+            sharedExecutor =
+                new ThreadPoolExecutor( 0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                                        threadFactory );
+        }
+        return sharedExecutor;
+    }
+
+    /**
+     * Traverses the specified dependency graph.
+     * 
+     * @param node The root node of the graph to traverse, must not be {@code null}.
+     * @param factory The factory to create the visitors for the segments of the graph, must not be {@code null}. The
+     *            factory is only called by the calling thread.
+     * @return The visitors of the segments in the order of a sequential traversal, never {@code null}.
+     */
+    public <V extends DependencyVisitor> List<V> traverse( DependencyNode node, VisitorFactory<V> factory )
+    {
+        List<V> visitors = new ArrayList<V>();
+
+        int depth = getSplitDepth( node );
+        if ( depth <= 0 )
+        {
+            V visitor = factory.newVisitor( Collections.<DependencyNode> emptyList() );
+            IterativeDependencyTraversal.traverse( node, visitor );
+            visitors.add( visitor );
+            return visitors;
+        }
+
+        Queue<Segment<V>> subtrees = new ConcurrentLinkedQueue<Segment<V>>();
+        Segment<V> root = split( node, new LinkedList<DependencyNode>(), depth, factory, subtrees );
+
+        run( subtrees );
+
+        root.leave( visitors );
+        return visitors;
+    }
+
+    /**
+     * Determines the number of upper levels such that the levels below provide enough subtrees to keep the threads
+     * busy.
+     */
+    private int getSplitDepth( DependencyNode node )
+    {
+        if ( threads < 2 || !hasNodes( node, minNodes ) )
+        {
+            return 0;
+        }
+
+        int depth = 0;
+        List<DependencyNode> level = Collections.singletonList( node );
+        while ( level.size() < threads * SUBTREES_PER_THREAD && depth < MAX_SPLIT_DEPTH )
+        {
+            List<DependencyNode> next = new ArrayList<DependencyNode>();
+            for ( DependencyNode parent : level )
+            {
+                next.addAll( parent.getChildren() );
+            }
+            if ( next.isEmpty() )
+            {
+                break;
+            }
+            level = next;
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * Determines whether the graph has at least the specified number of nodes, counting stops once the number is
+     * reached.
+     */
+    private static boolean hasNodes( DependencyNode node, int count )
+    {
+        List<DependencyNode> stack = new ArrayList<DependencyNode>();
+        stack.add( node );
+        for ( int n = 0; n < count; n++ )
+        {
+            if ( stack.isEmpty() )
+            {
+                return false;
+            }
+            stack.addAll( stack.remove( stack.size() - 1 ).getChildren() );
+        }
+        return true;
+    }
+
+    /**
+     * Enters the upper nodes and collects the subtrees below them, leaves that are upper nodes are visited directly.
+     */
+    private <V extends DependencyVisitor> Segment<V> split( DependencyNode node, LinkedList<DependencyNode> parents,
+                                                            int depth, VisitorFactory<V> factory,
+                                                            Queue<Segment<V>> subtrees )
+    {
+        V visitor = factory.newVisitor( Collections.unmodifiableList( new ArrayList<DependencyNode>( parents ) ) );
+        Segment<V> segment = new Segment<V>( node, visitor );
+
+        if ( node.getChildren().isEmpty() )
+        {
+            segment.run();
+        }
+        else if ( depth <= 0 )
+        {
+            subtrees.add( segment );
+        }
+        else
+        {
+            segment.children = new ArrayList<Segment<V>>( node.getChildren().size() );
+            if ( visitor.visitEnter( node ) )
+            {
+                parents.addLast( node );
+                for ( DependencyNode child : node.getChildren() )
+                {
+                    Segment<V> c = split( child, parents, depth - 1, factory, subtrees );
+                    segment.children.add( c );
+                    if ( c.children == null && c.done && !c.siblings )
+                    {
+                        break;
+                    }
+                }
+                parents.removeLast();
+            }
+        }
+
+        return segment;
+    }
+
+    /**
+     * Visits the specified subtrees using up to the configured number of threads and waits for their completion.
+     */
+    private <V extends DependencyVisitor> void run( final Queue<Segment<V>> subtrees )
+    {
+        List<FutureTask<Object>> workers = new ArrayList<FutureTask<Object>>();
+        for ( int i = Math.min( threads, subtrees.size() ); i > 0; i-- )
+        {
+            FutureTask<Object> worker = new FutureTask<Object>( new Runnable()
+            {
+                public void run()
+                {
+                    for ( Segment<V> segment; ( segment = subtrees.poll() ) != null; )
+                    {
+                        segment.run();
+                    }
+                }
+            }, null );
+            workers.add( worker );
+            executor.execute( worker );
+        }
+
+        RuntimeException failure = null;
+        for ( FutureTask<Object> worker : workers )
+        {
+            try
+            {
+                await( worker );
+            }
+            catch ( RuntimeException e )
+            {
+                if ( failure == null )
+                {
+                    failure = e;
+                }
+                // keep the other workers from starting further subtrees
+                subtrees.clear();
+            }
+        }
+        if ( failure != null )
+        {
+            throw failure;
+        }
+    }
+
+    private static void await( FutureTask<Object> task )
+    {
+        try
+        {
+            task.get();
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException( cause );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted while traversing dependency graph", e );
+        }
+    }
+
+    /**
+     * A segment of the graph, either an upper node with the segments below it or a subtree that is visited as a whole.
+     */
+    static final class Segment<V extends DependencyVisitor>
+    {
+
+        final DependencyNode node;
+
+        final V visitor;
+
+        /**
+         * The segments below an upper node, {@code null} for a subtree.
+         */
+        List<Segment<V>> children;
+
+        boolean done;
+
+        boolean siblings;
+
+        public Segment( DependencyNode node, V visitor )
+        {
+            this.node = node;
+            this.visitor = visitor;
+        }
+
+        public void run()
+        {
+            siblings = IterativeDependencyTraversal.traverse( node, visitor );
+            done = true;
+        }
+
+        /**
+         * Leaves the upper nodes in post-order and collects the visitors of the segments that a sequential traversal
+         * would not have skipped.
+         * 
+         * @return {@code false} if the siblings of this segment are to be skipped, {@code true} otherwise.
+         */
+        public boolean leave( List<V> visitors )
+        {
+            visitors.add( visitor );
+            if ( children == null )
+            {
+                return siblings;
+            }
+            for ( Segment<V> child : children )
+            {
+                if ( !child.leave( visitors ) )
+                {
+                    break;
+                }
+            }
+            return visitor.visitLeave( node );
+        }
+
+    }
+
+    /**
+     * Creates the visitors for the segments of a parallel traversal.
+     * 
+     * @param <V> The type of the visitors.
+     */
+    public interface VisitorFactory<V extends DependencyVisitor>
+    {
+
+        /**
+         * Creates a visitor for the segment starting at a node with the specified parents.
+         * 
+         * @param parents The (read-only) parents of the first node of the segment, starting with the root of the graph,
+         *            never {@code null}. For the segment of the root node, the list is empty.
+         * @return The visitor for the segment, must not be {@code null}.
+         */
+        V newVisitor( List<DependencyNode> parents );
+
+    }
+
+}
@@ -14,11 +14,8 @@ package org.sonatype.aether.util.graph.manager;
  */
 
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 
 import org.sonatype.aether.Artifact;
 import org.sonatype.aether.Dependency;
@@ -26,9 +23,11 @@ import org.sonatype.aether.DependencyManagement;
 import org.sonatype.aether.DependencyManager;
 import org.sonatype.aether.DependencyNode;
 import org.sonatype.aether.Exclusion;
+import org.sonatype.aether.util.PersistentHashMap;
 
 /**
- * A dependency manager that mimics the way Maven 2.x works.
+ * A dependency manager that mimics the way Maven 2.x works. The management information is kept in persistent maps,
+ * i.e. a child manager shares the unchanged entries with its parent and the hash codes of the maps are cached.
  * 
  * @author Benjamin Bentmann
  */
@@ -38,29 +37,32 @@ public class ClassicDependencyManager
 
     private final int depth;
 
-    private final Map<Object, String> managedVersions;
+    private final PersistentHashMap<Object, String> managedVersions;
 
-    private final Map<Object, String> managedScopes;
+    private final PersistentHashMap<Object, String> managedScopes;
 
-    private final Map<Object, Collection<Exclusion>> managedExclusions;
+    private final PersistentHashMap<Object, Collection<Exclusion>> managedExclusions;
+
+    private final int hashCode;
 
     /**
      * Creates a new dependency manager without any management information.
      */
     public ClassicDependencyManager()
     {
-        this( 0, Collections.<Object, String> emptyMap(), Collections.<Object, String> emptyMap(),
-              Collections.<Object, Collection<Exclusion>> emptyMap() );
+        this( 0, PersistentHashMap.<Object, String> emptyMap(), PersistentHashMap.<Object, String> emptyMap(),
+              PersistentHashMap.<Object, Collection<Exclusion>> emptyMap() );
     }
 
-    private ClassicDependencyManager( int depth, Map<Object, String> managedVersions,
-                                      Map<Object, String> managedScopes,
-                                      Map<Object, Collection<Exclusion>> managedExclusions )
+    private ClassicDependencyManager( int depth, PersistentHashMap<Object, String> managedVersions,
+                                      PersistentHashMap<Object, String> managedScopes,
+                                      PersistentHashMap<Object, Collection<Exclusion>> managedExclusions )
     {
         this.depth = depth;
         this.managedVersions = managedVersions;
         this.managedScopes = managedScopes;
         this.managedExclusions = managedExclusions;
+        this.hashCode = computeHashCode();
     }
 
     public DependencyManager deriveChildManager( DependencyNode node, List<? extends Dependency> managedDependencies )
@@ -74,9 +76,9 @@ public class ClassicDependencyManager
             return new ClassicDependencyManager( depth + 1, managedVersions, managedScopes, managedExclusions );
         }
 
-        Map<Object, String> managedVersions = this.managedVersions;
-        Map<Object, String> managedScopes = this.managedScopes;
-        Map<Object, Collection<Exclusion>> managedExclusions = this.managedExclusions;
+        PersistentHashMap<Object, String> managedVersions = this.managedVersions;
+        PersistentHashMap<Object, String> managedScopes = this.managedScopes;
+        PersistentHashMap<Object, Collection<Exclusion>> managedExclusions = this.managedExclusions;
 
         for ( Dependency managedDependency : managedDependencies )
         {
@@ -86,37 +88,30 @@ public class ClassicDependencyManager
             String version = artifact.getVersion();
             if ( version.length() > 0 && !managedVersions.containsKey( key ) )
             {
-                if ( managedVersions == this.managedVersions )
-                {
-                    managedVersions = new HashMap<Object, String>( this.managedVersions );
-                }
-                managedVersions.put( key, version );
+                managedVersions = managedVersions.put( key, version );
             }
 
             String scope = managedDependency.getScope();
             if ( scope.length() > 0 && !managedScopes.containsKey( key ) )
             {
-                if ( managedScopes == this.managedScopes )
-                {
-                    managedScopes = new HashMap<Object, String>( this.managedScopes );
-                }
-                managedScopes.put( key, scope );
+                managedScopes = managedScopes.put( key, scope );
             }
 
             Collection<Exclusion> exclusions = managedDependency.getExclusions();
             if ( !exclusions.isEmpty() )
             {
-                if ( managedExclusions == this.managedExclusions )
-                {
-                    managedExclusions = new HashMap<Object, Collection<Exclusion>>( this.managedExclusions );
-                }
+                // the sets are shared with the parent and part of the cached hash code, so never update them in place
                 Collection<Exclusion> managed = managedExclusions.get( key );
                 if ( managed == null )
                 {
-                    managed = new LinkedHashSet<Exclusion>();
-                    managedExclusions.put( key, managed );
+                    managed = new LinkedHashSet<Exclusion>( exclusions );
+                }
+                else
+                {
+                    managed = new LinkedHashSet<Exclusion>( managed );
+                    managed.addAll( exclusions );
                 }
-                managed.addAll( exclusions );
+                managedExclusions = managedExclusions.put( key, managed );
             }
         }
 
@@ -185,12 +180,17 @@ public class ClassicDependencyManager
         }
 
         ClassicDependencyManager that = (ClassicDependencyManager) obj;
-        return depth == that.depth && managedVersions.equals( that.managedVersions )
+        return hashCode == that.hashCode && depth == that.depth && managedVersions.equals( that.managedVersions )
             && managedScopes.equals( that.managedScopes ) && managedExclusions.equals( that.managedExclusions );
     }
 
     @Override
     public int hashCode()
+    {
+        return hashCode;
+    }
+
+    private int computeHashCode()
     {
         int hash = 17;
         hash = hash * 31 + depth;
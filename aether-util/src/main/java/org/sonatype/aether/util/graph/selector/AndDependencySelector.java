@@ -33,6 +33,8 @@ public class AndDependencySelector
 
     private final Collection<DependencySelector> selectors;
 
+    private final int hashCode;
+
     /**
      * Creates a new selector from the specified selectors.
      * 
@@ -49,6 +51,7 @@ public class AndDependencySelector
         {
             this.selectors = Collections.emptySet();
         }
+        this.hashCode = computeHashCode();
     }
 
     /**
@@ -66,6 +69,7 @@ public class AndDependencySelector
         {
             this.selectors = Collections.emptySet();
         }
+        this.hashCode = computeHashCode();
     }
 
     /**
@@ -150,11 +154,16 @@ public class AndDependencySelector
         }
 
         AndDependencySelector that = (AndDependencySelector) obj;
-        return selectors.equals( that.selectors );
+        return hashCode == that.hashCode && selectors.equals( that.selectors );
     }
 
     @Override
     public int hashCode()
+    {
+        return hashCode;
+    }
+
+    private int computeHashCode()
     {
         int hash = getClass().hashCode();
         hash = hash * 31 + selectors.hashCode();
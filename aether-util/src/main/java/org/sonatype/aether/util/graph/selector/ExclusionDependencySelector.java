@@ -36,6 +36,8 @@ public class ExclusionDependencySelector
 
     private final Collection<Exclusion> exclusions;
 
+    private final int hashCode;
+
     /**
      * Creates a new selector without any exclusions.
      */
@@ -59,6 +61,7 @@ public class ExclusionDependencySelector
         {
             this.exclusions = Collections.emptySet();
         }
+        this.hashCode = computeHashCode();
     }
 
     public boolean selectDependency( Dependency dependency )
@@ -129,11 +132,16 @@ public class ExclusionDependencySelector
         }
 
         ExclusionDependencySelector that = (ExclusionDependencySelector) obj;
-        return exclusions.equals( that.exclusions );
+        return hashCode == that.hashCode && exclusions.equals( that.exclusions );
     }
 
     @Override
     public int hashCode()
+    {
+        return hashCode;
+    }
+
+    private int computeHashCode()
     {
         int hash = getClass().hashCode();
         hash = hash * 31 + exclusions.hashCode();
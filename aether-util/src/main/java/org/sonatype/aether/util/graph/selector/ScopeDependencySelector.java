@@ -40,6 +40,8 @@ public class ScopeDependencySelector
 
     private final Collection<String> excluded;
 
+    private final int hashCode;
+
     /**
      * Creates a new selector using the specified includes and excludes.
      * 
@@ -67,6 +69,7 @@ public class ScopeDependencySelector
         {
             this.excluded = Collections.emptySet();
         }
+        this.hashCode = computeHashCode();
     }
 
     /**
@@ -84,6 +87,7 @@ public class ScopeDependencySelector
         this.transitive = transitive;
         this.included = included;
         this.excluded = excluded;
+        this.hashCode = computeHashCode();
     }
 
     public boolean selectDependency( Dependency dependency )
@@ -123,11 +127,17 @@ public class ScopeDependencySelector
         }
 
         ScopeDependencySelector that = (ScopeDependencySelector) obj;
-        return transitive == that.transitive && included.equals( that.included ) && excluded.equals( that.excluded );
+        return hashCode == that.hashCode && transitive == that.transitive && included.equals( that.included )
+            && excluded.equals( that.excluded );
     }
 
     @Override
     public int hashCode()
+    {
+        return hashCode;
+    }
+
+    private int computeHashCode()
     {
         int hash = 17;
         hash = hash * 31 + ( transitive ? 1 : 0 );
@@ -13,12 +13,24 @@ package org.sonatype.aether.util.graph.transformer;
  * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
  */
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
 import org.sonatype.aether.DependencyGraphTransformer;
 import org.sonatype.aether.DependencyNode;
+import org.sonatype.aether.DependencyVisitor;
 import org.sonatype.aether.RepositoryException;
+import org.sonatype.aether.util.graph.IterativeDependencyTraversal;
 
 /**
- * A dependency graph transformer that chains other transformers.
+ * A dependency graph transformer that chains other transformers. The passes of consecutive
+ * {@link FusibleDependencyGraphTransformer}s are fused, i.e. a pass of a transformer shares the graph traversal with
+ * the passes of the preceding transformers unless one of those is {@link TransformationPass#isDeferred() deferred} or
+ * the pass itself is {@link TransformationPass#isPruning() pruning}. Other transformers are simply executed in turn.
  * 
  * @author Benjamin Bentmann
  */
@@ -26,6 +38,14 @@ public class ChainedDependencyGraphTransformer
     implements DependencyGraphTransformer
 {
 
+    /**
+     * The key in the repository session's {@link org.sonatype.aether.RepositorySystemSession#getConfigProperties()
+     * configuration properties} used to store the number of threads that analysis passes like those of
+     * {@link ConflictMarker} and {@link JavaEffectiveScopeCalculator} may use to traverse large graphs. The default of
+     * {@code 1} analyzes the graph sequentially within the traversal shared with other passes.
+     */
+    public static final String CONFIG_PROP_THREADS = "aether.dependencyGraphTransformer.threads";
+
     private final DependencyGraphTransformer[] transformers;
 
     /**
@@ -67,14 +87,228 @@ public class ChainedDependencyGraphTransformer
         return new ChainedDependencyGraphTransformer( transformer1, transformer2 );
     }
 
+    /**
+     * Gets the transformers of this chain.
+     * 
+     * @return The (read-only) transformers in order of execution, never {@code null}.
+     */
+    public List<DependencyGraphTransformer> getTransformers()
+    {
+        return Collections.unmodifiableList( Arrays.asList( transformers ) );
+    }
+
     public DependencyNode transformGraph( DependencyNode node )
         throws RepositoryException
     {
-        for ( DependencyGraphTransformer transformer : transformers )
+        return transformGraph( node, null );
+    }
+
+    /**
+     * Transforms the specified dependency graph, the given configuration properties are made available to the passes
+     * via their {@link TransformationContext}.
+     * 
+     * @param node The root node of the graph to transform, must not be {@code null}.
+     * @param configProperties The configuration properties, usually those of the repository session, may be
+     *            {@code null}.
+     * @return The root node of the transformed graph, never {@code null}.
+     * @throws RepositoryException If the transformation failed.
+     */
+    public DependencyNode transformGraph( DependencyNode node, Map<?, ?> configProperties )
+        throws RepositoryException
+    {
+        List<DependencyGraphTransformer> chain = new ArrayList<DependencyGraphTransformer>();
+        flatten( chain, transformers );
+
+        TransformationContext context = new TransformationContext( configProperties );
+        List<List<TransformationPass>> traversals = new ArrayList<List<TransformationPass>>();
+
+        for ( DependencyGraphTransformer transformer : chain )
         {
-            node = transformer.transformGraph( node );
+            if ( transformer instanceof FusibleDependencyGraphTransformer )
+            {
+                schedule( traversals, ( (FusibleDependencyGraphTransformer) transformer ).newPasses( context ) );
+            }
+            else
+            {
+                traverse( node, traversals );
+                traversals.clear();
+                context = new TransformationContext( configProperties );
+
+                node = transformer.transformGraph( node );
+            }
         }
+
+        traverse( node, traversals );
+
         return node;
     }
 
+    private static void flatten( List<DependencyGraphTransformer> chain, DependencyGraphTransformer[] transformers )
+    {
+        for ( DependencyGraphTransformer transformer : transformers )
+        {
+            if ( transformer instanceof ChainedDependencyGraphTransformer )
+            {
+                flatten( chain, ( (ChainedDependencyGraphTransformer) transformer ).transformers );
+            }
+            else if ( transformer != null )
+            {
+                chain.add( transformer );
+            }
+        }
+    }
+
+    private static void schedule( List<List<TransformationPass>> traversals, List<TransformationPass> passes )
+    {
+        for ( int i = 0; i < passes.size(); i++ )
+        {
+            TransformationPass pass = passes.get( i );
+
+            List<TransformationPass> traversal = null;
+            if ( i == 0 && !pass.isPruning() && !traversals.isEmpty() )
+            {
+                traversal = traversals.get( traversals.size() - 1 );
+                for ( TransformationPass p : traversal )
+                {
+                    if ( p.isDeferred() )
+                    {
+                        traversal = null;
+                        break;
+                    }
+                }
+            }
+            if ( traversal == null )
+            {
+                traversal = new ArrayList<TransformationPass>();
+                traversals.add( traversal );
+            }
+
+            traversal.add( pass );
+        }
+    }
+
+    private static void traverse( DependencyNode node, List<List<TransformationPass>> traversals )
+        throws RepositoryException
+    {
+        for ( List<TransformationPass> traversal : traversals )
+        {
+            TransformationPass[] passes = traversal.toArray( new TransformationPass[traversal.size()] );
+
+            try
+            {
+                IterativeDependencyTraversal.traverse( node, new FusedVisitor( passes ) );
+            }
+            catch ( TransformationFailure e )
+            {
+                throw e.getCause();
+            }
+
+            for ( TransformationPass pass : passes )
+            {
+                pass.complete();
+            }
+        }
+    }
+
+    /**
+     * Visits each node with the passes that share a traversal. A pass that skips the children of a node is inactive
+     * for the descendants of that node while the other passes still visit them.
+     */
+    static final class FusedVisitor
+        implements DependencyVisitor
+    {
+
+        private final TransformationPass[] passes;
+
+        private final boolean[] all;
+
+        private final LinkedList<boolean[]> actives = new LinkedList<boolean[]>();
+
+        private final LinkedList<boolean[]> descends = new LinkedList<boolean[]>();
+
+        public FusedVisitor( TransformationPass[] passes )
+        {
+            this.passes = passes;
+            this.all = new boolean[passes.length];
+            Arrays.fill( all, true );
+        }
+
+        public boolean visitEnter( DependencyNode node )
+        {
+            boolean[] active = descends.isEmpty() ? all : descends.getLast();
+            boolean[] descend = active;
+            boolean children = false;
+
+            for ( int i = 0; i < passes.length; i++ )
+            {
+                if ( active[i] )
+                {
+                    boolean enter;
+                    try
+                    {
+                        enter = passes[i].visitEnter( node );
+                    }
+                    catch ( RepositoryException e )
+                    {
+                        throw new TransformationFailure( e );
+                    }
+                    if ( enter )
+                    {
+                        children = true;
+                    }
+                    else
+                    {
+                        if ( descend == active )
+                        {
+                            descend = active.clone();
+                        }
+                        descend[i] = false;
+                    }
+                }
+            }
+
+            actives.addLast( active );
+            descends.addLast( descend );
+
+            return children;
+        }
+
+        public boolean visitLeave( DependencyNode node )
+        {
+            boolean[] active = actives.removeLast();
+            descends.removeLast();
+
+            for ( int i = passes.length - 1; i >= 0; i-- )
+            {
+                if ( active[i] )
+                {
+                    passes[i].visitLeave( node );
+                }
+            }
+
+            return true;
+        }
+
+    }
+
+    /**
+     * Carries the failure of a pass out of the traversal.
+     */
+    static final class TransformationFailure
+        extends RuntimeException
+    {
+
+        public TransformationFailure( RepositoryException cause )
+        {
+            super( cause );
+        }
+
+        @Override
+        public RepositoryException getCause()
+        {
+            return (RepositoryException) super.getCause();
+        }
+
+    }
+
 }
@@ -13,20 +13,21 @@ package org.sonatype.aether.util.graph.transformer;
  * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
  */
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
-import org.sonatype.aether.DependencyGraphTransformer;
 import org.sonatype.aether.DependencyNode;
 import org.sonatype.aether.RepositoryException;
 import org.sonatype.aether.UnsolvableVersionConflictException;
 import org.sonatype.aether.Version;
 import org.sonatype.aether.VersionConstraint;
+import org.sonatype.aether.util.version.VersionIntervals;
 
 /**
  * A dependency graph transformer that resolves version conflicts using the nearest-wins strategy. For a given set of
@@ -37,19 +38,25 @@ import org.sonatype.aether.VersionConstraint;
  * @author Benjamin Bentmann
  */
 public class ClassicVersionConflictResolver
-    implements DependencyGraphTransformer
+    implements FusibleDependencyGraphTransformer
 {
 
     public DependencyNode transformGraph( DependencyNode node )
         throws RepositoryException
     {
-        Map<Object, ConflictGroup> groups = new HashMap<Object, ConflictGroup>( 1024 );
-        analyze( node, groups );
-        prune( node, groups );
-        return node;
+        return new ChainedDependencyGraphTransformer( this ).transformGraph( node );
     }
 
-    private void analyze( DependencyNode node, Map<Object, ConflictGroup> groups )
+    public List<TransformationPass> newPasses( TransformationContext context )
+    {
+        ConflictGroups groups = new ConflictGroups( ConflictIdIndex.get( context ) );
+        List<TransformationPass> passes = new ArrayList<TransformationPass>( 2 );
+        passes.add( new AnalyzePass( groups ) );
+        passes.add( new PrunePass( groups ) );
+        return passes;
+    }
+
+    static boolean analyze( DependencyNode node, ConflictGroups groups )
         throws RepositoryException
     {
         if ( node.getDependency() != null )
@@ -59,18 +66,23 @@ public class ClassicVersionConflictResolver
             ConflictGroup group = groups.get( key );
             if ( group == null )
             {
-                group = new ConflictGroup( key, node.getVersionConstraint().getPreferredVersion(), node.getDepth() );
+                group =
+                    new ConflictGroup( key, node.getVersionConstraint().getPreferredVersion(), node.getDepth() );
                 groups.put( key, group );
             }
             else if ( !group.isAcceptable( node.getVersion() ) )
             {
-                return;
+                return false;
             }
 
-            group.versions.add( node.getVersion() );
-            if ( !node.getVersionConstraint().getRanges().isEmpty() )
+            if ( node.getVersion() != null )
             {
-                group.constraints.add( node.getVersionConstraint() );
+                group.addVersion( node.getVersion() );
+            }
+            VersionConstraint versionConstraint = node.getVersionConstraint();
+            if ( !versionConstraint.getRanges().isEmpty() && group.constraints.add( versionConstraint ) )
+            {
+                group.accepted = group.accepted.intersect( groups.getIntervals( versionConstraint ) );
             }
 
             if ( node.getDepth() < group.depth )
@@ -86,19 +98,7 @@ public class ClassicVersionConflictResolver
 
             if ( !group.isAcceptable( group.version ) )
             {
-                group.version = null;
-                for ( Iterator<Version> it = group.versions.iterator(); it.hasNext(); )
-                {
-                    Version version = it.next();
-                    if ( !group.isAcceptable( version ) )
-                    {
-                        it.remove();
-                    }
-                    else if ( group.version == null || version.compareTo( group.version ) > 0 )
-                    {
-                        group.version = version;
-                    }
-                }
+                group.version = group.accepted.getHighestVersion( group.versions );
                 if ( group.version == null )
                 {
                     Collection<String> versions = new LinkedHashSet<String>();
@@ -111,32 +111,169 @@ public class ClassicVersionConflictResolver
             }
         }
 
-        for ( DependencyNode child : node.getChildren() )
-        {
-            analyze( child, groups );
-        }
+        return true;
     }
 
-    private void prune( DependencyNode node, Map<Object, ConflictGroup> groups )
+    static void prune( DependencyNode node, ConflictGroups groups )
     {
-        for ( Iterator<DependencyNode> it = node.getChildren().iterator(); it.hasNext(); )
+        List<DependencyNode> children = node.getChildren();
+        if ( children.isEmpty() )
         {
-            DependencyNode child = it.next();
+            return;
+        }
 
-            Object key = child.getConflictId();
+        List<DependencyNode> winners = null;
+        for ( int i = 0, n = children.size(); i < n; i++ )
+        {
+            DependencyNode child = children.get( i );
 
-            ConflictGroup group = groups.get( key );
+            ConflictGroup group = groups.get( child.getConflictId() );
 
             if ( !group.pruned && group.depth == child.getDepth() && group.version.equals( child.getVersion() ) )
             {
                 group.pruned = true;
-                prune( child, groups );
+                if ( winners != null )
+                {
+                    winners.add( child );
+                }
+            }
+            else if ( winners == null )
+            {
+                winners = new ArrayList<DependencyNode>( n - 1 );
+                winners.addAll( children.subList( 0, i ) );
+            }
+        }
+
+        if ( winners != null )
+        {
+            children.clear();
+            children.addAll( winners );
+        }
+    }
+
+    static final class AnalyzePass
+        implements TransformationPass
+    {
+
+        private final ConflictGroups groups;
+
+        public AnalyzePass( ConflictGroups groups )
+        {
+            this.groups = groups;
+        }
+
+        public boolean visitEnter( DependencyNode node )
+            throws RepositoryException
+        {
+            return analyze( node, groups );
+        }
+
+        public void visitLeave( DependencyNode node )
+        {
+        }
+
+        public void complete()
+        {
+        }
+
+        public boolean isDeferred()
+        {
+            return false;
+        }
+
+        public boolean isPruning()
+        {
+            return false;
+        }
+
+    }
+
+    static final class PrunePass
+        implements TransformationPass
+    {
+
+        private final ConflictGroups groups;
+
+        public PrunePass( ConflictGroups groups )
+        {
+            this.groups = groups;
+        }
+
+        public boolean visitEnter( DependencyNode node )
+        {
+            prune( node, groups );
+            return true;
+        }
+
+        public void visitLeave( DependencyNode node )
+        {
+        }
+
+        public void complete()
+        {
+        }
+
+        public boolean isDeferred()
+        {
+            return false;
+        }
+
+        public boolean isPruning()
+        {
+            return true;
+        }
+
+    }
+
+    /**
+     * The conflict groups, indexed by the number of their conflict id.
+     */
+    static final class ConflictGroups
+    {
+
+        private final ConflictIdIndex index;
+
+        private final List<ConflictGroup> groups = new ArrayList<ConflictGroup>( 1024 );
+
+        private final Map<VersionConstraint, VersionIntervals> intervals =
+            new IdentityHashMap<VersionConstraint, VersionIntervals>( 256 );
+
+        public ConflictGroups( ConflictIdIndex index )
+        {
+            this.index = index;
+        }
+
+        public ConflictGroup get( Object key )
+        {
+            int i = index.indexOf( key );
+            return ( i < groups.size() ) ? groups.get( i ) : null;
+        }
+
+        public void put( Object key, ConflictGroup group )
+        {
+            int i = index.indexOf( key );
+            while ( groups.size() <= i )
+            {
+                groups.add( null );
             }
-            else
+            groups.set( i, group );
+        }
+
+        /**
+         * Gets the versions satisfying the specified constraint. The constraints are shared among the nodes, so their
+         * intervals are only computed once per instance.
+         */
+        public VersionIntervals getIntervals( VersionConstraint constraint )
+        {
+            VersionIntervals result = intervals.get( constraint );
+            if ( result == null )
             {
-                it.remove();
+                result = VersionIntervals.of( constraint );
+                intervals.put( constraint, result );
             }
+            return result;
         }
+
     }
 
     static class ConflictGroup
@@ -146,7 +283,15 @@ public class ClassicVersionConflictResolver
 
         Collection<VersionConstraint> constraints = new HashSet<VersionConstraint>();
 
-        Collection<Version> versions = new LinkedList<Version>();
+        /**
+         * The versions satisfying all constraints of the group.
+         */
+        VersionIntervals accepted = VersionIntervals.ALL;
+
+        /**
+         * The candidate versions, sorted in ascending order.
+         */
+        List<Version> versions = new ArrayList<Version>();
 
         Version version;
 
@@ -161,17 +306,20 @@ public class ClassicVersionConflictResolver
             this.depth = depth;
         }
 
-        boolean isAcceptable( Version version )
+        void addVersion( Version version )
         {
-            for ( VersionConstraint constraint : constraints )
+            int index = Collections.binarySearch( versions, version );
+            if ( index < 0 )
             {
-                if ( !constraint.containsVersion( version ) )
-                {
-                    return false;
-                }
+                versions.add( -( index + 1 ), version );
             }
-            return true;
         }
+
+        boolean isAcceptable( Version version )
+        {
+            return accepted.containsVersion( version );
+        }
+
     }
 
 }
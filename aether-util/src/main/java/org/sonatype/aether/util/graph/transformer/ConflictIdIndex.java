@@ -0,0 +1,74 @@
+package org.sonatype.aether.util.graph.transformer;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Numbers the conflict ids of a dependency graph. As all nodes of a conflict group usually carry the very same conflict
+ * id instance, the ids are first looked up by identity which spares the computation of the hash code of the id, e.g. a
+ * set of keys.
+ * 
+ * @author Benjamin Bentmann
+ */
+final class ConflictIdIndex
+{
+
+    private static final Object KEY = ConflictIdIndex.class.getName();
+
+    private final Map<Object, Integer> byIdentity = new IdentityHashMap<Object, Integer>( 1024 );
+
+    private final Map<Object, Integer> byEquality = new HashMap<Object, Integer>( 1024 );
+
+    /**
+     * Gets the index shared by the passes of the specified transformation, creating it if necessary.
+     */
+    public static ConflictIdIndex get( TransformationContext context )
+    {
+        ConflictIdIndex index = (ConflictIdIndex) context.get( KEY );
+        if ( index == null )
+        {
+            index = new ConflictIdIndex();
+            context.put( KEY, index );
+        }
+        return index;
+    }
+
+    /**
+     * Gets the number of the specified conflict id, assigning the next free number if the id is not yet known.
+     */
+    public int indexOf( Object conflictId )
+    {
+        Integer index = byIdentity.get( conflictId );
+        if ( index == null )
+        {
+            index = byEquality.get( conflictId );
+            if ( index == null )
+            {
+                index = Integer.valueOf( byEquality.size() );
+                byEquality.put( conflictId, index );
+            }
+            byIdentity.put( conflictId, index );
+        }
+        return index.intValue();
+    }
+
+    public int size()
+    {
+        return byEquality.size();
+    }
+
+}
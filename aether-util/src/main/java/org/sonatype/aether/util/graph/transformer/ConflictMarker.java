@@ -13,17 +13,20 @@ package org.sonatype.aether.util.graph.transformer;
  * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
  */
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.sonatype.aether.Artifact;
 import org.sonatype.aether.Dependency;
-import org.sonatype.aether.DependencyGraphTransformer;
 import org.sonatype.aether.DependencyNode;
+import org.sonatype.aether.DependencyVisitor;
 import org.sonatype.aether.RepositoryException;
+import org.sonatype.aether.util.graph.ParallelDependencyTraversal;
 
 /**
  * A dependency graph transformer that identifies conflicting dependencies. When this transformer has executed,
@@ -33,166 +36,222 @@ import org.sonatype.aether.RepositoryException;
  * @see DependencyNode#getConflictId()
  */
 public class ConflictMarker
-    implements DependencyGraphTransformer
+    implements FusibleDependencyGraphTransformer
 {
 
+    private final int threads;
+
+    /**
+     * Creates a new conflict marker that analyzes the graph with the number of threads given by the
+     * {@link ChainedDependencyGraphTransformer#CONFIG_PROP_THREADS configuration} of the transformation.
+     */
+    public ConflictMarker()
+    {
+        this( 0 );
+    }
+
+    /**
+     * Creates a new conflict marker that analyzes the graph with the specified number of threads.
+     * 
+     * @param threads The number of threads to use, a value of {@code 1} analyzes the graph sequentially and within the
+     *            traversal shared with other transformers, a non-positive value uses the number of threads given by the
+     *            configuration of the transformation.
+     */
+    public ConflictMarker( int threads )
+    {
+        this.threads = threads;
+    }
+
     public DependencyNode transformGraph( DependencyNode node )
         throws RepositoryException
     {
-        Map<Object, ConflictGroup> groups = new HashMap<Object, ConflictGroup>( 1024 );
-        analyze( node, groups );
-        mark( node, groups );
-        return node;
+        return new ChainedDependencyGraphTransformer( this ).transformGraph( node );
+    }
+
+    public List<TransformationPass> newPasses( TransformationContext context )
+    {
+        KeySets keySets = new KeySets( 1024 );
+        List<TransformationPass> passes = new ArrayList<TransformationPass>( 2 );
+        passes.add( new AnalyzePass( keySets, context, newTraversal( threads, context ) ) );
+        passes.add( new MarkPass( keySets ) );
+        return passes;
     }
 
-    private void analyze( DependencyNode node, Map<Object, ConflictGroup> groups )
+    /**
+     * Assigns an id to the key of each node and unites it with the keys of the node's relocations and aliases. The ids
+     * of the nodes are recorded in depth-first pre-order to spare their lookup during marking. When a parallel
+     * traversal is given, the pass merely enters the root node and analyzes the graph upon completion, with each
+     * segment of the graph numbering its keys on its own before the segments are merged in pre-order.
+     */
+    static final class AnalyzePass
+        implements TransformationPass
     {
-        Set<Object> keys = getKeys( node );
-        if ( !keys.isEmpty() )
+
+        private final KeySets keySets;
+
+        private final TransformationContext context;
+
+        private final ParallelDependencyTraversal traversal;
+
+        private DependencyNode root;
+
+        public AnalyzePass( KeySets keySets, TransformationContext context, ParallelDependencyTraversal traversal )
         {
-            ConflictGroup group = null;
-            boolean fixMappings = false;
+            this.keySets = keySets;
+            this.context = context;
+            this.traversal = traversal;
+        }
 
-            for ( Object key : keys )
+        public boolean visitEnter( DependencyNode node )
+        {
+            if ( traversal != null )
             {
-                ConflictGroup g = groups.get( key );
+                root = node;
+                return false;
+            }
+            analyze( node, keySets );
+            return true;
+        }
 
-                if ( group != g )
+        public void visitLeave( DependencyNode node )
+        {
+        }
+
+        public void complete()
+        {
+            if ( root != null )
+            {
+                List<KeyVisitor> visitors = traversal.traverse( root, KeyVisitor.FACTORY );
+                for ( KeyVisitor visitor : visitors )
                 {
-                    if ( group == null )
-                    {
-                        Set<Object> newKeys = merge( g.keys, keys );
-                        if ( newKeys == g.keys )
-                        {
-                            group = g;
-                            break;
-                        }
-                        else
-                        {
-                            group = new ConflictGroup( newKeys );
-                            fixMappings = true;
-                        }
-                    }
-                    else if ( g == null )
-                    {
-                        fixMappings = true;
-                    }
-                    else
-                    {
-                        Set<Object> newKeys = merge( g.keys, group.keys );
-                        if ( newKeys == g.keys )
-                        {
-                            group = g;
-                            fixMappings = false;
-                            break;
-                        }
-                        else if ( newKeys != group.keys )
-                        {
-                            group = new ConflictGroup( newKeys );
-                            fixMappings = true;
-                        }
-                    }
+                    keySets.merge( visitor.keySets );
                 }
             }
 
-            if ( group == null )
-            {
-                group = new ConflictGroup( keys );
-                fixMappings = true;
-            }
-            if ( fixMappings )
+            ConflictIdIndex index = ConflictIdIndex.get( context );
+            for ( Object conflictId : keySets.computeConflictIds() )
             {
-                for ( Object key : group.keys )
-                {
-                    groups.put( key, group );
-                }
+                index.indexOf( conflictId );
             }
         }
 
-        for ( DependencyNode child : node.getChildren() )
+        public boolean isDeferred()
         {
-            analyze( child, groups );
+            return false;
         }
+
+        public boolean isPruning()
+        {
+            return false;
+        }
+
     }
 
-    private Set<Object> merge( Set<Object> keys1, Set<Object> keys2 )
+    /**
+     * Creates the parallel traversal for an analysis pass.
+     * 
+     * @return The traversal or {@code null} if the graph is to be analyzed sequentially.
+     */
+    static ParallelDependencyTraversal newTraversal( int threads, TransformationContext context )
     {
-        int size1 = keys1.size();
-        int size2 = keys2.size();
+        if ( threads <= 0 )
+        {
+            threads = context.getThreads();
+        }
+        return ( threads > 1 ) ? new ParallelDependencyTraversal( threads ) : null;
+    }
 
-        if ( size1 < size2 )
+    static void analyze( DependencyNode node, KeySets keySets )
+    {
+        Dependency dependency = node.getDependency();
+        if ( dependency != null )
         {
-            if ( keys2.containsAll( keys1 ) )
+            int id = keySets.add( toKey( dependency.getArtifact() ) );
+            keySets.record( id );
+
+            for ( Artifact relocation : node.getRelocations() )
             {
-                return keys2;
+                keySets.union( id, keySets.add( toKey( relocation ) ) );
             }
-        }
-        else
-        {
-            if ( keys1.containsAll( keys2 ) )
+
+            for ( Artifact alias : node.getAliases() )
             {
-                return keys1;
+                keySets.union( id, keySets.add( toKey( alias ) ) );
             }
         }
-
-        Set<Object> keys = new HashSet<Object>();
-        keys.addAll( keys1 );
-        keys.addAll( keys2 );
-        return keys;
     }
 
-    private Set<Object> getKeys( DependencyNode node )
+    /**
+     * Analyzes a segment of the graph into key sets of its own.
+     */
+    static final class KeyVisitor
+        implements DependencyVisitor
     {
-        Set<Object> keys;
 
-        Dependency dependency = node.getDependency();
-        if ( dependency == null )
+        static final ParallelDependencyTraversal.VisitorFactory<KeyVisitor> FACTORY =
+            new ParallelDependencyTraversal.VisitorFactory<KeyVisitor>()
+            {
+                public KeyVisitor newVisitor( List<DependencyNode> parents )
+                {
+                    return new KeyVisitor();
+                }
+            };
+
+        final KeySets keySets = new KeySets( 64 );
+
+        public boolean visitEnter( DependencyNode node )
         {
-            keys = Collections.emptySet();
+            analyze( node, keySets );
+            return true;
         }
-        else
+
+        public boolean visitLeave( DependencyNode node )
         {
-            Object key = toKey( dependency.getArtifact() );
+            return true;
+        }
 
-            if ( node.getRelocations().isEmpty() && node.getAliases().isEmpty() )
-            {
-                keys = Collections.singleton( key );
-            }
-            else
-            {
-                keys = new HashSet<Object>();
-                keys.add( key );
+    }
 
-                for ( Artifact relocation : node.getRelocations() )
-                {
-                    key = toKey( relocation );
-                    keys.add( key );
-                }
+    static final class MarkPass
+        implements TransformationPass
+    {
 
-                for ( Artifact alias : node.getAliases() )
-                {
-                    key = toKey( alias );
-                    keys.add( key );
-                }
+        private final KeySets keySets;
+
+        private int index;
+
+        public MarkPass( KeySets keySets )
+        {
+            this.keySets = keySets;
+        }
+
+        public boolean visitEnter( DependencyNode node )
+        {
+            if ( node.getDependency() != null )
+            {
+                node.setConflictId( keySets.getConflictId( index++ ) );
             }
+            return true;
         }
 
-        return keys;
-    }
+        public void visitLeave( DependencyNode node )
+        {
+        }
 
-    private void mark( DependencyNode node, Map<Object, ConflictGroup> groups )
-    {
-        Dependency dependency = node.getDependency();
-        if ( dependency != null )
+        public void complete()
+        {
+        }
+
+        public boolean isDeferred()
         {
-            Object key = toKey( dependency.getArtifact() );
-            node.setConflictId( groups.get( key ).keys );
+            return false;
         }
 
-        for ( DependencyNode child : node.getChildren() )
+        public boolean isPruning()
         {
-            mark( child, groups );
+            return false;
         }
+
     }
 
     private static Object toKey( Artifact artifact )
@@ -200,20 +259,171 @@ public class ConflictMarker
         return new Key( artifact );
     }
 
-    static class ConflictGroup
+    /**
+     * A disjoint-set forest over the interned keys of the nodes. Each set denotes a conflict group, the conflict id of
+     * a group is the set of its keys.
+     */
+    static final class KeySets
     {
 
-        final Set<Object> keys;
+        private final Map<Object, Integer> ids;
+
+        private final List<Object> keys;
+
+        private int[] parents;
+
+        private int[] sizes;
+
+        private int[] records;
 
-        public ConflictGroup( Set<Object> keys )
+        private int recordCount;
+
+        private Object[] conflictIds;
+
+        public KeySets( int capacity )
         {
-            this.keys = keys;
+            ids = new HashMap<Object, Integer>( capacity );
+            keys = new ArrayList<Object>( capacity );
+            parents = new int[capacity];
+            sizes = new int[capacity];
+            records = new int[capacity];
         }
 
-        @Override
-        public String toString()
+        /**
+         * Gets the id of the specified key, creating a singleton set for the key if not already known.
+         */
+        public int add( Object key )
+        {
+            Integer id = ids.get( key );
+            if ( id != null )
+            {
+                return id.intValue();
+            }
+
+            int n = keys.size();
+            if ( n >= parents.length )
+            {
+                parents = grow( parents );
+                sizes = grow( sizes );
+            }
+            parents[n] = n;
+            sizes[n] = 1;
+            keys.add( key );
+            ids.put( key, Integer.valueOf( n ) );
+            return n;
+        }
+
+        public int find( int id )
+        {
+            int root = id;
+            while ( parents[root] != root )
+            {
+                root = parents[root];
+            }
+            while ( parents[id] != root )
+            {
+                int next = parents[id];
+                parents[id] = root;
+                id = next;
+            }
+            return root;
+        }
+
+        public void union( int id1, int id2 )
+        {
+            int root1 = find( id1 );
+            int root2 = find( id2 );
+            if ( root1 == root2 )
+            {
+                return;
+            }
+            if ( sizes[root1] < sizes[root2] )
+            {
+                int tmp = root1;
+                root1 = root2;
+                root2 = tmp;
+            }
+            parents[root2] = root1;
+            sizes[root1] += sizes[root2];
+        }
+
+        public void record( int id )
+        {
+            if ( recordCount >= records.length )
+            {
+                records = grow( records );
+            }
+            records[recordCount++] = id;
+        }
+
+        /**
+         * Adds the keys, sets and records of the specified key sets, in the order they were added to those sets.
+         */
+        public void merge( KeySets keySets )
+        {
+            int n = keySets.keys.size();
+            int[] mapping = new int[n];
+            for ( int id = 0; id < n; id++ )
+            {
+                mapping[id] = add( keySets.keys.get( id ) );
+            }
+            for ( int id = 0; id < n; id++ )
+            {
+                union( mapping[id], mapping[keySets.find( id )] );
+            }
+            for ( int i = 0; i < keySets.recordCount; i++ )
+            {
+                record( mapping[keySets.records[i]] );
+            }
+        }
+
+        /**
+         * Gets the conflict id of the key recorded at the specified position.
+         */
+        public Object getConflictId( int index )
         {
-            return String.valueOf( keys );
+            return conflictIds[records[index]];
+        }
+
+        /**
+         * Computes the conflict ids indexed by key id, keys of the same set share the same conflict id instance.
+         */
+        public Object[] computeConflictIds()
+        {
+            int n = keys.size();
+            Object[] conflictIds = new Object[n];
+            for ( int id = 0; id < n; id++ )
+            {
+                int root = find( id );
+                if ( sizes[root] == 1 )
+                {
+                    conflictIds[id] = Collections.singleton( keys.get( id ) );
+                }
+                else
+                {
+                    @SuppressWarnings( "unchecked" )
+                    Set<Object> set = (Set<Object>) conflictIds[root];
+                    if ( set == null )
+                    {
+                        set = new HashSet<Object>( sizes[root] * 2 );
+                        conflictIds[root] = set;
+                    }
+                    set.add( keys.get( id ) );
+                }
+            }
+            for ( int id = 0; id < n; id++ )
+            {
+                conflictIds[id] = conflictIds[find( id )];
+            }
+            this.conflictIds = conflictIds;
+            return conflictIds;
+        }
+
+        private static int[] grow( int[] array )
+        {
+            int[] grown = new int[array.length * 2];
+            System.arraycopy( array, 0, grown, 0, array.length );
+            return grown;
         }
 
     }
@@ -223,9 +433,18 @@ public class ConflictMarker
 
         private final Artifact artifact;
 
+        private final int hashCode;
+
         public Key( Artifact artifact )
         {
             this.artifact = artifact;
+
+            int hash = 17;
+            hash = hash * 31 + artifact.getArtifactId().hashCode();
+            hash = hash * 31 + artifact.getGroupId().hashCode();
+            hash = hash * 31 + artifact.getClassifier().hashCode();
+            hash = hash * 31 + artifact.getExtension().hashCode();
+            this.hashCode = hash;
         }
 
         @Override
@@ -249,12 +468,7 @@ public class ConflictMarker
         @Override
         public int hashCode()
         {
-            int hash = 17;
-            hash = hash * 31 + artifact.getArtifactId().hashCode();
-            hash = hash * 31 + artifact.getGroupId().hashCode();
-            hash = hash * 31 + artifact.getClassifier().hashCode();
-            hash = hash * 31 + artifact.getExtension().hashCode();
-            return hash;
+            return hashCode;
         }
 
         @Override
@@ -0,0 +1,43 @@
+package org.sonatype.aether.util.graph.transformer;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.util.List;
+
+import org.sonatype.aether.DependencyGraphTransformer;
+
+/**
+ * A dependency graph transformer whose work is split into {@link TransformationPass passes}. The
+ * {@link ChainedDependencyGraphTransformer} schedules the passes of consecutive fusible transformers such that passes
+ * of different transformers share graph traversals where possible. Implementations should delegate
+ * {@link #transformGraph(org.sonatype.aether.DependencyNode)} to a chain made up of just themselves, to ensure the
+ * standalone and the fused transformation behave the same.
+ * 
+ * @author Benjamin Bentmann
+ */
+public interface FusibleDependencyGraphTransformer
+    extends DependencyGraphTransformer
+{
+
+    /**
+     * Creates the passes for a single transformation. The passes are executed in the given order, each pass in a
+     * separate traversal.
+     * 
+     * @param context The context of the transformation which allows the passes of the chained transformers to share
+     *            data, must not be {@code null}.
+     * @return The passes of the transformation, never {@code null}.
+     */
+    List<TransformationPass> newPasses( TransformationContext context );
+
+}
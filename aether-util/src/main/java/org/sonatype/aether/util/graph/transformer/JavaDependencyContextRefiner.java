@@ -13,8 +13,10 @@ package org.sonatype.aether.util.graph.transformer;
  * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
  */
 
+import java.util.Collections;
+import java.util.List;
+
 import org.sonatype.aether.Dependency;
-import org.sonatype.aether.DependencyGraphTransformer;
 import org.sonatype.aether.DependencyNode;
 import org.sonatype.aether.RepositoryException;
 
@@ -22,11 +24,21 @@ import org.sonatype.aether.RepositoryException;
  * @author Benjamin Bentmann
  */
 public class JavaDependencyContextRefiner
-    implements DependencyGraphTransformer
+    implements FusibleDependencyGraphTransformer
 {
 
     public DependencyNode transformGraph( DependencyNode node )
         throws RepositoryException
+    {
+        return new ChainedDependencyGraphTransformer( this ).transformGraph( node );
+    }
+
+    public List<TransformationPass> newPasses( TransformationContext context )
+    {
+        return Collections.<TransformationPass> singletonList( new RefinePass() );
+    }
+
+    private void refine( DependencyNode node )
     {
         String context = node.getContext();
         if ( "project".equals( context ) )
@@ -38,13 +50,6 @@ public class JavaDependencyContextRefiner
                 node.setContext( context );
             }
         }
-
-        for ( DependencyNode child : node.getChildren() )
-        {
-            transformGraph( child );
-        }
-
-        return node;
     }
 
     private String getClasspathScope( DependencyNode node )
@@ -70,4 +75,34 @@ public class JavaDependencyContextRefiner
         return null;
     }
 
+    final class RefinePass
+        implements TransformationPass
+    {
+
+        public boolean visitEnter( DependencyNode node )
+        {
+            refine( node );
+            return true;
+        }
+
+        public void visitLeave( DependencyNode node )
+        {
+        }
+
+        public void complete()
+        {
+        }
+
+        public boolean isDeferred()
+        {
+            return false;
+        }
+
+        public boolean isPruning()
+        {
+            return false;
+        }
+
+    }
+
 }
@@ -14,17 +14,21 @@ package org.sonatype.aether.util.graph.transformer;
  */
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
-import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.sonatype.aether.Dependency;
-import org.sonatype.aether.DependencyGraphTransformer;
 import org.sonatype.aether.DependencyNode;
+import org.sonatype.aether.DependencyVisitor;
+import org.sonatype.aether.RepositoryException;
+import org.sonatype.aether.util.graph.IterativeDependencyTraversal;
+import org.sonatype.aether.util.graph.ParallelDependencyTraversal;
 
 /**
  * A dependency graph transformer that handles scope inheritance and conflict resolution among conflicting scopes. For a
@@ -34,7 +38,7 @@ import org.sonatype.aether.DependencyNode;
  * @author Benjamin Bentmann
  */
 public class JavaEffectiveScopeCalculator
-    implements DependencyGraphTransformer
+    implements FusibleDependencyGraphTransformer
 {
 
     private static final String SYSTEM = "system";
@@ -47,66 +51,277 @@ public class JavaEffectiveScopeCalculator
 
     private static final String TEST = "test";
 
+    private final int threads;
+
+    /**
+     * Creates a new scope calculator that analyzes the graph with the number of threads given by the
+     * {@link ChainedDependencyGraphTransformer#CONFIG_PROP_THREADS configuration} of the transformation.
+     */
+    public JavaEffectiveScopeCalculator()
+    {
+        this( 0 );
+    }
+
+    /**
+     * Creates a new scope calculator that analyzes the graph with the specified number of threads.
+     * 
+     * @param threads The number of threads to use, a value of {@code 1} analyzes the graph sequentially and within the
+     *            traversal shared with other transformers, a non-positive value uses the number of threads given by the
+     *            configuration of the transformation.
+     */
+    public JavaEffectiveScopeCalculator( int threads )
+    {
+        this.threads = threads;
+    }
+
     public DependencyNode transformGraph( DependencyNode node )
     {
-        Map<DependencyNode, String> scopes = new IdentityHashMap<DependencyNode, String>( 16 * 1024 );
-        Map<Object, DependencyGroup> groups = new HashMap<Object, DependencyGroup>( 1024 );
+        try
+        {
+            return new ChainedDependencyGraphTransformer( this ).transformGraph( node );
+        }
+        catch ( RepositoryException e )
+        {
+            // not thrown by the pass of this transformer
+            throw new IllegalStateException( e );
+        }
+    }
+
+    public List<TransformationPass> newPasses( TransformationContext context )
+    {
+        ScopePass pass = new ScopePass( context, ConflictMarker.newTraversal( threads, context ) );
+        return Collections.<TransformationPass> singletonList( pass );
+    }
 
-        Dependency parent = node.getDependency();
-        String parentScope = ( parent != null ) ? parent.getScope() : "";
-        analyze( node, parentScope, scopes, groups );
+    /**
+     * Records the inherited scope of each node and its conflict group, the scopes of conflicting nodes are resolved and
+     * applied to the nodes once all nodes have been visited. When a parallel traversal is given, the pass merely enters
+     * the root node and analyzes the graph upon completion, the segments of the graph are merged in pre-order.
+     */
+    final class ScopePass
+        implements TransformationPass
+    {
+
+        private final TransformationContext context;
+
+        private final ParallelDependencyTraversal traversal;
+
+        private final ScopeVisitor visitor = new ScopeVisitor( Collections.<DependencyNode> emptyList() );
+
+        private DependencyNode root;
+
+        public ScopePass( TransformationContext context, ParallelDependencyTraversal traversal )
+        {
+            this.context = context;
+            this.traversal = traversal;
+        }
+
+        public boolean visitEnter( DependencyNode node )
+        {
+            if ( traversal != null )
+            {
+                root = node;
+                return false;
+            }
+            return visitor.visitEnter( node );
+        }
+
+        public void visitLeave( DependencyNode node )
+        {
+            if ( traversal == null )
+            {
+                visitor.visitLeave( node );
+            }
+        }
 
-        Set<Object> keys = new HashSet<Object>( groups.keySet() );
-        while ( !keys.isEmpty() )
+        public void complete()
         {
-            Iterator<Object> it = keys.iterator();
-            Object key = it.next();
-            it.remove();
+            List<ScopeVisitor> visitors;
+            if ( root != null )
+            {
+                visitors = traversal.traverse( root, new ParallelDependencyTraversal.VisitorFactory<ScopeVisitor>()
+                {
+                    public ScopeVisitor newVisitor( List<DependencyNode> parents )
+                    {
+                        return new ScopeVisitor( parents );
+                    }
+                } );
+            }
+            else
+            {
+                visitors = Collections.singletonList( visitor );
+            }
 
-            DependencyGroup group = groups.get( key );
-            resolve( group, scopes, keys );
+            ConflictIdIndex index = ConflictIdIndex.get( context );
+            Map<DependencyNode, String> scopes = new IdentityHashMap<DependencyNode, String>( 16 * 1024 );
+            List<DependencyGroup> groups = new ArrayList<DependencyGroup>( 1024 );
+            for ( ScopeVisitor segment : visitors )
+            {
+                segment.merge( scopes, groups, index );
+            }
+
+            BitSet keys = new BitSet( groups.size() );
+            for ( int key = 0; key < groups.size(); key++ )
+            {
+                if ( groups.get( key ) != null )
+                {
+                    keys.set( key );
+                }
+            }
+            for ( int key; ( key = keys.nextSetBit( 0 ) ) >= 0; )
+            {
+                keys.clear( key );
+                resolve( groups.get( key ), scopes, keys, index );
+            }
+
+            for ( Map.Entry<DependencyNode, String> entry : scopes.entrySet() )
+            {
+                entry.getKey().setScope( entry.getValue() );
+            }
         }
 
-        for ( Map.Entry<DependencyNode, String> entry : scopes.entrySet() )
+        public boolean isDeferred()
         {
-            entry.getKey().setScope( entry.getValue() );
+            return true;
+        }
+
+        public boolean isPruning()
+        {
+            return false;
         }
 
-        return node;
     }
 
-    private void analyze( DependencyNode node, String scope, Map<DependencyNode, String> scopes,
-                          Map<Object, DependencyGroup> groups )
+    /**
+     * Records the inherited scopes of the nodes in a segment of the graph. The nodes are grouped by the identity of
+     * their conflict ids, the groups are only numbered during the merge as the conflict id index is not thread-safe.
+     */
+    final class ScopeVisitor
+        implements DependencyVisitor
     {
-        Dependency dependency = node.getDependency();
-        if ( dependency != null )
+
+        private final LinkedList<String> path = new LinkedList<String>();
+
+        private final List<DependencyNode> nodes = new ArrayList<DependencyNode>( 256 );
+
+        private final List<String> nodeScopes = new ArrayList<String>( 256 );
+
+        private int[] nodeGroups = new int[256];
+
+        private final Map<Object, Integer> groupIds = new IdentityHashMap<Object, Integer>( 64 );
+
+        private final List<Object> conflictIds = new ArrayList<Object>( 64 );
+
+        public ScopeVisitor( List<DependencyNode> parents )
         {
-            if ( node.getPremanagedScope() != null )
+            String scope = null;
+            for ( DependencyNode parent : parents )
             {
-                scope = dependency.getScope();
+                scope = getScope( parent, scope );
             }
-            scopes.put( node, scope );
+            if ( scope != null )
+            {
+                path.addLast( scope );
+            }
+        }
 
-            Object key = node.getConflictId();
-            DependencyGroup group = groups.get( key );
-            if ( group == null )
+        public boolean visitEnter( DependencyNode node )
+        {
+            String scope = getScope( node, path.isEmpty() ? null : path.getLast() );
+
+            if ( node.getDependency() != null )
             {
-                group = new DependencyGroup();
-                groups.put( key, group );
+                Object conflictId = node.getConflictId();
+                Integer group = groupIds.get( conflictId );
+                if ( group == null )
+                {
+                    group = Integer.valueOf( conflictIds.size() );
+                    groupIds.put( conflictId, group );
+                    conflictIds.add( conflictId );
+                }
+
+                int n = nodes.size();
+                if ( n >= nodeGroups.length )
+                {
+                    int[] grown = new int[n * 2];
+                    System.arraycopy( nodeGroups, 0, grown, 0, n );
+                    nodeGroups = grown;
+                }
+                nodeGroups[n] = group.intValue();
+                nodes.add( node );
+                nodeScopes.add( scope );
             }
-            group.nodes.add( node );
+
+            path.addLast( scope );
+            return true;
+        }
+
+        public boolean visitLeave( DependencyNode node )
+        {
+            path.removeLast();
+            return true;
+        }
+
+        /**
+         * Adds the recorded scopes and the nodes of this segment to the specified conflict groups, in pre-order.
+         */
+        void merge( Map<DependencyNode, String> scopes, List<DependencyGroup> groups, ConflictIdIndex index )
+        {
+            int[] keys = new int[conflictIds.size()];
+            for ( int i = 0; i < keys.length; i++ )
+            {
+                keys[i] = index.indexOf( conflictIds.get( i ) );
+            }
+
+            for ( int i = 0, n = nodes.size(); i < n; i++ )
+            {
+                DependencyNode node = nodes.get( i );
+                scopes.put( node, nodeScopes.get( i ) );
+
+                int key = keys[nodeGroups[i]];
+                while ( groups.size() <= key )
+                {
+                    groups.add( null );
+                }
+                DependencyGroup group = groups.get( key );
+                if ( group == null )
+                {
+                    group = new DependencyGroup();
+                    groups.set( key, group );
+                }
+                group.nodes.add( node );
+            }
+        }
+
+    }
+
+    /**
+     * Gets the scope of the specified node, given the scope of its parent or {@code null} if the node is the root.
+     */
+    String getScope( DependencyNode node, String parentScope )
+    {
+        Dependency dependency = node.getDependency();
+
+        String scope;
+        if ( parentScope == null )
+        {
+            scope = ( dependency != null ) ? dependency.getScope() : "";
+        }
+        else
+        {
+            scope = getInheritedScope( parentScope, dependency.getScope() );
         }
 
-        for ( DependencyNode childNode : node.getChildren() )
+        if ( dependency != null && node.getPremanagedScope() != null )
         {
-            Dependency child = childNode.getDependency();
-            String childScope = child.getScope();
-            String inheritedScope = getInheritedScope( scope, childScope );
-            analyze( childNode, inheritedScope, scopes, groups );
+            scope = dependency.getScope();
         }
+
+        return scope;
     }
 
-    private void resolve( DependencyGroup group, Map<DependencyNode, String> scopes, Set<Object> keys )
+    private void resolve( DependencyGroup group, Map<DependencyNode, String> scopes, BitSet keys,
+                          ConflictIdIndex index )
     {
         if ( group.nodes.size() <= 1 )
         {
@@ -156,29 +371,76 @@ public class JavaEffectiveScopeCalculator
             String scope = scopes.get( node );
             if ( !effectiveScope.equals( scope ) && !SYSTEM.equals( scope ) )
             {
-                adjust( node, effectiveScope, scopes, keys );
+                adjust( node, effectiveScope, scopes, keys, index );
             }
         }
     }
 
-    private void adjust( DependencyNode node, String scope, Map<DependencyNode, String> scopes, Set<Object> keys )
+    private void adjust( DependencyNode node, String scope, Map<DependencyNode, String> scopes, BitSet keys,
+                         ConflictIdIndex index )
+    {
+        IterativeDependencyTraversal.traverse( node, new AdjustVisitor( scope, scopes, keys, index ) );
+    }
+
+    /**
+     * Propagates the adjusted scope of a node to its descendants. The conflict groups of the descendants whose scope
+     * changed are marked for another resolution.
+     */
+    final class AdjustVisitor
+        implements DependencyVisitor
     {
-        scopes.put( node, scope );
 
-        for ( DependencyNode childNode : node.getChildren() )
+        private final String scope;
+
+        private final Map<DependencyNode, String> scopes;
+
+        private final BitSet keys;
+
+        private final ConflictIdIndex index;
+
+        private final LinkedList<String> path = new LinkedList<String>();
+
+        public AdjustVisitor( String scope, Map<DependencyNode, String> scopes, BitSet keys, ConflictIdIndex index )
+        {
+            this.scope = scope;
+            this.scopes = scopes;
+            this.keys = keys;
+            this.index = index;
+        }
+
+        public boolean visitEnter( DependencyNode node )
         {
-            if ( childNode.getPremanagedScope() == null )
+            String scope = null;
+            if ( path.isEmpty() )
             {
-                String childScope = childNode.getDependency().getScope();
-                String inheritedScope = getInheritedScope( scope, childScope );
-                String oldScope = scopes.get( childNode );
-                if ( !inheritedScope.equals( oldScope ) )
+                scope = this.scope;
+            }
+            else if ( node.getPremanagedScope() == null )
+            {
+                String inheritedScope = getInheritedScope( path.getLast(), node.getDependency().getScope() );
+                if ( !inheritedScope.equals( scopes.get( node ) ) )
                 {
-                    keys.add( childNode.getConflictId() );
-                    adjust( childNode, inheritedScope, scopes, keys );
+                    keys.set( index.indexOf( node.getConflictId() ) );
+                    scope = inheritedScope;
                 }
             }
+
+            path.addLast( scope );
+            if ( scope == null )
+            {
+                return false;
+            }
+
+            scopes.put( node, scope );
+            return true;
         }
+
+        public boolean visitLeave( DependencyNode node )
+        {
+            path.removeLast();
+            return true;
+        }
+
     }
 
     private String getInheritedScope( String parentScope, String childScope )
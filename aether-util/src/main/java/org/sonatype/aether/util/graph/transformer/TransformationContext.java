@@ -0,0 +1,105 @@
+package org.sonatype.aether.util.graph.transformer;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.sonatype.aether.util.ConfigUtils;
+
+/**
+ * The context of a single transformation by a chain of {@link FusibleDependencyGraphTransformer}s. It allows the
+ * passes of the transformers to share data, e.g. an index of the conflict groups.
+ * 
+ * @author Benjamin Bentmann
+ */
+public final class TransformationContext
+{
+
+    private final Map<Object, Object> data = new HashMap<Object, Object>();
+
+    private final Map<?, ?> configProperties;
+
+    /**
+     * Creates a new context without configuration properties.
+     */
+    public TransformationContext()
+    {
+        this( null );
+    }
+
+    /**
+     * Creates a new context with the specified configuration properties.
+     * 
+     * @param configProperties The configuration properties of the transformation, may be {@code null}.
+     */
+    public TransformationContext( Map<?, ?> configProperties )
+    {
+        this.configProperties = ( configProperties != null ) ? configProperties : Collections.emptyMap();
+    }
+
+    /**
+     * Gets the configuration properties of the transformation, usually those of the repository session.
+     * 
+     * @return The (read-only) configuration properties, never {@code null}.
+     */
+    public Map<?, ?> getConfigProperties()
+    {
+        return Collections.unmodifiableMap( configProperties );
+    }
+
+    /**
+     * Gets the number of threads the passes may use to analyze the graph as configured by
+     * {@link ChainedDependencyGraphTransformer#CONFIG_PROP_THREADS}.
+     * 
+     * @return The number of threads, at least {@code 1}.
+     */
+    public int getThreads()
+    {
+        int threads =
+            ConfigUtils.getInteger( configProperties, 1, ChainedDependencyGraphTransformer.CONFIG_PROP_THREADS );
+        return Math.max( 1, threads );
+    }
+
+    /**
+     * Gets the data associated with the specified key.
+     * 
+     * @param key The key of the data, must not be {@code null}.
+     * @return The data or {@code null} if none.
+     */
+    public Object get( Object key )
+    {
+        return data.get( key );
+    }
+
+    /**
+     * Associates the specified data with the given key.
+     * 
+     * @param key The key of the data, must not be {@code null}.
+     * @param value The data to store, may be {@code null} to remove the data.
+     */
+    public void put( Object key, Object value )
+    {
+        if ( value != null )
+        {
+            data.put( key, value );
+        }
+        else
+        {
+            data.remove( key );
+        }
+    }
+
+}
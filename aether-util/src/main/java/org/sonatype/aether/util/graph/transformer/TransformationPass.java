@@ -0,0 +1,74 @@
+package org.sonatype.aether.util.graph.transformer;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import org.sonatype.aether.DependencyNode;
+import org.sonatype.aether.RepositoryException;
+
+/**
+ * A single depth-first traversal of a dependency graph performed on behalf of a
+ * {@link FusibleDependencyGraphTransformer}. Passes of different transformers can share the same traversal, the
+ * passes sharing a traversal visit each node in the order of their transformers. When a pass enters a node, the node
+ * and its ancestors reflect the changes of all passes scheduled before it, including their completion if those passes
+ * ran in earlier traversals.
+ * 
+ * @author Benjamin Bentmann
+ * @see TransformationContext
+ */
+public interface TransformationPass
+{
+
+    /**
+     * Notifies the pass of a node being entered.
+     * 
+     * @param node The dependency node being entered, must not be {@code null}.
+     * @return {@code true} to visit the children of the node with this pass, {@code false} to skip them.
+     * @throws RepositoryException If the transformation failed.
+     */
+    boolean visitEnter( DependencyNode node )
+        throws RepositoryException;
+
+    /**
+     * Notifies the pass of a node being left. This method is called for every node that was entered by this pass.
+     * 
+     * @param node The dependency node being left, must not be {@code null}.
+     */
+    void visitLeave( DependencyNode node );
+
+    /**
+     * Notifies the pass that the traversal is complete, i.e. all nodes have been visited.
+     * 
+     * @throws RepositoryException If the transformation failed.
+     */
+    void complete()
+        throws RepositoryException;
+
+    /**
+     * Indicates whether the changes this pass makes to a node are only final once the pass is {@link #complete()
+     * complete}. Passes of subsequent transformers are not added to the traversal of a deferred pass.
+     * 
+     * @return {@code true} if the changes of this pass are deferred, {@code false} if they are final once a node has
+     *         been entered.
+     */
+    boolean isDeferred();
+
+    /**
+     * Indicates whether this pass removes children from the nodes it enters. A pruning pass always starts a new
+     * traversal such that passes of preceding transformers still get to see the entire graph.
+     * 
+     * @return {@code true} if this pass removes nodes from the graph, {@code false} otherwise.
+     */
+    boolean isPruning();
+
+}
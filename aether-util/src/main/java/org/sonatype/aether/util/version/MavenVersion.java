@@ -15,12 +15,13 @@ package org.sonatype.aether.util.version;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.ListIterator;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Stack;
 
 import org.sonatype.aether.Version;
 
@@ -55,11 +56,39 @@ public final class MavenVersion
     implements Version
 {
 
+    /**
+     * The well-known qualifiers in their order, the index of a qualifier is its rank.
+     */
+    private static final String[] QUALIFIERS = { "alpha", "beta", "milestone", "rc", "snapshot", "", "sp" };
+
+    /**
+     * The rank of the empty qualifier, i.e. of a release.
+     */
+    private static final int RELEASE_RANK = 5;
+
+    /**
+     * The offset used to encode the rank of a qualifier as a negative packed item, numbers are encoded as themselves.
+     */
+    private static final long QUALIFIER_OFFSET = QUALIFIERS.length;
+
+    /**
+     * The maximum number of digits of a number that fits into a packed item.
+     */
+    private static final int MAX_PACKED_DIGITS = 18;
+
     private final String value;
 
-    private final String canonical;
+    /**
+     * The items of the normalized item list for versions of the common form {@code N[.N[.N]][-Q[[-]N]]} with a
+     * well-known qualifier Q, {@code null} for any other version. A non-negative element denotes a number, a negative
+     * element the qualifier with the rank {@code element + QUALIFIER_OFFSET}. Packed versions are compared without
+     * ever building the item tree.
+     */
+    private final long[] packed;
 
-    private final ListItem items;
+    private String canonical;
+
+    private volatile ListItem items;
 
     private interface Item
     {
@@ -148,7 +177,7 @@ public final class MavenVersion
 
         static
         {
-            String[] qualifiers = { "alpha", "beta", "milestone", "rc", "snapshot", "", "sp" };
+            String[] qualifiers = MavenVersion.QUALIFIERS;
             for ( int i = 0; i < qualifiers.length; i++ )
             {
                 QUALIFIERS.put( qualifiers[i], String.valueOf( i ) );
@@ -346,14 +375,169 @@ public final class MavenVersion
     {
         this.value = version;
 
-        items = new ListItem();
+        String lower = version.toLowerCase( Locale.ENGLISH );
+
+        packed = pack( lower );
+
+        if ( packed == null )
+        {
+            items = parse( lower );
+            canonical = items.toString();
+        }
+    }
+
+    /**
+     * Parses a version of the form {@code N[.N[.N]][-Q[[-]N]]} where Q is a well-known qualifier or one of its aliases
+     * into its packed items. The items are normalized just like the item list built by {@link #parse(String)}.
+     * 
+     * @param version The lower-case version to parse, must not be {@code null}.
+     * @return The packed items or {@code null} if the version needs the item tree.
+     */
+    private static long[] pack( String version )
+    {
+        long[] items = new long[5];
+        int count = 0;
+
+        int length = version.length();
+        int i = 0;
+
+        while ( true )
+        {
+            int start = i;
+            long number = 0;
+            for ( char c; i < length && ( c = version.charAt( i ) ) >= '0' && c <= '9'; i++ )
+            {
+                number = number * 10 + ( c - '0' );
+            }
+            if ( i == start || i - start > MAX_PACKED_DIGITS || count >= 3 )
+            {
+                return null;
+            }
+            items[count++] = number;
+
+            if ( i >= length || version.charAt( i ) == '-' )
+            {
+                break;
+            }
+            if ( version.charAt( i ) != '.' )
+            {
+                return null;
+            }
+            i++;
+        }
+
+        if ( i < length )
+        {
+            // 1.0-* = 1-*
+            while ( count > 0 && items[count - 1] == 0 )
+            {
+                count--;
+            }
+
+            int start = ++i;
+            for ( char c; i < length && ( c = version.charAt( i ) ) >= 'a' && c <= 'z'; i++ )
+            {
+                // letters of the qualifier
+            }
+            int rank = getQualifierRank( version, start, i );
+            if ( rank < 0 )
+            {
+                return null;
+            }
+            items[count++] = rank - QUALIFIER_OFFSET;
+
+            if ( i < length )
+            {
+                if ( version.charAt( i ) == '-' )
+                {
+                    i++;
+                }
+                start = i;
+                long number = 0;
+                for ( char c; i < length && ( c = version.charAt( i ) ) >= '0' && c <= '9'; i++ )
+                {
+                    number = number * 10 + ( c - '0' );
+                }
+                if ( i == start || i < length || i - start > MAX_PACKED_DIGITS )
+                {
+                    return null;
+                }
+                items[count++] = number;
+            }
+        }
+
+        // remove null trailing items: 0, ""
+        while ( count > 0 && ( items[count - 1] == 0 || items[count - 1] == RELEASE_RANK - QUALIFIER_OFFSET ) )
+        {
+            count--;
+        }
+
+        long[] result = new long[count];
+        System.arraycopy( items, 0, result, 0, count );
+        return result;
+    }
+
+    /**
+     * Gets the rank of the well-known qualifier spelled by the specified region of the version, resolving aliases like
+     * {@link StringItem} does.
+     * 
+     * @return The rank of the qualifier or {@code -1} if the region does not denote a well-known qualifier.
+     */
+    private static int getQualifierRank( String version, int start, int end )
+    {
+        int length = end - start;
+        if ( length == 1 && end < version.length() && version.charAt( end ) >= '0' && version.charAt( end ) <= '9' )
+        {
+            // a1 = alpha-1, b1 = beta-1, m1 = milestone-1
+            switch ( version.charAt( start ) )
+            {
+                case 'a':
+                    return 0;
+                case 'b':
+                    return 1;
+                case 'm':
+                    return 2;
+                default:
+                    return -1;
+            }
+        }
+        if ( matches( version, start, length, "cr" ) )
+        {
+            return 3;
+        }
+        if ( matches( version, start, length, "ga" ) || matches( version, start, length, "final" ) )
+        {
+            return RELEASE_RANK;
+        }
+        for ( int rank = 0; rank < QUALIFIERS.length; rank++ )
+        {
+            if ( rank != RELEASE_RANK && matches( version, start, length, QUALIFIERS[rank] ) )
+            {
+                return rank;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches( String version, int start, int length, String qualifier )
+    {
+        return length == qualifier.length() && version.regionMatches( start, qualifier, 0, length );
+    }
 
-        version = version.toLowerCase( Locale.ENGLISH );
+    /**
+     * Parses the specified version into its item tree.
+     * 
+     * @param version The lower-case version to parse, must not be {@code null}.
+     * @return The normalized item list, never {@code null}.
+     */
+    private static ListItem parse( String version )
+    {
+        ListItem items = new ListItem();
 
         ListItem list = items;
 
-        Stack<Item> stack = new Stack<Item>();
-        stack.push( list );
+        List<ListItem> stack = new ArrayList<ListItem>();
+        stack.add( list );
 
         boolean isDigit = false;
 
@@ -397,7 +581,7 @@ public final class MavenVersion
                         // ie need to differentiate only 1.1 from 1-1
                         list.add( list = new ListItem() );
 
-                        stack.push( list );
+                        stack.add( list );
                     }
                 }
             }
@@ -428,13 +612,12 @@ public final class MavenVersion
             list.add( parseItem( isDigit, version.substring( startIndex ) ) );
         }
 
-        while ( !stack.isEmpty() )
+        for ( int i = stack.size() - 1; i >= 0; i-- )
         {
-            list = (ListItem) stack.pop();
-            list.normalize();
+            stack.get( i ).normalize();
         }
 
-        canonical = items.toString();
+        return items;
     }
 
     private static Item parseItem( boolean isDigit, String buf )
@@ -442,19 +625,125 @@ public final class MavenVersion
         return isDigit ? new IntegerItem( buf ) : new StringItem( buf, false );
     }
 
+    private ListItem getItems()
+    {
+        ListItem items = this.items;
+        if ( items == null )
+        {
+            items = parse( value.toLowerCase( Locale.ENGLISH ) );
+            this.items = items;
+        }
+        return items;
+    }
+
+    private String getCanonical()
+    {
+        String canonical = this.canonical;
+        if ( canonical == null )
+        {
+            StringBuilder buffer = new StringBuilder( 32 );
+            buffer.append( '(' );
+            for ( int i = 0; i < packed.length; i++ )
+            {
+                if ( i > 0 )
+                {
+                    buffer.append( ',' );
+                }
+                if ( packed[i] >= 0 )
+                {
+                    buffer.append( packed[i] );
+                }
+                else
+                {
+                    buffer.append( QUALIFIERS[(int) ( packed[i] + QUALIFIER_OFFSET )] );
+                }
+            }
+            buffer.append( ')' );
+            canonical = buffer.toString();
+            this.canonical = canonical;
+        }
+        return canonical;
+    }
+
     public int compareTo( Version o )
     {
-        return items.compareTo( ( (MavenVersion) o ).items );
+        MavenVersion that = (MavenVersion) o;
+        if ( packed != null && that.packed != null )
+        {
+            return compare( packed, that.packed );
+        }
+        return getItems().compareTo( that.getItems() );
+    }
+
+    /**
+     * Compares two packed item lists following the same rules as the item tree.
+     */
+    private static int compare( long[] left, long[] right )
+    {
+        for ( int i = 0, n = Math.max( left.length, right.length ); i < n; i++ )
+        {
+            int result;
+            if ( i >= left.length )
+            {
+                result = -compareToNull( right[i] );
+            }
+            else if ( i >= right.length )
+            {
+                result = compareToNull( left[i] );
+            }
+            else
+            {
+                result = compare( left[i], right[i] );
+            }
+
+            if ( result != 0 )
+            {
+                return result;
+            }
+        }
+
+        return 0;
+    }
+
+    private static int compareToNull( long item )
+    {
+        if ( item >= 0 )
+        {
+            return ( item == 0 ) ? 0 : 1; // 1.0 == 1, 1.1 > 1
+        }
+        return compare( item, RELEASE_RANK - QUALIFIER_OFFSET ); // 1-rc < 1, 1-sp > 1
+    }
+
+    private static int compare( long left, long right )
+    {
+        if ( ( left >= 0 ) != ( right >= 0 ) )
+        {
+            return ( left >= 0 ) ? 1 : -1; // 1.1 > 1-sp
+        }
+        return ( left < right ) ? -1 : ( ( left == right ) ? 0 : 1 );
     }
 
     public boolean equals( Object o )
     {
-        return ( o instanceof MavenVersion ) && canonical.equals( ( (MavenVersion) o ).canonical );
+        if ( this == o )
+        {
+            return true;
+        }
+        if ( !( o instanceof MavenVersion ) )
+        {
+            return false;
+        }
+        MavenVersion that = (MavenVersion) o;
+        if ( packed != null && that.packed != null )
+        {
+            return Arrays.equals( packed, that.packed );
+        }
+        return getCanonical().equals( that.getCanonical() );
     }
 
     public int hashCode()
     {
-        return canonical.hashCode();
+        return getCanonical().hashCode();
     }
 
     public String toString()
@@ -0,0 +1,575 @@
+package org.sonatype.aether.util.version;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.sonatype.aether.Version;
+import org.sonatype.aether.VersionConstraint;
+import org.sonatype.aether.VersionRange;
+
+/**
+ * An immutable set of versions described by sorted and disjoint intervals, i.e. the normalized union of the ranges of a
+ * version constraint. Several constraints can be intersected into a single set which then tells in logarithmic time
+ * whether a version satisfies all of them. Queries over a list of versions sorted in ascending order walk the list and
+ * the intervals side by side instead of checking each version against each range.
+ * <p>
+ * The semantics of {@link MavenVersionRange#containsVersion(Version)} are preserved: A snapshot version is only
+ * contained in a bounded range if it matches one of the bounds of the range, the set therefore tracks these bounds
+ * separately. Ranges of other implementations are not analyzed but simply checked one after the other.
+ * 
+ * @author Benjamin Bentmann
+ */
+public final class VersionIntervals
+{
+
+    /**
+     * The set of all versions.
+     */
+    public static final VersionIntervals ALL =
+        new VersionIntervals( new MavenVersionRange[] { new MavenVersionRange( null, false, null, false ) }, null,
+                              Collections.<Collection<VersionRange>> emptyList() );
+
+    private static final Comparator<MavenVersionRange> LOWER_BOUNDS = new Comparator<MavenVersionRange>()
+    {
+        public int compare( MavenVersionRange r1, MavenVersionRange r2 )
+        {
+            return compareLower( r1, r2 );
+        }
+    };
+
+    private final MavenVersionRange[] intervals;
+
+    private final Version[] snapshots;
+
+    private final List<Collection<VersionRange>> others;
+
+    private VersionIntervals( MavenVersionRange[] intervals, Version[] snapshots,
+                              List<Collection<VersionRange>> others )
+    {
+        this.intervals = intervals;
+        this.snapshots = snapshots;
+        this.others = others;
+    }
+
+    /**
+     * Gets the versions that satisfy the specified constraint.
+     * 
+     * @param constraint The version constraint, must not be {@code null}.
+     * @return The versions satisfying the constraint, never {@code null}.
+     */
+    public static VersionIntervals of( VersionConstraint constraint )
+    {
+        return of( constraint.getRanges() );
+    }
+
+    /**
+     * Gets the versions that are contained in at least one of the specified ranges. Like for a
+     * {@link VersionConstraint}, an empty collection of ranges is satisfied by any version.
+     * 
+     * @param ranges The version ranges, must not be {@code null}.
+     * @return The versions contained in the ranges, never {@code null}.
+     */
+    public static VersionIntervals of( Collection<? extends VersionRange> ranges )
+    {
+        if ( ranges.isEmpty() )
+        {
+            return ALL;
+        }
+
+        List<MavenVersionRange> sorted = new ArrayList<MavenVersionRange>( ranges.size() );
+        List<Version> snapshots = new ArrayList<Version>();
+        boolean allSnapshots = false;
+
+        for ( VersionRange range : ranges )
+        {
+            if ( !( range instanceof MavenVersionRange ) )
+            {
+                List<Collection<VersionRange>> others = new ArrayList<Collection<VersionRange>>( 1 );
+                others.add( Collections.unmodifiableCollection( new ArrayList<VersionRange>( ranges ) ) );
+                return new VersionIntervals( ALL.intervals, null, others );
+            }
+
+            MavenVersionRange interval = (MavenVersionRange) range;
+            Version lower = interval.getLowerBound();
+            Version upper = interval.getUpperBound();
+
+            if ( lower == null && upper == null )
+            {
+                allSnapshots = true;
+            }
+            if ( lower != null )
+            {
+                snapshots.add( lower );
+            }
+            if ( upper != null && ( lower == null || lower.compareTo( upper ) <= 0 ) )
+            {
+                snapshots.add( upper );
+            }
+
+            if ( !isEmpty( interval ) )
+            {
+                sorted.add( interval );
+            }
+        }
+
+        Collections.sort( sorted, LOWER_BOUNDS );
+
+        List<MavenVersionRange> merged = new ArrayList<MavenVersionRange>( sorted.size() );
+        MavenVersionRange current = null;
+        for ( MavenVersionRange interval : sorted )
+        {
+            if ( current == null )
+            {
+                current = interval;
+            }
+            else if ( overlapsOrTouches( current, interval ) )
+            {
+                if ( compareUpper( interval, current ) > 0 )
+                {
+                    current =
+                        new MavenVersionRange( current.getLowerBound(), current.isLowerBoundInclusive(),
+                                               interval.getUpperBound(), interval.isUpperBoundInclusive() );
+                }
+            }
+            else
+            {
+                merged.add( current );
+                current = interval;
+            }
+        }
+        if ( current != null )
+        {
+            merged.add( current );
+        }
+
+        return new VersionIntervals( merged.toArray( new MavenVersionRange[merged.size()] ),
+                                     allSnapshots ? null : sort( snapshots ),
+                                     Collections.<Collection<VersionRange>> emptyList() );
+    }
+
+    /**
+     * Gets the versions that are contained in both this and the specified set.
+     * 
+     * @param that The other set of versions, must not be {@code null}.
+     * @return The intersection of both sets, never {@code null}.
+     */
+    public VersionIntervals intersect( VersionIntervals that )
+    {
+        if ( this == that || that == ALL )
+        {
+            return this;
+        }
+        if ( this == ALL )
+        {
+            return that;
+        }
+
+        List<MavenVersionRange> result = new ArrayList<MavenVersionRange>();
+        for ( int i = 0, j = 0; i < intervals.length && j < that.intervals.length; )
+        {
+            MavenVersionRange a = intervals[i];
+            MavenVersionRange b = that.intervals[j];
+
+            MavenVersionRange lower = ( compareLower( a, b ) >= 0 ) ? a : b;
+            MavenVersionRange upper = ( compareUpper( a, b ) <= 0 ) ? a : b;
+
+            MavenVersionRange interval =
+                new MavenVersionRange( lower.getLowerBound(), lower.isLowerBoundInclusive(), upper.getUpperBound(),
+                                       upper.isUpperBoundInclusive() );
+            if ( !isEmpty( interval ) )
+            {
+                result.add( interval );
+            }
+
+            if ( upper == a )
+            {
+                i++;
+            }
+            else
+            {
+                j++;
+            }
+        }
+
+        Version[] snapshots;
+        if ( this.snapshots == null )
+        {
+            snapshots = that.snapshots;
+        }
+        else if ( that.snapshots == null )
+        {
+            snapshots = this.snapshots;
+        }
+        else
+        {
+            List<Version> common = new ArrayList<Version>();
+            for ( Version version : this.snapshots )
+            {
+                if ( Arrays.binarySearch( that.snapshots, version ) >= 0 )
+                {
+                    common.add( version );
+                }
+            }
+            snapshots = common.toArray( new Version[common.size()] );
+        }
+
+        List<Collection<VersionRange>> others = this.others;
+        if ( !that.others.isEmpty() )
+        {
+            others = new ArrayList<Collection<VersionRange>>( this.others );
+            others.addAll( that.others );
+        }
+
+        return new VersionIntervals( result.toArray( new MavenVersionRange[result.size()] ), snapshots, others );
+    }
+
+    /**
+     * Determines whether the specified version is contained in this set.
+     * 
+     * @param version The version to test, must not be {@code null}.
+     * @return {@code true} if the version is contained in this set, {@code false} otherwise.
+     */
+    public boolean containsVersion( Version version )
+    {
+        if ( !containedInOthers( version ) )
+        {
+            return false;
+        }
+
+        if ( isSnapshot( version ) )
+        {
+            return containedInSnapshots( version );
+        }
+
+        int low = 0;
+        int high = intervals.length - 1;
+        while ( low <= high )
+        {
+            int mid = ( low + high ) >>> 1;
+            MavenVersionRange interval = intervals[mid];
+            if ( !isAboveLower( interval, version ) )
+            {
+                high = mid - 1;
+            }
+            else if ( !isBelowUpper( interval, version ) )
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Selects the versions contained in this set from the specified list.
+     * 
+     * @param versions The versions to filter, sorted in ascending order, must not be {@code null}.
+     * @return The contained versions in their original order, never {@code null}.
+     */
+    public <V extends Version> List<V> filterVersions( List<V> versions )
+    {
+        List<V> result = new ArrayList<V>();
+
+        int i = 0;
+        for ( V version : versions )
+        {
+            if ( !containedInOthers( version ) )
+            {
+                continue;
+            }
+
+            if ( isSnapshot( version ) )
+            {
+                if ( containedInSnapshots( version ) )
+                {
+                    result.add( version );
+                }
+                continue;
+            }
+
+            while ( i < intervals.length && !isBelowUpper( intervals[i], version ) )
+            {
+                i++;
+            }
+            if ( i < intervals.length && isAboveLower( intervals[i], version ) )
+            {
+                result.add( version );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the highest version from the specified list that is contained in this set. If several contained versions
+     * compare equal, the one closest to the end of the list is chosen.
+     * 
+     * @param versions The versions to choose from, sorted in ascending order, must not be {@code null}.
+     * @return The highest contained version or {@code null} if none of the versions is contained in this set.
+     */
+    public <V extends Version> V getHighestVersion( List<V> versions )
+    {
+        if ( !others.isEmpty() )
+        {
+            for ( int i = versions.size() - 1; i >= 0; i-- )
+            {
+                if ( containsVersion( versions.get( i ) ) )
+                {
+                    return versions.get( i );
+                }
+            }
+            return null;
+        }
+
+        int best = -1;
+
+        search: for ( int k = intervals.length - 1; k >= 0; k-- )
+        {
+            MavenVersionRange interval = intervals[k];
+            for ( int i = indexOfUpper( versions, interval ); i >= 0; i-- )
+            {
+                Version version = versions.get( i );
+                if ( !isAboveLower( interval, version ) )
+                {
+                    break;
+                }
+                if ( !isSnapshot( version ) )
+                {
+                    best = i;
+                    break search;
+                }
+            }
+        }
+
+        if ( snapshots == null )
+        {
+            for ( int i = versions.size() - 1; i > best; i-- )
+            {
+                if ( isSnapshot( versions.get( i ) ) )
+                {
+                    best = i;
+                    break;
+                }
+            }
+        }
+        else
+        {
+            for ( Version bound : snapshots )
+            {
+                for ( int i = indexOf( versions, bound, true ); i > best; i-- )
+                {
+                    if ( versions.get( i ).compareTo( bound ) != 0 )
+                    {
+                        break;
+                    }
+                    if ( isSnapshot( versions.get( i ) ) )
+                    {
+                        best = i;
+                        break;
+                    }
+                }
+            }
+        }
+
+        return ( best >= 0 ) ? versions.get( best ) : null;
+    }
+
+    private boolean containedInOthers( Version version )
+    {
+        for ( Collection<VersionRange> ranges : others )
+        {
+            boolean contained = false;
+            for ( VersionRange range : ranges )
+            {
+                if ( range.containsVersion( version ) )
+                {
+                    contained = true;
+                    break;
+                }
+            }
+            if ( !contained )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean containedInSnapshots( Version version )
+    {
+        return snapshots == null || Arrays.binarySearch( snapshots, version ) >= 0;
+    }
+
+    /**
+     * Gets the index of the last version that is not above the upper bound of the specified interval.
+     */
+    private static int indexOfUpper( List<? extends Version> versions, MavenVersionRange interval )
+    {
+        if ( interval.getUpperBound() == null )
+        {
+            return versions.size() - 1;
+        }
+        return indexOf( versions, interval.getUpperBound(), interval.isUpperBoundInclusive() );
+    }
+
+    /**
+     * Gets the index of the last version that is below (or equal to if inclusive) the specified bound.
+     */
+    private static int indexOf( List<? extends Version> versions, Version bound, boolean inclusive )
+    {
+        int low = 0;
+        int high = versions.size() - 1;
+        while ( low <= high )
+        {
+            int mid = ( low + high ) >>> 1;
+            int comparison = versions.get( mid ).compareTo( bound );
+            if ( comparison < 0 || ( comparison == 0 && inclusive ) )
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    private static boolean isAboveLower( MavenVersionRange interval, Version version )
+    {
+        if ( interval.getLowerBound() == null )
+        {
+            return true;
+        }
+        int comparison = interval.getLowerBound().compareTo( version );
+        return comparison < 0 || ( comparison == 0 && interval.isLowerBoundInclusive() );
+    }
+
+    private static boolean isBelowUpper( MavenVersionRange interval, Version version )
+    {
+        if ( interval.getUpperBound() == null )
+        {
+            return true;
+        }
+        int comparison = interval.getUpperBound().compareTo( version );
+        return comparison > 0 || ( comparison == 0 && interval.isUpperBoundInclusive() );
+    }
+
+    private static boolean isEmpty( MavenVersionRange interval )
+    {
+        if ( interval.getLowerBound() == null || interval.getUpperBound() == null )
+        {
+            return false;
+        }
+        int comparison = interval.getLowerBound().compareTo( interval.getUpperBound() );
+        return comparison > 0
+            || ( comparison == 0 && !( interval.isLowerBoundInclusive() && interval.isUpperBoundInclusive() ) );
+    }
+
+    /**
+     * Determines whether the second interval, which does not start below the first one, can be merged into the first
+     * one.
+     */
+    private static boolean overlapsOrTouches( MavenVersionRange first, MavenVersionRange second )
+    {
+        if ( first.getUpperBound() == null || second.getLowerBound() == null )
+        {
+            return true;
+        }
+        int comparison = second.getLowerBound().compareTo( first.getUpperBound() );
+        return comparison < 0
+            || ( comparison == 0 && ( first.isUpperBoundInclusive() || second.isLowerBoundInclusive() ) );
+    }
+
+    /**
+     * Compares the lower bounds of two intervals, an inclusive bound is lower than an exclusive bound of equal
+     * version.
+     */
+    private static int compareLower( MavenVersionRange r1, MavenVersionRange r2 )
+    {
+        Version v1 = r1.getLowerBound();
+        Version v2 = r2.getLowerBound();
+        if ( v1 == null || v2 == null )
+        {
+            return ( v1 == null ) ? ( ( v2 == null ) ? 0 : -1 ) : 1;
+        }
+        int comparison = v1.compareTo( v2 );
+        if ( comparison == 0 && r1.isLowerBoundInclusive() != r2.isLowerBoundInclusive() )
+        {
+            comparison = r1.isLowerBoundInclusive() ? -1 : 1;
+        }
+        return comparison;
+    }
+
+    /**
+     * Compares the upper bounds of two intervals, an exclusive bound is lower than an inclusive bound of equal
+     * version.
+     */
+    private static int compareUpper( MavenVersionRange r1, MavenVersionRange r2 )
+    {
+        Version v1 = r1.getUpperBound();
+        Version v2 = r2.getUpperBound();
+        if ( v1 == null || v2 == null )
+        {
+            return ( v1 == null ) ? ( ( v2 == null ) ? 0 : 1 ) : -1;
+        }
+        int comparison = v1.compareTo( v2 );
+        if ( comparison == 0 && r1.isUpperBoundInclusive() != r2.isUpperBoundInclusive() )
+        {
+            comparison = r1.isUpperBoundInclusive() ? 1 : -1;
+        }
+        return comparison;
+    }
+
+    private static Version[] sort( List<Version> versions )
+    {
+        Version[] sorted = versions.toArray( new Version[versions.size()] );
+        Arrays.sort( sorted );
+        return sorted;
+    }
+
+    private static boolean isSnapshot( Version version )
+    {
+        return version != null && version.toString().endsWith( "SNAPSHOT" );
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder buffer = new StringBuilder( 128 );
+        for ( MavenVersionRange interval : intervals )
+        {
+            if ( buffer.length() > 0 )
+            {
+                buffer.append( ',' );
+            }
+            buffer.append( interval );
+        }
+        for ( Collection<VersionRange> ranges : others )
+        {
+            buffer.append( " & " ).append( ranges );
+        }
+        return buffer.toString();
+    }
+
+}
@@ -0,0 +1,283 @@
+package org.sonatype.aether.util;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.sonatype.aether.DefaultArtifact;
+import org.sonatype.aether.Dependency;
+import org.sonatype.aether.DependencyGraphTransformer;
+import org.sonatype.aether.DependencyNode;
+import org.sonatype.aether.DependencyVisitor;
+import org.sonatype.aether.RepositoryException;
+import org.sonatype.aether.VersionConstraint;
+import org.sonatype.aether.util.graph.DefaultDependencyNode;
+import org.sonatype.aether.util.graph.transformer.ChainedDependencyGraphTransformer;
+import org.sonatype.aether.util.graph.transformer.ClassicVersionConflictResolver;
+import org.sonatype.aether.util.graph.transformer.ConflictMarker;
+import org.sonatype.aether.util.graph.transformer.FusibleDependencyGraphTransformer;
+import org.sonatype.aether.util.graph.transformer.JavaDependencyContextRefiner;
+import org.sonatype.aether.util.graph.transformer.JavaEffectiveScopeCalculator;
+import org.sonatype.aether.util.graph.transformer.TransformationContext;
+import org.sonatype.aether.util.graph.transformer.TransformationPass;
+import org.sonatype.aether.util.version.MavenVersion;
+
+/**
+ * @author Benjamin Bentmann
+ */
+public class ChainedDependencyGraphTransformerTest
+{
+
+    private static final String[] SCOPES = { "compile", "runtime", "test", "provided", "compile", "system" };
+
+    private static DependencyNode newGraph( int depth, int fanOut )
+    {
+        DefaultDependencyNode root = new DefaultDependencyNode( null );
+        root.setContext( "project" );
+        addChildren( root, 1, 0, depth, fanOut );
+        return root;
+    }
+
+    private static void addChildren( DependencyNode parent, int level, int seed, int depth, int fanOut )
+    {
+        if ( level > depth )
+        {
+            return;
+        }
+        for ( int i = 0; i < fanOut; i++ )
+        {
+            int n = seed * fanOut + i;
+            String version = Integer.toString( 1 + ( n + level ) % 3 );
+            DefaultDependencyNode node =
+                new DefaultDependencyNode( new Dependency( new DefaultArtifact( "gid", "a" + ( ( n * 5 + level ) % 9 ),
+                                                                                "jar", version ),
+                                                           SCOPES[( n * 3 + level ) % SCOPES.length] ), parent );
+            node.setVersion( new MavenVersion( version ) );
+            VersionConstraint constraint = new VersionConstraint();
+            constraint.setPreferredVersion( node.getVersion() );
+            node.setVersionConstraint( constraint );
+            node.setContext( "project" );
+            parent.getChildren().add( node );
+            addChildren( node, level + 1, n, depth, fanOut );
+        }
+    }
+
+    private static List<DependencyNode> preOrder( DependencyNode root )
+    {
+        final List<DependencyNode> nodes = new ArrayList<DependencyNode>();
+        root.accept( new DependencyVisitor()
+        {
+            public boolean visitEnter( DependencyNode node )
+            {
+                nodes.add( node );
+                return true;
+            }
+
+            public boolean visitLeave( DependencyNode node )
+            {
+                return true;
+            }
+        } );
+        return nodes;
+    }
+
+    private static DependencyGraphTransformer[] newStandardChain()
+    {
+        return new DependencyGraphTransformer[] { new ConflictMarker(), new JavaEffectiveScopeCalculator(),
+            new ClassicVersionConflictResolver(), new JavaDependencyContextRefiner() };
+    }
+
+    @Test
+    public void testFusedChainMatchesTransformersAppliedInTurn()
+        throws Exception
+    {
+        for ( int depth = 1; depth <= 5; depth++ )
+        {
+            DependencyNode original = newGraph( depth, 3 );
+            DependencyNode fused = newGraph( depth, 3 );
+            fused = new ChainedDependencyGraphTransformer( newStandardChain() ).transformGraph( fused );
+            DependencyNode separate = newGraph( depth, 3 );
+            for ( DependencyGraphTransformer transformer : newStandardChain() )
+            {
+                separate = transformer.transformGraph( separate );
+            }
+
+            List<DependencyNode> expected = preOrder( separate );
+            List<DependencyNode> actual = preOrder( fused );
+            assertEquals( expected.size(), actual.size() );
+            for ( int i = 1; i < expected.size(); i++ )
+            {
+                DependencyNode e = expected.get( i );
+                DependencyNode a = actual.get( i );
+                String msg = "node " + i + " " + e;
+                assertEquals( msg, e.getDepth(), a.getDepth() );
+                assertEquals( msg, e.getDependency(), a.getDependency() );
+                assertEquals( msg, e.getContext(), a.getContext() );
+                assertEquals( msg, e.getConflictId(), a.getConflictId() );
+            }
+
+            if ( depth >= 3 )
+            {
+                assertTrue( "graph does not exercise conflict resolution",
+                            preOrder( original ).size() > expected.size() );
+            }
+        }
+    }
+
+    @Test
+    public void testSkippedChildrenAreStillVisitedByOtherFusedPasses()
+        throws Exception
+    {
+        DependencyNode root = newGraph( 3, 2 );
+        final DependencyNode skipped = root.getChildren().get( 0 );
+        List<String> log = new ArrayList<String>();
+
+        RecordingTransformer skipping = new RecordingTransformer( "A", log, false )
+        {
+            @Override
+            boolean enter( DependencyNode node )
+            {
+                return node != skipped;
+            }
+        };
+        RecordingTransformer recording = new RecordingTransformer( "B", log, false );
+
+        new ChainedDependencyGraphTransformer( skipping, recording ).transformGraph( root );
+
+        List<DependencyNode> nodes = preOrder( root );
+        List<String> expected = new ArrayList<String>();
+        for ( DependencyNode node : nodes )
+        {
+            if ( !isDescendant( node, skipped ) )
+            {
+                expected.add( "A:" + node );
+            }
+            expected.add( "B:" + node );
+        }
+        expected.add( "A:complete" );
+        expected.add( "B:complete" );
+        assertEquals( expected, log );
+    }
+
+    private static boolean isDescendant( DependencyNode node, DependencyNode ancestor )
+    {
+        for ( DependencyNode parent = node.getParent(); parent != null; parent = parent.getParent() )
+        {
+            if ( parent == ancestor )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testPassAfterDeferredPassStartsNewTraversal()
+        throws Exception
+    {
+        DependencyNode root = newGraph( 2, 2 );
+        List<String> log = new ArrayList<String>();
+
+        RecordingTransformer deferred = new RecordingTransformer( "A", log, true );
+        RecordingTransformer immediate = new RecordingTransformer( "B", log, false );
+        RecordingTransformer fused = new RecordingTransformer( "C", log, false );
+
+        new ChainedDependencyGraphTransformer( deferred, immediate, fused ).transformGraph( root );
+
+        List<String> expected = new ArrayList<String>();
+        for ( DependencyNode node : preOrder( root ) )
+        {
+            expected.add( "A:" + node );
+        }
+        expected.add( "A:complete" );
+        for ( DependencyNode node : preOrder( root ) )
+        {
+            expected.add( "B:" + node );
+            expected.add( "C:" + node );
+        }
+        expected.add( "B:complete" );
+        expected.add( "C:complete" );
+        assertEquals( expected, log );
+    }
+
+    /**
+     * A transformer with a single pass that logs the nodes it enters and its completion.
+     */
+    static class RecordingTransformer
+        implements FusibleDependencyGraphTransformer
+    {
+
+        private final String name;
+
+        private final List<String> log;
+
+        private final boolean deferred;
+
+        public RecordingTransformer( String name, List<String> log, boolean deferred )
+        {
+            this.name = name;
+            this.log = log;
+            this.deferred = deferred;
+        }
+
+        boolean enter( DependencyNode node )
+        {
+            return true;
+        }
+
+        public DependencyNode transformGraph( DependencyNode node )
+            throws RepositoryException
+        {
+            return new ChainedDependencyGraphTransformer( this ).transformGraph( node );
+        }
+
+        public List<TransformationPass> newPasses( TransformationContext context )
+        {
+            return Collections.<TransformationPass> singletonList( new TransformationPass()
+            {
+                public boolean visitEnter( DependencyNode node )
+                {
+                    log.add( name + ":" + node );
+                    return enter( node );
+                }
+
+                public void visitLeave( DependencyNode node )
+                {
+                }
+
+                public void complete()
+                {
+                    log.add( name + ":complete" );
+                }
+
+                public boolean isDeferred()
+                {
+                    return deferred;
+                }
+
+                public boolean isPruning()
+                {
+                    return false;
+                }
+            } );
+        }
+
+    }
+
+}
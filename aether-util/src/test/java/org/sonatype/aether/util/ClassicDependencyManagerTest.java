@@ -0,0 +1,98 @@
+package org.sonatype.aether.util;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.sonatype.aether.DefaultArtifact;
+import org.sonatype.aether.Dependency;
+import org.sonatype.aether.DependencyManagement;
+import org.sonatype.aether.DependencyManager;
+import org.sonatype.aether.Exclusion;
+import org.sonatype.aether.util.graph.manager.ClassicDependencyManager;
+
+/**
+ * @author Benjamin Bentmann
+ */
+public class ClassicDependencyManagerTest
+{
+
+    private Dependency newDependency( String artifactId, String version, String scope, Exclusion... exclusions )
+    {
+        return new Dependency( new DefaultArtifact( "test", artifactId, "jar", version ), scope, false,
+                               Arrays.asList( exclusions ) );
+    }
+
+    @Test
+    public void testManagementAppliesFromDepthTwo()
+    {
+        List<Dependency> managed = Arrays.asList( newDependency( "a", "1.0", "runtime" ) );
+
+        DependencyManager manager = new ClassicDependencyManager();
+        manager = manager.deriveChildManager( null, managed );
+        assertNull( manager.manageDependency( newDependency( "a", "0.1", "compile" ) ) );
+
+        manager = manager.deriveChildManager( null, Collections.<Dependency> emptyList() );
+        DependencyManagement management = manager.manageDependency( newDependency( "a", "0.1", "compile" ) );
+        assertNotNull( management );
+        assertEquals( "1.0", management.getVersion() );
+        assertEquals( "runtime", management.getScope() );
+
+        assertNull( manager.manageDependency( newDependency( "b", "0.1", "compile" ) ) );
+    }
+
+    @Test
+    public void testFirstManagementWins()
+    {
+        DependencyManager manager = new ClassicDependencyManager();
+        manager =
+            manager.deriveChildManager( null, Arrays.asList( newDependency( "a", "1.0", "" ),
+                                                             newDependency( "a", "2.0", "test" ) ) );
+        manager = manager.deriveChildManager( null, Collections.<Dependency> emptyList() );
+
+        DependencyManagement management = manager.manageDependency( newDependency( "a", "0.1", "compile" ) );
+        assertEquals( "1.0", management.getVersion() );
+        assertEquals( "test", management.getScope() );
+    }
+
+    @Test
+    public void testDerivedExclusionsDoNotAffectParent()
+    {
+        Exclusion x = new Exclusion( "test", "x", "", "jar" );
+        Exclusion y = new Exclusion( "test", "y", "", "jar" );
+
+        DependencyManager root = new ClassicDependencyManager();
+        DependencyManager parent = root.deriveChildManager( null, Arrays.asList( newDependency( "a", "", "", x ) ) );
+
+        DependencyManager child1 = parent.deriveChildManager( null, Collections.<Dependency> emptyList() );
+        DependencyManager child2 = parent.deriveChildManager( null, Collections.<Dependency> emptyList() );
+        assertEquals( child1, child2 );
+        assertEquals( child1.hashCode(), child2.hashCode() );
+
+        DependencyManager other = root.deriveChildManager( null, Arrays.asList( newDependency( "a", "", "", x, y ) ) );
+        assertFalse( parent.equals( other ) );
+
+        DependencyManagement management = parent.manageDependency( newDependency( "a", "1.0", "compile" ) );
+        assertEquals( Arrays.asList( x ), new ArrayList<Exclusion>( management.getExclusions() ) );
+        management = other.manageDependency( newDependency( "a", "1.0", "compile" ) );
+        assertEquals( Arrays.asList( x, y ), new ArrayList<Exclusion>( management.getExclusions() ) );
+    }
+
+}
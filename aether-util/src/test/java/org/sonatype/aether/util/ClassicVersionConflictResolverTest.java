@@ -0,0 +1,110 @@
+package org.sonatype.aether.util;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.sonatype.aether.DefaultArtifact;
+import org.sonatype.aether.Dependency;
+import org.sonatype.aether.DependencyNode;
+import org.sonatype.aether.UnsolvableVersionConflictException;
+import org.sonatype.aether.VersionConstraint;
+import org.sonatype.aether.util.graph.DefaultDependencyNode;
+import org.sonatype.aether.util.graph.transformer.ClassicVersionConflictResolver;
+import org.sonatype.aether.util.graph.transformer.ConflictMarker;
+import org.sonatype.aether.util.version.MavenVersion;
+import org.sonatype.aether.util.version.MavenVersionRange;
+
+/**
+ * @author Benjamin Bentmann
+ */
+public class ClassicVersionConflictResolverTest
+{
+
+    private static DependencyNode node( DependencyNode parent, String artifactId, String version, String lower,
+                                        String upper )
+    {
+        DefaultDependencyNode node =
+            new DefaultDependencyNode( new Dependency( new DefaultArtifact( "gid", artifactId, "jar", version ),
+                                                       "compile" ), parent );
+        node.setVersion( new MavenVersion( version ) );
+        VersionConstraint constraint = new VersionConstraint();
+        constraint.setPreferredVersion( node.getVersion() );
+        if ( lower != null )
+        {
+            constraint.addRange( new MavenVersionRange( new MavenVersion( lower ), true, new MavenVersion( upper ),
+                                                        false ) );
+        }
+        node.setVersionConstraint( constraint );
+        if ( parent != null )
+        {
+            parent.getChildren().add( node );
+        }
+        return node;
+    }
+
+    private static DependencyNode resolve( DependencyNode root )
+        throws Exception
+    {
+        return new ClassicVersionConflictResolver().transformGraph( new ConflictMarker().transformGraph( root ) );
+    }
+
+    @Test
+    public void testNearestWins()
+        throws Exception
+    {
+        DependencyNode root = new DefaultDependencyNode( null );
+        DependencyNode a = node( root, "a", "1", null, null );
+        node( a, "b", "1", null, null );
+        DependencyNode b = node( root, "b", "2", null, null );
+        node( root, "b", "3", null, null );
+
+        root = resolve( root );
+
+        assertEquals( 2, root.getChildren().size() );
+        assertSame( a, root.getChildren().get( 0 ) );
+        assertSame( b, root.getChildren().get( 1 ) );
+        assertEquals( 0, a.getChildren().size() );
+    }
+
+    @Test
+    public void testRangeOverridesNearest()
+        throws Exception
+    {
+        DependencyNode root = new DefaultDependencyNode( null );
+        DependencyNode x = node( root, "x", "1", null, null );
+        DependencyNode a = node( x, "a", "2", "2", "3" );
+        node( root, "a", "1", null, null );
+
+        root = resolve( root );
+
+        assertEquals( 1, root.getChildren().size() );
+        assertSame( x, root.getChildren().get( 0 ) );
+        assertEquals( 1, x.getChildren().size() );
+        assertSame( a, x.getChildren().get( 0 ) );
+    }
+
+    @Test( expected = UnsolvableVersionConflictException.class )
+    public void testUnsolvableConflict()
+        throws Exception
+    {
+        DependencyNode root = new DefaultDependencyNode( null );
+        node( root, "a", "2", "2", "3" );
+        node( root, "a", "2", "3", "4" );
+
+        resolve( root );
+    }
+
+}
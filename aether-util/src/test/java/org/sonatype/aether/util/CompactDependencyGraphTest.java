@@ -0,0 +1,146 @@
+package org.sonatype.aether.util;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+import org.sonatype.aether.DependencyNode;
+import org.sonatype.aether.DependencyVisitor;
+import org.sonatype.aether.util.graph.CompactDependencyGraph;
+
+/**
+ * @author Benjamin Bentmann
+ */
+public class CompactDependencyGraphTest
+{
+
+    private DependencyNode newGraph()
+    {
+        DependencyNode root = new NodeBuilder().artifactId( "root" ).build();
+        DependencyNode a = new NodeBuilder().artifactId( "a" ).parent( root ).context( "test" ).build();
+        DependencyNode b = new NodeBuilder().artifactId( "b" ).parent( root ).reloc( "reloc" ).build();
+        DependencyNode c = new NodeBuilder().artifactId( "c" ).parent( a ).scope( "runtime" ).build();
+        DependencyNode d = new NodeBuilder().artifactId( "c" ).parent( b ).scope( "runtime" ).build();
+        root.getChildren().add( a );
+        root.getChildren().add( b );
+        a.getChildren().add( c );
+        b.getChildren().add( d );
+        return root;
+    }
+
+    private void assertEqualNodes( DependencyNode expected, DependencyNode actual )
+    {
+        assertEquals( expected.getDependency(), actual.getDependency() );
+        assertEquals( expected.getVersion(), actual.getVersion() );
+        assertEquals( expected.getVersionConstraint(), actual.getVersionConstraint() );
+        assertEquals( expected.getContext(), actual.getContext() );
+        assertEquals( expected.getRelocations(), actual.getRelocations() );
+        assertEquals( expected.getAliases(), actual.getAliases() );
+        assertEquals( expected.getRepositories(), actual.getRepositories() );
+        assertEquals( expected.getPremanagedVersion(), actual.getPremanagedVersion() );
+        assertEquals( expected.getPremanagedScope(), actual.getPremanagedScope() );
+        assertEquals( expected.getDepth(), actual.getDepth() );
+
+        List<DependencyNode> children = actual.getChildren();
+        assertEquals( expected.getChildren().size(), children.size() );
+        for ( int i = 0; i < children.size(); i++ )
+        {
+            assertEquals( actual, children.get( i ).getParent() );
+            assertEqualNodes( expected.getChildren().get( i ), children.get( i ) );
+        }
+    }
+
+    @Test
+    public void testStructure()
+    {
+        DependencyNode root = newGraph();
+        CompactDependencyGraph graph = CompactDependencyGraph.newInstance( root );
+
+        assertEquals( 5, graph.getNodeCount() );
+        assertEquals( 4, graph.getDependencyCount() );
+        assertEquals( 5, graph.getSubtreeSize( 0 ) );
+        assertEquals( -1, graph.getParent( 0 ) );
+        assertNull( graph.getRoot().getParent() );
+        assertEquals( graph.getRoot(), graph.getNode( 0 ) );
+        assertEqualNodes( root, graph.getRoot() );
+    }
+
+    @Test
+    public void testMutators()
+    {
+        CompactDependencyGraph graph = CompactDependencyGraph.newInstance( newGraph() );
+
+        DependencyNode c = graph.getRoot().getChildren().get( 0 ).getChildren().get( 0 );
+        DependencyNode d = graph.getRoot().getChildren().get( 1 ).getChildren().get( 0 );
+        assertEquals( c.getDependency(), d.getDependency() );
+
+        c.setScope( "test" ).setContext( "compile" ).setConflictId( "c" );
+        assertEquals( "test", c.getDependency().getScope() );
+        assertEquals( "compile", c.getContext() );
+        assertEquals( "c", c.getConflictId() );
+        assertEquals( "runtime", d.getDependency().getScope() );
+        assertEquals( "", d.getContext() );
+        assertNull( d.getConflictId() );
+    }
+
+    @Test
+    public void testMutatorsReuseTableEntries()
+    {
+        final CompactDependencyGraph graph = CompactDependencyGraph.newInstance( newGraph() );
+        assertEquals( 4, graph.getDependencyCount() );
+
+        DependencyVisitor resolver = new DependencyVisitor()
+        {
+            public boolean visitEnter( DependencyNode node )
+            {
+                node.setArtifact( node.getDependency().getArtifact().setFile( new File( "target", graph.toString() ) ) );
+                return true;
+            }
+
+            public boolean visitLeave( DependencyNode node )
+            {
+                return true;
+            }
+        };
+        for ( int i = 0; i < 10; i++ )
+        {
+            graph.getRoot().accept( resolver );
+            assertEquals( 4, graph.getDependencyCount() );
+        }
+
+        DependencyNode c = graph.getNode( 2 );
+        for ( int i = 0; i < 10; i++ )
+        {
+            c.setScope( "scope-" + i ).setContext( "context-" + i );
+            assertEquals( 5, graph.getDependencyCount() );
+        }
+        c.setScope( "runtime" );
+        assertEquals( 4, graph.getDependencyCount() );
+        assertEquals( graph.getNode( 4 ).getDependency(), c.getDependency() );
+        assertEquals( "context-9", c.getContext() );
+        assertEquals( "", graph.getNode( 4 ).getContext() );
+    }
+
+    @Test( expected = UnsupportedOperationException.class )
+    public void testChildrenAreReadOnly()
+    {
+        CompactDependencyGraph graph = CompactDependencyGraph.newInstance( newGraph() );
+        graph.getRoot().getChildren().remove( 0 );
+    }
+
+}
@@ -15,6 +15,8 @@ package org.sonatype.aether.util;
 
 import static org.junit.Assert.*;
 
+import java.util.Collection;
+
 import org.junit.Test;
 import org.sonatype.aether.DependencyNode;
 import org.sonatype.aether.util.graph.transformer.ConflictMarker;
@@ -109,4 +111,24 @@ public class ConflictMarkerTest
         assertSame( root.getChildren().get( 1 ).getConflictId(), root.getChildren().get( 2 ).getConflictId() );
     }
 
+    @Test
+    public void testTransitiveMerge()
+        throws Exception
+    {
+        DependencyNode root = new NodeBuilder().build();
+        root.getChildren().add( new NodeBuilder().parent( root ).artifactId( "a" ).reloc( "x" ).build() );
+        root.getChildren().add( new NodeBuilder().parent( root ).artifactId( "b" ).reloc( "y" ).build() );
+        root.getChildren().add( new NodeBuilder().parent( root ).artifactId( "d" ).build() );
+        root.getChildren().add( new NodeBuilder().parent( root ).artifactId( "c" ).reloc( "x" ).reloc( "y" ).build() );
+
+        root = new ConflictMarker().transformGraph( root );
+
+        Object conflictId = root.getChildren().get( 0 ).getConflictId();
+        assertTrue( conflictId instanceof Collection );
+        assertEquals( 5, ( (Collection<?>) conflictId ).size() );
+        assertSame( conflictId, root.getChildren().get( 1 ).getConflictId() );
+        assertSame( conflictId, root.getChildren().get( 3 ).getConflictId() );
+        assertEquals( 1, ( (Collection<?>) root.getChildren().get( 2 ).getConflictId() ).size() );
+    }
+
 }
@@ -0,0 +1,173 @@
+package org.sonatype.aether.util;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import org.sonatype.aether.DefaultArtifact;
+import org.sonatype.aether.Dependency;
+import org.sonatype.aether.DependencyNode;
+import org.sonatype.aether.DependencyVisitor;
+import org.sonatype.aether.util.graph.DefaultDependencyNode;
+import org.sonatype.aether.util.graph.IterativeDependencyTraversal;
+
+/**
+ * Compares the explicit-stack traversal of dependency graphs with the former recursive traversal. For each depth, a
+ * synthetic graph is built whose spine has the given depth and whose spine nodes each carry a few leaf children. Both
+ * traversals run on a thread with a small stack, like the worker threads of some containers, and a traversal that
+ * overflows the stack is reported as such. This is not a unit test, run it via its main method.
+ * 
+ * @author Benjamin Bentmann
+ */
+public class DependencyTraversalBenchmark
+{
+
+    private static final long STACK_SIZE = 256 * 1024;
+
+    private static final int LEAVES = 3;
+
+    private static final int NODES_PER_ROUND = 2000000;
+
+    public static void main( String[] args )
+        throws Exception
+    {
+        final int[] depths = { 10, 100, 1000, 5000, 20000 };
+
+        Thread thread = new Thread( null, new Runnable()
+        {
+            public void run()
+            {
+                // warm up
+                for ( int depth : depths )
+                {
+                    measure( depth, 0.1 );
+                }
+
+                System.out.println( "depth  recursion[ns/node]  iterative[ns/node]" );
+                for ( int depth : depths )
+                {
+                    double[] times = measure( depth, 1 );
+                    System.out.println( String.format( "%5d  %18s  %18s", depth, format( times[0] ),
+                                                       format( times[1] ) ) );
+                }
+            }
+        }, "benchmark", STACK_SIZE );
+        thread.start();
+        thread.join();
+    }
+
+    private static String format( double time )
+    {
+        return ( time < 0 ) ? "stack overflow" : String.format( "%.1f", time );
+    }
+
+    private static double[] measure( int depth, double scale )
+    {
+        DependencyNode root = newGraph( depth );
+        int nodes = depth * ( LEAVES + 1 ) + 1;
+        int rounds = Math.max( 1, (int) ( NODES_PER_ROUND * scale / nodes ) );
+
+        double recursion;
+        try
+        {
+            long start = System.nanoTime();
+            for ( int r = 0; r < rounds; r++ )
+            {
+                recurse( root, new CountingVisitor() );
+            }
+            recursion = ( System.nanoTime() - start ) / (double) rounds / nodes;
+        }
+        catch ( StackOverflowError e )
+        {
+            recursion = -1;
+        }
+
+        CountingVisitor visitor = new CountingVisitor();
+        long start = System.nanoTime();
+        for ( int r = 0; r < rounds; r++ )
+        {
+            IterativeDependencyTraversal.traverse( root, visitor );
+        }
+        double iterative = ( System.nanoTime() - start ) / (double) rounds / nodes;
+
+        if ( visitor.entered != visitor.left || visitor.entered != (long) rounds * nodes )
+        {
+            throw new IllegalStateException( "unbalanced traversal" );
+        }
+
+        return new double[] { recursion, iterative };
+    }
+
+    private static DependencyNode newGraph( int depth )
+    {
+        DependencyNode root = newNode( "root", null );
+        DependencyNode node = root;
+        for ( int i = 0; i < depth; i++ )
+        {
+            for ( int j = 0; j < LEAVES; j++ )
+            {
+                node.getChildren().add( newNode( "leaf-" + i + "-" + j, node ) );
+            }
+            DependencyNode child = newNode( "spine-" + i, node );
+            node.getChildren().add( child );
+            node = child;
+        }
+        return root;
+    }
+
+    private static DependencyNode newNode( String artifactId, DependencyNode parent )
+    {
+        return new DefaultDependencyNode( new Dependency( new DefaultArtifact( "org.example", artifactId, "jar",
+                                                                               "1.0" ), "compile" ), parent );
+    }
+
+    /*
+     * The former traversal of DependencyNode.accept().
+     */
+    private static boolean recurse( DependencyNode node, DependencyVisitor visitor )
+    {
+        if ( visitor.visitEnter( node ) )
+        {
+            for ( DependencyNode child : node.getChildren() )
+            {
+                if ( !recurse( child, visitor ) )
+                {
+                    break;
+                }
+            }
+        }
+        return visitor.visitLeave( node );
+    }
+
+    static final class CountingVisitor
+        implements DependencyVisitor
+    {
+
+        long entered;
+
+        long left;
+
+        public boolean visitEnter( DependencyNode node )
+        {
+            entered++;
+            return true;
+        }
+
+        public boolean visitLeave( DependencyNode node )
+        {
+            left++;
+            return true;
+        }
+
+    }
+
+}
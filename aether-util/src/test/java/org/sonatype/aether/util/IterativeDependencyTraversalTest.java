@@ -0,0 +1,192 @@
+package org.sonatype.aether.util;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.sonatype.aether.DependencyNode;
+import org.sonatype.aether.DependencyVisitor;
+import org.sonatype.aether.util.graph.IterativeDependencyTraversal;
+
+/**
+ * @author Benjamin Bentmann
+ */
+public class IterativeDependencyTraversalTest
+{
+
+    private DependencyNode newGraph()
+    {
+        DependencyNode root = new NodeBuilder().artifactId( "root" ).build();
+        DependencyNode a = new NodeBuilder().artifactId( "a" ).parent( root ).build();
+        DependencyNode b = new NodeBuilder().artifactId( "b" ).parent( root ).build();
+        DependencyNode c = new NodeBuilder().artifactId( "c" ).parent( root ).build();
+        DependencyNode d = new NodeBuilder().artifactId( "d" ).parent( a ).build();
+        DependencyNode e = new NodeBuilder().artifactId( "e" ).parent( a ).build();
+        DependencyNode f = new NodeBuilder().artifactId( "f" ).parent( b ).build();
+        DependencyNode g = new NodeBuilder().artifactId( "g" ).parent( b ).build();
+        DependencyNode h = new NodeBuilder().artifactId( "h" ).parent( d ).build();
+        root.getChildren().add( a );
+        root.getChildren().add( b );
+        root.getChildren().add( c );
+        a.getChildren().add( d );
+        a.getChildren().add( e );
+        b.getChildren().add( f );
+        b.getChildren().add( g );
+        d.getChildren().add( h );
+        return root;
+    }
+
+    private static boolean recurse( DependencyNode node, DependencyVisitor visitor )
+    {
+        if ( visitor.visitEnter( node ) )
+        {
+            for ( DependencyNode child : node.getChildren() )
+            {
+                if ( !recurse( child, visitor ) )
+                {
+                    break;
+                }
+            }
+        }
+        return visitor.visitLeave( node );
+    }
+
+    @Test
+    public void testSameOrderAsRecursion()
+    {
+        DependencyNode root = newGraph();
+
+        RecordingVisitor expected = new RecordingVisitor( null, null );
+        assertTrue( recurse( root, expected ) );
+
+        RecordingVisitor actual = new RecordingVisitor( null, null );
+        assertTrue( IterativeDependencyTraversal.traverse( root, actual ) );
+
+        assertEquals( expected.events, actual.events );
+        assertEquals( "+root +a +d +h -h -d +e -e -a +b +f -f +g -g -b +c -c -root", actual.toString() );
+    }
+
+    @Test
+    public void testSkipChildren()
+    {
+        DependencyNode root = newGraph();
+
+        RecordingVisitor expected = new RecordingVisitor( "a", null );
+        recurse( root, expected );
+
+        RecordingVisitor actual = new RecordingVisitor( "a", null );
+        IterativeDependencyTraversal.traverse( root, actual );
+
+        assertEquals( expected.events, actual.events );
+        assertEquals( "+root +a -a +b +f -f +g -g -b +c -c -root", actual.toString() );
+    }
+
+    @Test
+    public void testSkipSiblings()
+    {
+        DependencyNode root = newGraph();
+
+        RecordingVisitor expected = new RecordingVisitor( null, "d" );
+        recurse( root, expected );
+
+        RecordingVisitor actual = new RecordingVisitor( null, "d" );
+        IterativeDependencyTraversal.traverse( root, actual );
+
+        assertEquals( expected.events, actual.events );
+        assertEquals( "+root +a +d +h -h -d -a +b +f -f +g -g -b +c -c -root", actual.toString() );
+    }
+
+    @Test
+    public void testSkipSiblingsOfRoot()
+    {
+        DependencyNode root = newGraph();
+
+        assertFalse( IterativeDependencyTraversal.traverse( root, new RecordingVisitor( "root", "root" ) ) );
+        assertFalse( IterativeDependencyTraversal.traverse( root, new RecordingVisitor( null, "root" ) ) );
+    }
+
+    @Test
+    public void testDeepGraph()
+    {
+        DependencyNode root = new NodeBuilder().artifactId( "root" ).build();
+        DependencyNode node = root;
+        for ( int i = 0; i < 100000; i++ )
+        {
+            DependencyNode child = new NodeBuilder().artifactId( "a" + i ).parent( node ).build();
+            node.getChildren().add( child );
+            node = child;
+        }
+
+        RecordingVisitor visitor = new RecordingVisitor( null, null );
+        assertTrue( root.accept( visitor ) );
+        assertEquals( 200002, visitor.events.size() );
+        assertEquals( "+root", visitor.events.get( 0 ) );
+        assertEquals( "-root", visitor.events.get( visitor.events.size() - 1 ) );
+    }
+
+    static class RecordingVisitor
+        implements DependencyVisitor
+    {
+
+        final List<String> events = new ArrayList<String>();
+
+        private final String skipChildren;
+
+        private final String skipSiblings;
+
+        public RecordingVisitor( String skipChildren, String skipSiblings )
+        {
+            this.skipChildren = skipChildren;
+            this.skipSiblings = skipSiblings;
+        }
+
+        private String getId( DependencyNode node )
+        {
+            return node.getDependency().getArtifact().getArtifactId();
+        }
+
+        public boolean visitEnter( DependencyNode node )
+        {
+            events.add( "+" + getId( node ) );
+            return !getId( node ).equals( skipChildren );
+        }
+
+        public boolean visitLeave( DependencyNode node )
+        {
+            events.add( "-" + getId( node ) );
+            return !getId( node ).equals( skipSiblings );
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder buffer = new StringBuilder( 256 );
+            for ( String event : events )
+            {
+                if ( buffer.length() > 0 )
+                {
+                    buffer.append( ' ' );
+                }
+                buffer.append( event );
+            }
+            return buffer.toString();
+        }
+
+    }
+
+}
@@ -179,6 +179,23 @@ public class MavenVersionTest
         checkVersionsOrder( "2.0.1-xyz", "2.0.1-123" );
     }
 
+    public void testCommonAndExoticVersionsMixed()
+    {
+        checkVersionsEqual( "1.0.0.0", "1" );
+        checkVersionsEqual( "1.0.0-ga-0", "1.0.0.0-final" );
+        checkVersionsEqual( "1-beta2", "1.0.0.0-beta-2" );
+        checkVersionsEqual( "1-ga-1", "1-GA1" );
+        checkVersionsEqual( "1.2.99999999999999999999", "1.2.099999999999999999999" );
+
+        checkVersionsOrder( "1.0.0.1", "1.0.1-beta" );
+        checkVersionsOrder( "1.0.1-beta", "1.0.1-beta.1" );
+        checkVersionsOrder( "1.0-sp-1", "1.0-1" );
+        checkVersionsOrder( "1.0-sp", "1.0-xyz" );
+        checkVersionsOrder( "1.0", "1.0-xyz" );
+        checkVersionsOrder( "1.2.999999999999999999", "1.2.1000000000000000000" );
+        checkVersionsOrder( "1.2.999999999999999999", "1.2.99999999999999999999" );
+    }
+
     public void testLocaleIndependent()
     {
         Locale orig = Locale.getDefault();
@@ -48,6 +48,10 @@ class NodeBuilder
 
     private List<Artifact> relocations = new ArrayList<Artifact>();
 
+    private List<Artifact> aliases = new ArrayList<Artifact>();
+
+    private String premanagedScope;
+
     public NodeBuilder artifactId( String artifactId )
     {
         this.artifactId = artifactId;
@@ -86,6 +90,19 @@ class NodeBuilder
         return this;
     }
 
+    public NodeBuilder alias( String artifactId )
+    {
+        Artifact alias = new DefaultArtifact( groupId, artifactId, classifier, ext, version );
+        aliases.add( alias );
+        return this;
+    }
+
+    public NodeBuilder premanagedScope( String premanagedScope )
+    {
+        this.premanagedScope = premanagedScope;
+        return this;
+    }
+
     public DependencyNode build()
     {
         Dependency dependency = null;
@@ -97,6 +114,8 @@ class NodeBuilder
         DefaultDependencyNode node = new DefaultDependencyNode( dependency, parent );
         node.setContext( context );
         node.setRelocations( relocations );
+        node.setAliases( aliases );
+        node.setPremanagedScope( premanagedScope );
         return node;
     }
 
@@ -0,0 +1,358 @@
+package org.sonatype.aether.util;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.sonatype.aether.DependencyNode;
+import org.sonatype.aether.DependencyVisitor;
+import org.sonatype.aether.util.graph.ParallelDependencyTraversal;
+import org.sonatype.aether.util.graph.transformer.ChainedDependencyGraphTransformer;
+import org.sonatype.aether.util.graph.transformer.ConflictMarker;
+import org.sonatype.aether.util.graph.transformer.JavaEffectiveScopeCalculator;
+import org.sonatype.aether.util.graph.transformer.TransformationContext;
+
+/**
+ * @author Benjamin Bentmann
+ */
+public class ParallelDependencyTraversalTest
+{
+
+    private static final String[] SCOPES = { "compile", "runtime", "provided", "test", "system", "compile", "runtime" };
+
+    private static final int THREADS = 4;
+
+    /**
+     * Builds a tree with the specified depth and fan-out whose nodes draw their artifacts from a small pool such that
+     * they conflict across levels, some nodes are relocated, aliased or have a managed scope.
+     */
+    private DependencyNode newGraph( int depth, int fanOut )
+    {
+        DependencyNode root = new NodeBuilder().build();
+        addChildren( root, 1, 0, depth, fanOut );
+        return root;
+    }
+
+    private void addChildren( DependencyNode parent, int level, int seed, int depth, int fanOut )
+    {
+        if ( level > depth )
+        {
+            return;
+        }
+        for ( int i = 0; i < fanOut; i++ )
+        {
+            int n = seed * fanOut + i;
+            NodeBuilder builder = new NodeBuilder().parent( parent );
+            builder.artifactId( "a" + ( ( level * 7 + n * 3 ) % 11 ) );
+            builder.scope( SCOPES[( n + level ) % SCOPES.length] );
+            if ( n % 5 == 1 )
+            {
+                builder.reloc( "a" + ( ( n + 4 ) % 11 ) );
+            }
+            if ( n % 7 == 3 )
+            {
+                builder.alias( "x" + ( n % 4 ) );
+            }
+            if ( n % 13 == 6 )
+            {
+                builder.premanagedScope( "test" );
+            }
+            DependencyNode child = builder.build();
+            parent.getChildren().add( child );
+            addChildren( child, level + 1, n, depth, fanOut );
+        }
+    }
+
+    private List<DependencyNode> preOrder( DependencyNode root )
+    {
+        final List<DependencyNode> nodes = new ArrayList<DependencyNode>();
+        root.accept( new DependencyVisitor()
+        {
+            public boolean visitEnter( DependencyNode node )
+            {
+                nodes.add( node );
+                return true;
+            }
+
+            public boolean visitLeave( DependencyNode node )
+            {
+                return true;
+            }
+        } );
+        return nodes;
+    }
+
+    private void assertSameAnalysis( DependencyNode expected, DependencyNode actual )
+    {
+        List<DependencyNode> expectedNodes = preOrder( expected );
+        List<DependencyNode> actualNodes = preOrder( actual );
+        assertEquals( expectedNodes.size(), actualNodes.size() );
+        for ( int i = 0; i < expectedNodes.size(); i++ )
+        {
+            DependencyNode e = expectedNodes.get( i );
+            DependencyNode a = actualNodes.get( i );
+            assertEquals( "conflict id of node " + i, e.getConflictId(), a.getConflictId() );
+            if ( e.getDependency() != null )
+            {
+                assertEquals( "scope of node " + i + " " + e, e.getDependency().getScope(),
+                              a.getDependency().getScope() );
+            }
+        }
+    }
+
+    @Test
+    public void testConflictMarkerYieldsSameConflictIds()
+        throws Exception
+    {
+        DependencyNode sequential = new ConflictMarker().transformGraph( newGraph( 5, 4 ) );
+        DependencyNode parallel = new ConflictMarker( THREADS ).transformGraph( newGraph( 5, 4 ) );
+
+        assertSameAnalysis( sequential, parallel );
+        assertTrue( ( (Collection<?>) sequential.getChildren().get( 1 ).getConflictId() ).size() > 1 );
+    }
+
+    @Test
+    public void testScopeCalculatorYieldsSameScopes()
+        throws Exception
+    {
+        DependencyNode original = newGraph( 5, 4 );
+        DependencyNode sequential = new ConflictMarker().transformGraph( newGraph( 5, 4 ) );
+        sequential = new JavaEffectiveScopeCalculator().transformGraph( sequential );
+        DependencyNode parallel = new ConflictMarker( THREADS ).transformGraph( newGraph( 5, 4 ) );
+        parallel = new JavaEffectiveScopeCalculator( THREADS ).transformGraph( parallel );
+
+        assertSameAnalysis( sequential, parallel );
+
+        List<DependencyNode> before = preOrder( original );
+        List<DependencyNode> after = preOrder( sequential );
+        int adjusted = 0;
+        for ( int i = 1; i < before.size(); i++ )
+        {
+            if ( !before.get( i ).getDependency().getScope().equals( after.get( i ).getDependency().getScope() ) )
+            {
+                adjusted++;
+            }
+        }
+        assertTrue( "graph does not exercise scope resolution", adjusted > 0 );
+    }
+
+    @Test
+    public void testVisitorsAreReturnedInPreOrder()
+    {
+        DependencyNode root = newGraph( 5, 4 );
+        List<RecordingVisitor> visitors =
+            new ParallelDependencyTraversal( THREADS ).traverse( root, RecordingVisitor.FACTORY );
+
+        assertTrue( visitors.size() > 1 );
+        List<DependencyNode> nodes = new ArrayList<DependencyNode>();
+        for ( RecordingVisitor visitor : visitors )
+        {
+            nodes.addAll( visitor.nodes );
+        }
+        assertEquals( preOrder( root ), nodes );
+    }
+
+    @Test
+    public void testConfiguredThreadsYieldSameAnalysis()
+        throws Exception
+    {
+        Map<String, String> config = new HashMap<String, String>();
+        config.put( ChainedDependencyGraphTransformer.CONFIG_PROP_THREADS, Integer.toString( THREADS ) );
+        assertEquals( THREADS, new TransformationContext( config ).getThreads() );
+        assertEquals( 1, new TransformationContext().getThreads() );
+
+        ChainedDependencyGraphTransformer chain =
+            new ChainedDependencyGraphTransformer( new ConflictMarker(), new JavaEffectiveScopeCalculator() );
+        DependencyNode sequential = chain.transformGraph( newGraph( 5, 4 ) );
+        DependencyNode parallel = chain.transformGraph( newGraph( 5, 4 ), config );
+
+        assertSameAnalysis( sequential, parallel );
+    }
+
+    @Test
+    public void testSmallGraphsAreTraversedSequentially()
+    {
+        List<RecordingVisitor> visitors =
+            new ParallelDependencyTraversal( THREADS ).traverse( newGraph( 3, 4 ), RecordingVisitor.FACTORY );
+        assertEquals( 1, visitors.size() );
+
+        visitors =
+            new ParallelDependencyTraversal( THREADS, 0, null ).traverse( newGraph( 3, 4 ), RecordingVisitor.FACTORY );
+        assertTrue( visitors.size() > 1 );
+    }
+
+    @Test
+    public void testNodesAreLeftInPostOrder()
+    {
+        DependencyNode root = newGraph( 5, 4 );
+        final AtomicInteger clock = new AtomicInteger();
+        final Map<DependencyNode, Integer> entered =
+            Collections.synchronizedMap( new IdentityHashMap<DependencyNode, Integer>() );
+        final Map<DependencyNode, Integer> left =
+            Collections.synchronizedMap( new IdentityHashMap<DependencyNode, Integer>() );
+
+        ParallelDependencyTraversal.VisitorFactory<DependencyVisitor> factory =
+            new ParallelDependencyTraversal.VisitorFactory<DependencyVisitor>()
+            {
+                public DependencyVisitor newVisitor( List<DependencyNode> parents )
+                {
+                    return new DependencyVisitor()
+                    {
+                        public boolean visitEnter( DependencyNode node )
+                        {
+                            entered.put( node, clock.incrementAndGet() );
+                            return true;
+                        }
+
+                        public boolean visitLeave( DependencyNode node )
+                        {
+                            left.put( node, clock.incrementAndGet() );
+                            return true;
+                        }
+                    };
+                }
+            };
+        new ParallelDependencyTraversal( THREADS ).traverse( root, factory );
+
+        List<DependencyNode> nodes = preOrder( root );
+        assertEquals( nodes.size(), left.size() );
+        for ( DependencyNode node : nodes )
+        {
+            for ( DependencyNode child : node.getChildren() )
+            {
+                assertTrue( entered.get( node ) < entered.get( child ) );
+                assertTrue( left.get( child ) < left.get( node ) );
+            }
+        }
+    }
+
+    @Test
+    public void testSkippedSiblingsAreLeftOut()
+    {
+        DependencyNode root = newGraph( 5, 4 );
+        final DependencyNode skipper = root.getChildren().get( 1 ).getChildren().get( 2 );
+        ParallelDependencyTraversal.VisitorFactory<RecordingVisitor> factory =
+            new ParallelDependencyTraversal.VisitorFactory<RecordingVisitor>()
+            {
+                public RecordingVisitor newVisitor( List<DependencyNode> parents )
+                {
+                    return new RecordingVisitor()
+                    {
+                        @Override
+                        public boolean visitLeave( DependencyNode node )
+                        {
+                            return node != skipper;
+                        }
+                    };
+                }
+            };
+
+        RecordingVisitor expected = factory.newVisitor( Collections.<DependencyNode> emptyList() );
+        root.accept( expected );
+
+        List<DependencyNode> nodes = new ArrayList<DependencyNode>();
+        for ( RecordingVisitor visitor : new ParallelDependencyTraversal( THREADS ).traverse( root, factory ) )
+        {
+            nodes.addAll( visitor.nodes );
+        }
+        assertEquals( expected.nodes, nodes );
+        assertTrue( nodes.size() < preOrder( root ).size() );
+    }
+
+    @Test
+    public void testWorkerExceptionReachesCaller()
+    {
+        DependencyNode root = newGraph( 5, 4 );
+        DependencyNode node = root;
+        for ( int i : new int[] { 2, 1, 0, 2, 1 } )
+        {
+            node = node.getChildren().get( i );
+        }
+        final DependencyNode leaf = node;
+        final IllegalStateException exception = new IllegalStateException( "visit failed" );
+        final List<Thread> threads = Collections.synchronizedList( new ArrayList<Thread>() );
+
+        ParallelDependencyTraversal.VisitorFactory<RecordingVisitor> factory =
+            new ParallelDependencyTraversal.VisitorFactory<RecordingVisitor>()
+            {
+                public RecordingVisitor newVisitor( List<DependencyNode> parents )
+                {
+                    return new RecordingVisitor()
+                    {
+                        @Override
+                        public boolean visitEnter( DependencyNode node )
+                        {
+                            if ( node == leaf )
+                            {
+                                threads.add( Thread.currentThread() );
+                                throw exception;
+                            }
+                            return super.visitEnter( node );
+                        }
+                    };
+                }
+            };
+
+        try
+        {
+            new ParallelDependencyTraversal( THREADS ).traverse( root, factory );
+            fail( "worker exception not propagated" );
+        }
+        catch ( IllegalStateException e )
+        {
+            assertSame( exception, e );
+        }
+        assertEquals( 1, threads.size() );
+        assertNotSame( Thread.currentThread(), threads.get( 0 ) );
+    }
+
+    static class RecordingVisitor
+        implements DependencyVisitor
+    {
+
+        static final ParallelDependencyTraversal.VisitorFactory<RecordingVisitor> FACTORY =
+            new ParallelDependencyTraversal.VisitorFactory<RecordingVisitor>()
+            {
+                public RecordingVisitor newVisitor( List<DependencyNode> parents )
+                {
+                    return new RecordingVisitor();
+                }
+            };
+
+        final List<DependencyNode> nodes = new ArrayList<DependencyNode>();
+
+        public boolean visitEnter( DependencyNode node )
+        {
+            nodes.add( node );
+            return true;
+        }
+
+        public boolean visitLeave( DependencyNode node )
+        {
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,131 @@
+package org.sonatype.aether.util;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * @author Benjamin Bentmann
+ */
+public class PersistentHashMapTest
+{
+
+    /**
+     * A key with a poor hash code to force collisions.
+     */
+    static class Key
+    {
+
+        final int id;
+
+        Key( int id )
+        {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            return obj instanceof Key && ( (Key) obj ).id == id;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return id % 7;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "k" + id;
+        }
+
+    }
+
+    @Test
+    public void testPutAndGet()
+    {
+        Map<Object, Object> expected = new HashMap<Object, Object>();
+        PersistentHashMap<Object, Object> map = PersistentHashMap.emptyMap();
+
+        for ( int i = 0; i < 5000; i++ )
+        {
+            Object key = ( i % 3 == 0 ) ? new Key( i ) : "key" + i;
+            expected.put( key, i );
+            map = map.put( key, i );
+        }
+
+        assertEquals( expected.size(), map.size() );
+        assertEquals( expected.hashCode(), map.hashCode() );
+        for ( Map.Entry<Object, Object> entry : expected.entrySet() )
+        {
+            assertTrue( map.containsKey( entry.getKey() ) );
+            assertEquals( entry.getValue(), map.get( entry.getKey() ) );
+        }
+        assertFalse( map.containsKey( "key0" ) );
+        assertFalse( map.containsKey( new Key( 5001 ) ) );
+
+        Map<Object, Object> actual = new HashMap<Object, Object>();
+        for ( Map.Entry<Object, Object> entry : map )
+        {
+            actual.put( entry.getKey(), entry.getValue() );
+        }
+        assertEquals( expected, actual );
+    }
+
+    @Test
+    public void testStructuralSharing()
+    {
+        PersistentHashMap<String, String> map = PersistentHashMap.emptyMap();
+        map = map.put( "a", "1" ).put( "b", "2" );
+
+        PersistentHashMap<String, String> left = map.put( "c", "3" );
+        PersistentHashMap<String, String> right = map.put( "a", "4" );
+
+        assertEquals( 2, map.size() );
+        assertEquals( "1", map.get( "a" ) );
+        assertFalse( map.containsKey( "c" ) );
+
+        assertEquals( 3, left.size() );
+        assertEquals( "3", left.get( "c" ) );
+
+        assertEquals( 2, right.size() );
+        assertEquals( "4", right.get( "a" ) );
+
+        assertSame( map, map.put( "a", "1" ) );
+    }
+
+    @Test
+    public void testEquals()
+    {
+        PersistentHashMap<Object, Object> map1 = PersistentHashMap.emptyMap();
+        PersistentHashMap<Object, Object> map2 = PersistentHashMap.emptyMap();
+        for ( int i = 0; i < 100; i++ )
+        {
+            map1 = map1.put( new Key( i ), i );
+            map2 = map2.put( new Key( 99 - i ), 99 - i );
+        }
+
+        assertEquals( map1, map2 );
+        assertEquals( map1.hashCode(), map2.hashCode() );
+        assertFalse( map1.equals( map2.put( new Key( 0 ), -1 ) ) );
+    }
+
+}
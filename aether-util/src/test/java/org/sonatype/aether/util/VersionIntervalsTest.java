@@ -0,0 +1,150 @@
+package org.sonatype.aether.util;
+
+/*
+ * Copyright (c) 2010 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0, 
+ * and you may not use this file except in compliance with the Apache License Version 2.0. 
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the Apache License Version 2.0 is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.sonatype.aether.Version;
+import org.sonatype.aether.VersionConstraint;
+import org.sonatype.aether.VersionRange;
+import org.sonatype.aether.util.version.MavenVersion;
+import org.sonatype.aether.util.version.MavenVersionRange;
+import org.sonatype.aether.util.version.VersionIntervals;
+
+/**
+ * @author Benjamin Bentmann
+ */
+public class VersionIntervalsTest
+{
+
+    private static Version v( String version )
+    {
+        return ( version != null ) ? new MavenVersion( version ) : null;
+    }
+
+    private static VersionRange range( String lower, boolean lowerInclusive, String upper, boolean upperInclusive )
+    {
+        return new MavenVersionRange( v( lower ), lowerInclusive, v( upper ), upperInclusive );
+    }
+
+    private static List<Version> versions( String... versions )
+    {
+        List<Version> result = new ArrayList<Version>();
+        for ( String version : versions )
+        {
+            result.add( v( version ) );
+        }
+        return result;
+    }
+
+    @Test
+    public void testContainsVersionMatchesRanges()
+    {
+        VersionConstraint constraint = new VersionConstraint();
+        constraint.addRange( range( "1.0", true, "2.0", false ) );
+        constraint.addRange( range( "1.5", false, "2.5", true ) );
+        constraint.addRange( range( "3.0", false, null, false ) );
+        constraint.addRange( range( "2.8-SNAPSHOT", true, "2.8-SNAPSHOT", true ) );
+
+        VersionIntervals intervals = VersionIntervals.of( constraint );
+
+        for ( Version version : versions( "0.9", "1.0", "1.0-SNAPSHOT", "1.7", "2.0", "2.5", "2.5.1", "2.8-SNAPSHOT",
+                                          "3.0", "3.0.1", "3.1-SNAPSHOT", "3.0-SNAPSHOT" ) )
+        {
+            assertEquals( version.toString(), constraint.containsVersion( version ),
+                          intervals.containsVersion( version ) );
+        }
+    }
+
+    @Test
+    public void testEmptyConstraintContainsEverything()
+    {
+        VersionIntervals intervals = VersionIntervals.of( new VersionConstraint() );
+        assertSame( VersionIntervals.ALL, intervals );
+        assertTrue( intervals.containsVersion( v( "1.0" ) ) );
+        assertTrue( intervals.containsVersion( v( "1.0-SNAPSHOT" ) ) );
+    }
+
+    @Test
+    public void testIntersect()
+    {
+        VersionIntervals a =
+            VersionIntervals.of( Arrays.asList( range( "1.0", true, "2.0", true ),
+                                                range( "3.0", true, "4.0", false ) ) );
+        VersionIntervals b = VersionIntervals.of( Arrays.asList( range( "1.5", false, "3.5", true ) ) );
+        VersionIntervals c = a.intersect( b );
+
+        assertEquals( versions( "1.5.1", "2.0", "3.0", "3.5" ),
+                      c.filterVersions( versions( "1.0", "1.5", "1.5.1", "2.0", "2.1", "3.0", "3.5", "3.6" ) ) );
+        assertFalse( c.containsVersion( v( "1.5" ) ) );
+        assertTrue( c.containsVersion( v( "3.2" ) ) );
+    }
+
+    @Test
+    public void testIntersectKeepsOnlyCommonSnapshotBounds()
+    {
+        VersionIntervals a =
+            VersionIntervals.of( Arrays.asList( range( "1.0-SNAPSHOT", true, "2.0-SNAPSHOT", true ) ) );
+        VersionIntervals b = VersionIntervals.of( Arrays.asList( range( "2.0-SNAPSHOT", false, null, false ) ) );
+        VersionIntervals c = a.intersect( b );
+
+        assertFalse( c.containsVersion( v( "1.0-SNAPSHOT" ) ) );
+        assertTrue( c.containsVersion( v( "2.0-SNAPSHOT" ) ) );
+    }
+
+    @Test
+    public void testGetHighestVersion()
+    {
+        VersionIntervals intervals =
+            VersionIntervals.of( Arrays.asList( range( null, false, "1.5", false ), range( "2.0", true, "2.0", true ),
+                                                range( "3.0-SNAPSHOT", true, "3.0", false ) ) );
+
+        List<Version> versions = versions( "1.0", "2.0", "3.0-SNAPSHOT", "3.0" );
+        assertEquals( "3.0-SNAPSHOT", String.valueOf( intervals.getHighestVersion( versions ) ) );
+        assertEquals( "2.0", String.valueOf( intervals.getHighestVersion( versions( "1.0", "2.0", "2.1", "3.0" ) ) ) );
+        assertEquals( "1.4", String.valueOf( intervals.getHighestVersion( versions( "1.4", "1.5", "1.6" ) ) ) );
+        assertNull( intervals.getHighestVersion( versions( "1.5", "1.6", "3.1" ) ) );
+        assertNull( intervals.getHighestVersion( Collections.<Version> emptyList() ) );
+    }
+
+    @Test
+    public void testForeignRangesAreCheckedAsIs()
+    {
+        VersionRange odd = new VersionRange()
+        {
+            public boolean containsVersion( Version version )
+            {
+                return version.toString().endsWith( "1" );
+            }
+
+            public boolean containsSnapshots()
+            {
+                return false;
+            }
+        };
+
+        VersionIntervals intervals = VersionIntervals.of( Arrays.asList( range( "1.0", true, "2.0", true ) ) );
+        intervals = intervals.intersect( VersionIntervals.of( Collections.singleton( odd ) ) );
+
+        assertEquals( versions( "1.1" ), intervals.filterVersions( versions( "0.1", "1.0", "1.1", "2.1" ) ) );
+        assertEquals( "1.1", String.valueOf( intervals.getHighestVersion( versions( "0.1", "1.0", "1.1", "2.1" ) ) ) );
+    }
+
+}